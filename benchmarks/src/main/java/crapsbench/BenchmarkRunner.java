@@ -0,0 +1,54 @@
+package crapsbench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <b>BenchmarkRunner Class</b>
+ * <p>
+ * Runs the simulator benchmarks once for every requested thread count, with the
+ * GC and allocation profiler enabled.
+ * <p>
+ * Usage: java -jar benchmarks.jar [threads...] [-include regex]
+ * <p>
+ * With no thread counts given, the benchmarks run on 1 thread and on one thread
+ * per available processor.
+ * @author James Wen - jrw2175
+ */
+public class BenchmarkRunner {
+	
+	public static void main(String[] args) throws RunnerException {
+		String include = CrapsBenchmarks.class.getSimpleName();
+		StringBuilder threadList = new StringBuilder();
+		for (int i = 0; i < args.length; i++){
+			if (("-include").equals(args[i])){
+				include = args[++i];
+			}
+			else {
+				threadList.append(args[i]).append(' ');
+			}
+		}
+		int[] threadCounts;
+		if (threadList.length() == 0){
+			int cores = Runtime.getRuntime().availableProcessors();
+			threadCounts = cores > 1 ? new int[] {1, cores} : new int[] {1};
+		}
+		else {
+			String[] counts = threadList.toString().trim().split(" ");
+			threadCounts = new int[counts.length];
+			for (int i = 0; i < counts.length; i++){
+				threadCounts[i] = Integer.parseInt(counts[i]);
+			}
+		}
+		for (int threads : threadCounts){
+			ChainedOptionsBuilder options = new OptionsBuilder()
+					.include(include)
+					.threads(threads)
+					.addProfiler(GCProfiler.class);
+			new Runner(options.build()).run();
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package crapsbench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <b>CrapsBenchmarks Class</b>
+ * <p>
+ * JMH benchmarks of the simulator hot paths: rolling a Die, rolling a PairOfDice,
+ * one rollDice and applyRules step of a CrapsHandler, specialRoll, and whole 
+ * games played through a CrapsHandler and through the CrapsKernel.
+ * <p>
+ * Every benchmark is parameterized by the generator algorithm of its DiceSource.
+ * The state is per thread, so each benchmark thread rolls its own dice with its
+ * own source; BenchmarkRunner repeats the run for each requested thread count.
+ * @author James Wen - jrw2175
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CrapsBenchmarks {
+	
+	@Param({"L64X128MixRandom", "Xoshiro256PlusPlus", "SplittableRandom"})
+	public String rng;
+	
+	private Object die;
+	private Object pair;
+	private Object handler;
+	private Object kernel;
+	
+	@Setup
+	public void setUp() throws Throwable {
+		long seed = Thread.currentThread().getId();
+		die = Simulator.NEW_DIE.invokeExact((Object) Simulator.NEW_SOURCE.invokeExact(rng, seed));
+		pair = Simulator.NEW_PAIR.invokeExact((Object) Simulator.NEW_SOURCE.invokeExact(rng, seed));
+		handler = Simulator.NEW_HANDLER.invokeExact((Object) Simulator.NEW_SOURCE.invokeExact(rng, seed));
+		kernel = Simulator.NEW_KERNEL.invokeExact((Object) Simulator.NEW_SOURCE.invokeExact(rng, seed), false);
+	}
+	
+	@Benchmark
+	public int dieRoll() throws Throwable {
+		return (int) Simulator.DIE_ROLL.invokeExact(die);
+	}
+	
+	@Benchmark
+	public int pairRoll() throws Throwable {
+		return (int) Simulator.PAIR_ROLL.invokeExact(pair);
+	}
+	
+	/**
+	 * One roll of an ongoing game, starting a new game whenever one ends.
+	 */
+	@Benchmark
+	public boolean handlerRollAndApply() throws Throwable {
+		if ((boolean) Simulator.IS_GAME_OVER.invokeExact(handler)){
+			Simulator.NEW_GAME.invokeExact(handler);
+		}
+		Simulator.ROLL_DICE.invokeExact(handler);
+		Simulator.APPLY_RULES.invokeExact(handler);
+		return (boolean) Simulator.IS_GAME_OVER.invokeExact(handler);
+	}
+	
+	@Benchmark
+	public String handlerSpecialRoll() throws Throwable {
+		Simulator.ROLL_DICE.invokeExact(handler);
+		return (String) Simulator.SPECIAL_ROLL.invokeExact(handler);
+	}
+	
+	@Benchmark
+	public boolean handlerPlayGame() throws Throwable {
+		Simulator.NEW_GAME.invokeExact(handler);
+		while (!(boolean) Simulator.IS_GAME_OVER.invokeExact(handler)){
+			Simulator.ROLL_DICE.invokeExact(handler);
+			Simulator.APPLY_RULES.invokeExact(handler);
+		}
+		return (boolean) Simulator.HAS_WON.invokeExact(handler);
+	}
+	
+	@Benchmark
+	public int kernelPlayGame() throws Throwable {
+		return (int) Simulator.PLAY_GAME.invokeExact(kernel);
+	}
+}
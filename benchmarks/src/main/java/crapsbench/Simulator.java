@@ -0,0 +1,94 @@
+package crapsbench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * <b>Simulator Class</b>
+ * <p>
+ * Bridges the benchmarks to the simulator classes.
+ * <p>
+ * The simulator lives in the unnamed package, which classes in a named package
+ * cannot refer to, and JMH refuses benchmarks in the unnamed package. The
+ * simulator classes are therefore looked up by name once, and their constructors
+ * and methods are called through static final method handles, which the JIT 
+ * compiler treats as constants and inlines like direct calls.
+ * @author James Wen - jrw2175
+ */
+final class Simulator {
+	private static final MethodType OBJECT = MethodType.methodType(Object.class, Object.class);
+	
+	static final MethodHandle NEW_SOURCE;   // (String algorithm, long seed) -> DiceSource
+	static final MethodHandle NEW_DIE;      // (DiceSource) -> Die
+	static final MethodHandle DIE_ROLL;     // (Die) -> int
+	static final MethodHandle NEW_PAIR;     // (DiceSource) -> PairOfDice
+	static final MethodHandle PAIR_ROLL;    // (PairOfDice) -> int
+	static final MethodHandle NEW_HANDLER;  // (DiceSource) -> CrapsHandler
+	static final MethodHandle NEW_GAME;     // (CrapsHandler) -> void
+	static final MethodHandle ROLL_DICE;    // (CrapsHandler) -> void
+	static final MethodHandle APPLY_RULES;  // (CrapsHandler) -> void
+	static final MethodHandle IS_GAME_OVER; // (CrapsHandler) -> boolean
+	static final MethodHandle HAS_WON;      // (CrapsHandler) -> boolean
+	static final MethodHandle SPECIAL_ROLL; // (CrapsHandler) -> String
+	static final MethodHandle NEW_KERNEL;   // (DiceSource, boolean) -> CrapsKernel
+	static final MethodHandle PLAY_GAME;    // (CrapsKernel) -> int
+	
+	static {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			Class<?> source = Class.forName("DiceSource");
+			Class<?> randomSource = Class.forName("RandomDiceSource");
+			Class<?> die = Class.forName("Die");
+			Class<?> pair = Class.forName("PairOfDice");
+			Class<?> handler = Class.forName("CrapsHandler");
+			Class<?> kernel = Class.forName("CrapsKernel");
+			NEW_SOURCE = lookup.findStatic(randomSource, "of", MethodType.methodType(
+					randomSource, String.class, long.class)).asType(
+					MethodType.methodType(Object.class, String.class, long.class));
+			NEW_DIE = constructor(lookup, die, source);
+			DIE_ROLL = method(lookup, die, "roll", int.class);
+			NEW_PAIR = constructor(lookup, pair, source);
+			PAIR_ROLL = method(lookup, pair, "roll", int.class);
+			NEW_HANDLER = constructor(lookup, handler, source);
+			NEW_GAME = method(lookup, handler, "newGame", void.class);
+			ROLL_DICE = method(lookup, handler, "rollDice", void.class);
+			APPLY_RULES = method(lookup, handler, "applyRules", void.class);
+			IS_GAME_OVER = method(lookup, handler, "isGameOver", boolean.class);
+			HAS_WON = method(lookup, handler, "hasPlayerWon", boolean.class);
+			SPECIAL_ROLL = method(lookup, handler, "specialRoll", String.class);
+			NEW_KERNEL = lookup.findConstructor(kernel, MethodType.methodType(
+					void.class, source, boolean.class)).asType(
+					MethodType.methodType(Object.class, Object.class, boolean.class));
+			PLAY_GAME = method(lookup, kernel, "playGame", int.class);
+		}
+		catch (ReflectiveOperationException e){
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+	
+	private Simulator(){
+	}
+	
+	/**
+	 * constructor
+	 * <p>
+	 * Finds a one argument constructor and erases its types to Object.
+	 */
+	private static MethodHandle constructor(MethodHandles.Lookup lookup, Class<?> type,
+			Class<?> parameter) throws ReflectiveOperationException {
+		return lookup.findConstructor(type, MethodType.methodType(void.class, parameter))
+				.asType(OBJECT);
+	}
+	
+	/**
+	 * method
+	 * <p>
+	 * Finds a no argument instance method and erases its receiver type to Object.
+	 */
+	private static MethodHandle method(MethodHandles.Lookup lookup, Class<?> type, 
+			String name, Class<?> returnType) throws ReflectiveOperationException {
+		return lookup.findVirtual(type, name, MethodType.methodType(returnType))
+				.asType(MethodType.methodType(returnType, Object.class));
+	}
+}
@@ -4,36 +4,81 @@
  * Handles and carries out all Craps game operations, including rolling dice and
  * applying the game rules.
  * <p>
+ * The game and player states are kept as int codes and are only turned into
+ * their display Strings when asked for by getGameStatus, getPlayerStatus and 
+ * specialRoll, so rolling and applying rules never builds or compares Strings.
+ * <p>
+ * The rules themselves are a compiled CrapsRules transition table, the house 
+ * rules unless others are given, so each roll is resolved by one table lookup.
+ * <p>
  *
  * @author James Wen - jrw2175
  */
 public class CrapsHandler {
 	private final int KEYVALUE = 7; //notable value for dice
+	//Game states
+	private static final int NEW_GAME = 0;
+	private static final int IN_PROGRESS = 1;
+	private static final int GAME_OVER = 2;
+	private static final String[] GAME_LABELS = {"New Game", "In Progress", 
+												 "New Game?"};
+	//Player states
+	private static final int SHOULD_ROLL = 0;
+	private static final int HAS_WON = 1;
+	private static final int HAS_LOST = 2;
+	private static final String[] PLAYER_LABELS = {"Should Roll", "Has Won!", 
+												   "Has Lost."};
 	private int rollToWin;
 	private int diceValue;
-	private String gameStatus;
-	private String playerStatus;
-	private String specialStatus;
+	private int gameStatus;
+	private int playerStatus;
 	private boolean playerBonus; //cheat mode
 	private PairOfDice dicePair;
+	private final DiceSource source;
+	private final int[] rules; //compiled CrapsRules transitions
 	
 	/**
 	 * Constructs a Craps Hander, creates a pair of dice, and starts a new game.
 	 */
 	public CrapsHandler(){
-		this.dicePair = new PairOfDice();
+		this(Die.SHARED_SOURCE);
+	}
+	
+	/**
+	 * Constructs a Craps Hander whose dice and cheat mode draw from the given 
+	 * dice source, and starts a new game.
+	 * <p>
+	 * Handlers that are used on different threads should each be given their own
+	 * source.
+	 * @param source - the dice source to roll with
+	 */
+	public CrapsHandler(DiceSource source){
+		this(source, CrapsRules.HOUSE);
+	}
+	
+	/**
+	 * Constructs a Craps Hander whose dice and cheat mode draw from the given 
+	 * dice source and which plays by the given rules, and starts a new game.
+	 * @param source - the dice source to roll with
+	 * @param rules - the rules to play by
+	 */
+	public CrapsHandler(DiceSource source, CrapsRules rules){
+		this.dicePair = new PairOfDice(source);
+		this.source = source;
+		this.rules = rules.table();
 		newGame();
 	}
 	/**
 	  * newGame
 	  * <p>
-	  * Starts a new game by resetting all the game label values and dice
+	  * Starts a new game by resetting all the game label values and dice, and 
+	  * tells the dice source that the rolls that follow belong to a new game
     */
 	public void newGame(){
 		dicePair.resetDice();
-		this.gameStatus = "New Game";
-		this.playerStatus = "Should Roll";
-		this.specialStatus = "None";
+		source.startGame();
+		this.gameStatus = NEW_GAME;
+		this.playerStatus = SHOULD_ROLL;
 		this.diceValue = dicePair.getSum();
 		this.rollToWin = KEYVALUE;
 	}
@@ -49,15 +94,29 @@ public class CrapsHandler {
 		diceValue = dicePair.getSum();
 	}
 	
+	/**
+	  * Roll
+	  * <p>
+	  * Sets the pair of dice to the given face values instead of rolling them, for
+	  * replaying recorded games.
+	  * @param face1 - the face value of die 1
+	  * @param face2 - the face value of die 2
+	  * @throws IllegalArgumentException - if a face value is not in the range of 1-6
+     */
+	public void rollDice(int face1, int face2){
+		dicePair.roll(face1, face2);
+		diceValue = dicePair.getSum();
+	}
+	
 	/**
 	  * ApplyRules
 	  * <p>
 	  * Applies the rules of Craps to the current status of the player and the 
 	  * pair of dice in the game.
 	  * <p>
-	  * This method ascertains the current status of the player and game through the
-	  * gameStatus and playerStatus strings and manipulates these accordingly to
-	  * emulate game and player states.
+	  * This method looks up the roll in the rules table, using the come out row 
+	  * for a new game and the point's row for a game in progress, and sets the 
+	  * gameStatus and playerStatus codes from the outcome it finds there.
 	  * <p>
 	  * Cheating: If the cheat mode is on, the cheating occurs in the case of the 
 	  * player initially rolling a non-7 value and he/she has to keep on rolling. 
@@ -71,40 +130,32 @@ public class CrapsHandler {
 	  * very high, then the house edge would be too unnaturally and also suspicious.
     */
 	public void applyRules(){
-		//If the player has started a new game
-		if (("New Game").equals(gameStatus)){
-			if(dicePair.isSeven()){//Player rolls 7 and wins
-				gameStatus = "New Game?";
-				playerStatus = "Has Won!";
-				rollToWin = KEYVALUE;
-			}
-			else{//Player rolls non-7 value and has to keep rolling
-				gameStatus = "In Progress";
-				playerStatus = "Should Roll";
-				rollToWin = diceValue;
-				if (playerBonus){//25% chance of cheating when cheat mode is on
-					if (((int)((Math.random() * 4) + 1))==1){
-						dicePair.cheatDice();
-					}
-				}
-			}
+		if (gameStatus == GAME_OVER){
+			return;
 		}
-		//If the player is in a currently ongoing game
-		else if (("In Progress").equals(gameStatus)){
-			if(dicePair.isSeven()){//Player rolls a 7 and loses					 
-				gameStatus = "New Game?";
-				playerStatus = "Has Lost.";
-			}
-			else if(diceValue==rollToWin){//Player rolls the target value and wins	
-				gameStatus = "New Game?";
-				playerStatus = "Has Won!";
-			}
-			else{//Player rolls a non-target and non-7 value and keeps rolling
-				gameStatus = "In Progress";
-				playerStatus = "Should Roll";
+		int state = (gameStatus == NEW_GAME) ? CrapsRules.COME_OUT : rollToWin;
+		int transition = rules[state * CrapsRules.SUMS + diceValue];
+		int outcome = transition & CrapsRules.OUTCOME_MASK;
+		if (outcome == CrapsRules.WIN){
+			gameStatus = GAME_OVER;
+			playerStatus = HAS_WON;
+		}
+		else if (outcome == CrapsRules.LOSE){
+			gameStatus = GAME_OVER;
+			playerStatus = HAS_LOST;
+		}
+		else if (gameStatus == NEW_GAME && transition != 0){
+			//Player has set a point and has to keep rolling
+			gameStatus = IN_PROGRESS;
+			rollToWin = (transition >>> CrapsRules.OUTCOME_BITS) / CrapsRules.SUMS;
+			if (playerBonus){//25% chance of cheating when cheat mode is on
+				if (source.nextFace(4)==1){
+					dicePair.cheatDice();
+				}
 			}
 		}
-		
+		//Otherwise the roll decided nothing and the player keeps rolling, so 
+		//nothing changes
 	}
 	
 	/**
@@ -125,7 +176,7 @@ public class CrapsHandler {
 	  * @return gameStatus - current status of the new or ongoing game
    */
 	public String getGameStatus(){
-		return gameStatus;
+		return GAME_LABELS[gameStatus];
 	}
 	
 	/**
@@ -136,7 +187,28 @@ public class CrapsHandler {
 	  * @return gameStatus - current status of the player in game
 	*/
 	public String getPlayerStatus(){
-		return playerStatus;
+		return PLAYER_LABELS[playerStatus];
+	}
+	
+	/**
+	  * isGameOver
+	  * <p>
+	  * Returns whether the current game has been decided and the player is being
+	  * prompted to start a new game.
+	  * @return boolean - whether the current game is over
+	*/
+	public boolean isGameOver(){
+		return gameStatus == GAME_OVER;
+	}
+	
+	/**
+	  * hasPlayerWon
+	  * <p>
+	  * Returns whether the current game is over and was won by the player.
+	  * @return boolean - whether the player has won the current game
+	*/
+	public boolean hasPlayerWon(){
+		return playerStatus == HAS_WON;
 	}
 	
 	/**
@@ -163,6 +235,26 @@ public class CrapsHandler {
 		return diceValue;
 	}
 	
+	/**
+	 * getFaceValue1
+	 * <p>
+	 * Returns the current face value of die1
+	 * @return face value of die1 in the range of 1-6
+	 */
+	public int getFaceValue1(){
+		return dicePair.getDie1().getFaceValue();
+	}
+	
+	/**
+	 * getFaceValue2
+	 * <p>
+	 * Returns the current face value of die2
+	 * @return face value of die2 in the range of 1-6
+	 */
+	public int getFaceValue2(){
+		return dicePair.getDie2().getFaceValue();
+	}
+	
 	/**
 	 * getDie1
 	 * <p>
@@ -189,19 +281,18 @@ public class CrapsHandler {
 	 * Returns what the current special status of the pair of dice is. Can be "None"
 	 * (no special value), "Box Cars" (two 6s = 12), "Snake Eyes" (two 1s = 2), 
 	 * "Seven" (any two values that = 7).
-	 * @return specialStatus - the current special status of the pair of dice
+	 * @return the current special status of the pair of dice
 	 */
 	public String specialRoll(){
-		specialStatus = "None";
 		if (dicePair.isBoxCars()){
-			specialStatus = "Box Cars";
+			return "Box Cars";
 		}
 		if (dicePair.isSnakeEyes()){
-			specialStatus = "Snake Eyes";
+			return "Snake Eyes";
 		}
 		if (dicePair.isSeven()){
-			specialStatus = "Seven";
+			return "Seven";
 		}
-		return specialStatus;
+		return "None";
 	}
 } //End of CrapsHandler class
@@ -0,0 +1,513 @@
+/**
+ * <b>CrapsKernel Class</b>
+ * <p>
+ * Plays Craps games by the same rules as CrapsHandler, as fast as possible, for
+ * batch simulation.
+ * <p>
+ * Each roll of the pair of dice is a single draw of one of the 36 face 
+ * combinations, which is turned into a sum through a precomputed table, and the
+ * result of a roll is looked up in the compiled transition table of the 
+ * CrapsRules being played, indexed by the state and the sum. Game state is held
+ * in ints and the tallies in longs, so playing a game allocates nothing.
+ * <p>
+ * playGameFast plays the same games without rolling the point phase roll by 
+ * roll. Once a point is set, every roll until the game is decided is a roll 
+ * that decides nothing with the same chance, so the number of those rolls is 
+ * geometric and the roll that ends the game is a win or a loss in proportion to
+ * the face combinations that win and lose. Both are drawn directly, so a game 
+ * takes at most four draws from the source however long it lasts, and the 
+ * outcomes and game lengths have the same distribution as playGame's, up to 
+ * the rounding of one logarithm.
+ * <p>
+ * Since playGameFast only needs the sums of the come out rolls, it draws them 
+ * from the alias table of a DiceModel, the pair of six sided dice unless the
+ * kernel is given other dice, with every cell of a small table mapped straight
+ * to its come out transition. Any dice whose sums all lie in 2-12 can be 
+ * played that way, by the same rules table. The other ways of playing roll the
+ * face combinations of the pair, and refuse to play with other dice.
+ * <p>
+ * Cheating: As in CrapsHandler, when cheat mode is on and the player has to keep
+ * rolling after the first roll, there is a 25% chance that the next roll is 
+ * forced to be a 7. Which of the six sevens it shows is chosen at random, as
+ * PairOfDice does, so that journals of cheating runs look like real rolls.
+ * <p>
+ * A kernel is not thread safe; give each thread its own kernel and DiceSource.
+ * @author James Wen - jrw2175
+ */
+public class CrapsKernel {
+	static final int KEYVALUE = 7; //notable value for dice
+	//Roll outcomes
+	public static final int KEEP_ROLLING = CrapsRules.KEEP_ROLLING;
+	public static final int WIN = CrapsRules.WIN;
+	public static final int LOSE = CrapsRules.LOSE;
+	private static final int SUMS = CrapsRules.SUMS;
+	private static final int OUTCOME_BITS = CrapsRules.OUTCOME_BITS;
+	private static final int OUTCOME_MASK = CrapsRules.OUTCOME_MASK;
+	
+	private static final int[] COMBO_SUMS = new int[36]; //face combination to sum
+	private static final int[] COMBO_SPECIALS = new int[36]; //as GameRecordStore.special
+	private static final int[] SEVENS = {RollJournal.code(3, 4), RollJournal.code(4, 3), 
+		RollJournal.code(2, 5), RollJournal.code(5, 2), RollJournal.code(6, 1), 
+		RollJournal.code(1, 6)}; //cheat dice faces, as in PairOfDice
+	static {
+		for (int combo = 0; combo < 36; combo++){
+			COMBO_SUMS[combo] = combo / 6 + combo % 6 + 2;
+			COMBO_SPECIALS[combo] = GameRecordStore.special(COMBO_SUMS[combo]);
+		}
+	}
+	
+	private final DiceSource source;
+	private final boolean playerBonus; //cheat mode
+	private final int[] table; //compiled CrapsRules transitions
+	private final DiceModel dice;
+	private final boolean pair; //whether dice is the pair of six sided dice
+	private final int[] comeOut; //[alias cell] come out transition, or null
+	private final int[] deciding = new int[SUMS]; //[point] combos ending the game
+	private final int[] winning = new int[SUMS];  //[point] combos winning it
+	private final double[] logUndecided = new double[SUMS]; //[point] log(1 - decide chance)
+	private long games;
+	private long wins;
+	private long rolls;
+	private int lastPoint;
+	private boolean lastPointSet;
+	private int lastRolls;
+	private int lastComeOut;
+	private int lastSpecial;
+	
+	/**
+	 * Constructs a kernel that rolls with the given source and plays by the 
+	 * house rules.
+	 * @param source - the dice source to roll with
+	 * @param playerBonus - whether cheat mode is on or not
+	 */
+	public CrapsKernel(DiceSource source, boolean playerBonus){
+		this(source, playerBonus, CrapsRules.HOUSE);
+	}
+	
+	/**
+	 * Constructs a kernel that rolls with the given source and plays by the 
+	 * given rules.
+	 * @param source - the dice source to roll with
+	 * @param playerBonus - whether cheat mode is on or not
+	 * @param rules - the rules to play by
+	 */
+	public CrapsKernel(DiceSource source, boolean playerBonus, CrapsRules rules){
+		this(source, playerBonus, rules, DiceModel.PAIR);
+	}
+	
+	/**
+	 * Constructs a kernel that rolls the given dice with the given source and 
+	 * plays by the given rules. Only playGameFast and runFast play with dice 
+	 * other than a pair of six sided dice.
+	 * @param source - the dice source to roll with
+	 * @param playerBonus - whether cheat mode is on or not
+	 * @param rules - the rules to play by
+	 * @param dice - the dice to roll
+	 * @throws IllegalArgumentException - if the dice can roll sums outside 2-12,
+	 * or have more face combinations than fit in an int
+	 */
+	public CrapsKernel(DiceSource source, boolean playerBonus, CrapsRules rules, 
+			DiceModel dice){
+		if (dice.getMinSum() < 2 || dice.getMaxSum() > 12 
+				|| dice.getCombinations() > Integer.MAX_VALUE){
+			throw new IllegalArgumentException(dice + " cannot be played by Craps rules");
+		}
+		this.source = source;
+		this.playerBonus = playerBonus;
+		this.table = rules.table();
+		this.dice = dice;
+		this.pair = dice.getDice() == 2 && dice.getFaces() == 6;
+		int[] cellSums = dice.getCellSums();
+		if (cellSums != null){
+			comeOut = new int[cellSums.length];
+			for (int cell = 0; cell < cellSums.length; cell++){
+				comeOut[cell] = table[cellSums[cell]];
+			}
+		}
+		else {
+			comeOut = null;
+		}
+		for (int point = 2; point <= 12; point++){
+			if (rules.isPoint(point)){
+				for (int sum = 2; sum <= 12; sum++){
+					int outcome = table[point * SUMS + sum] & OUTCOME_MASK;
+					if (outcome != KEEP_ROLLING){
+						deciding[point] += (int) dice.getSumCount(sum);
+						if (outcome == WIN){
+							winning[point] += (int) dice.getSumCount(sum);
+						}
+					}
+				}
+				logUndecided[point] = Math.log1p(-(double) deciding[point] 
+						/ dice.getCombinations());
+			}
+		}
+	}
+	
+	/**
+	 * playGame
+	 * <p>
+	 * Plays one whole game and adds it to the tallies.
+	 * @return WIN or LOSE - the outcome of the game for the player
+	 */
+	public int playGame(){
+		return playGame(null);
+	}
+	
+	/**
+	 * playGame
+	 * <p>
+	 * Plays one whole game, adds it to the tallies, and records each of its rolls
+	 * and its end in the given journal. The face combination drawn for each roll
+	 * is its journal code.
+	 * @param journal - the journal to record the game in, or null
+	 * @return WIN or LOSE - the outcome of the game for the player
+	 * @throws java.io.UncheckedIOException - if the journal cannot be written
+	 */
+	public int playGame(RollJournalWriter journal){
+		checkPair();
+		int combo;
+		int transition;
+		int count = 0;
+		int special = GameRecordStore.NONE;
+		source.startGame();
+		do { //Come out rolls, repeated while they are pushes
+			combo = source.nextFace(36) - 1;
+			if (journal != null){
+				journal.record(combo);
+			}
+			if (count++ == 0){
+				lastComeOut = COMBO_SUMS[combo];
+			}
+			if (special == GameRecordStore.NONE){
+				special = COMBO_SPECIALS[combo];
+			}
+			transition = table[COMBO_SUMS[combo]];
+		} while (transition == 0);
+		int outcome = transition & OUTCOME_MASK;
+		int point = KEYVALUE;
+		boolean pointSet = outcome == KEEP_ROLLING;
+		if (pointSet){
+			int row = transition >>> OUTCOME_BITS;
+			point = row / SUMS;
+			if (playerBonus && source.nextFace(4) == 1){
+				//Cheat dice force the next roll to be a 7
+				combo = SEVENS[source.nextFace(6) - 1];
+				if (journal != null){
+					journal.record(combo);
+				}
+				count++;
+				if (special == GameRecordStore.NONE){
+					special = GameRecordStore.SEVEN;
+				}
+				outcome = table[row + KEYVALUE] & OUTCOME_MASK;
+			}
+			while (outcome == KEEP_ROLLING){
+				combo = source.nextFace(36) - 1;
+				if (journal != null){
+					journal.record(combo);
+				}
+				count++;
+				if (special == GameRecordStore.NONE){
+					special = COMBO_SPECIALS[combo];
+				}
+				outcome = table[row + COMBO_SUMS[combo]] & OUTCOME_MASK;
+			}
+		}
+		if (journal != null){
+			journal.endGame();
+		}
+		lastSpecial = special;
+		games++;
+		rolls += count;
+		if (outcome == WIN){
+			wins++;
+		}
+		lastPoint = point;
+		lastPointSet = pointSet;
+		lastRolls = count;
+		return outcome;
+	}
+	
+	/**
+	 * playGameFast
+	 * <p>
+	 * Plays one whole game, drawing the sums of its come out rolls from the 
+	 * alias table of the dice and the length and the outcome of its point phase
+	 * directly instead of rolling it, and adds it to the tallies. The faces of
+	 * the cheat dice are not drawn, as they make no difference here.
+	 * @return WIN or LOSE - the outcome of the game for the player
+	 */
+	public int playGameFast(){
+		int transition;
+		int count = 0;
+		source.startGame();
+		do { //Come out rolls, repeated while they are pushes
+			count++;
+			transition = (comeOut != null) ? comeOut[source.nextFace(comeOut.length) - 1]
+					: table[dice.sampleSum(source)];
+		} while (transition == 0);
+		int outcome = transition & OUTCOME_MASK;
+		int point = KEYVALUE;
+		boolean pointSet = outcome == KEEP_ROLLING;
+		if (pointSet){
+			int row = transition >>> OUTCOME_BITS;
+			point = row / SUMS;
+			if (playerBonus && source.nextFace(4) == 1){
+				//Cheat dice force the next roll to be a 7
+				count++;
+				outcome = table[row + KEYVALUE] & OUTCOME_MASK;
+			}
+			if (outcome == KEEP_ROLLING){
+				//Rolls up to and including the deciding one are geometric
+				double u = 1.0 - source.nextDouble();
+				count += 1 + (int) (Math.log(u) / logUndecided[point]);
+				outcome = (source.nextFace(deciding[point]) <= winning[point]) ? WIN : LOSE;
+			}
+		}
+		games++;
+		rolls += count;
+		if (outcome == WIN){
+			wins++;
+		}
+		lastPoint = point;
+		lastPointSet = pointSet;
+		lastRolls = count;
+		return outcome;
+	}
+	
+	/**
+	 * run
+	 * <p>
+	 * Plays the requested number of games and adds them to the tallies.
+	 * @param count - the number of games to play
+	 */
+	public void run(long count){
+		for (long game = 0; game < count; game++){
+			playGame();
+		}
+	}
+	
+	/**
+	 * playGame
+	 * <p>
+	 * Plays one whole game as playGameFast does, but from given random numbers 
+	 * instead of draws from the source, so that variance reduction can choose 
+	 * and pair them; see VarianceReducer. Only the come out rolls after a push
+	 * are drawn from the source. Adds the game to the tallies.
+	 * @param combo - the face combination of the first roll, 0-35, as die 1 
+	 * face - 1 times 6 plus die 2 face - 1
+	 * @param cheat - uniform in [0, 1); the cheat dice act if it is below 1/4
+	 * @param length - uniform in [0, 1) that sets the length of the point phase
+	 * @param win - uniform in [0, 1) that sets whether the point phase is won
+	 * @return WIN or LOSE - the outcome of the game for the player
+	 */
+	int playGame(int combo, double cheat, double length, double win){
+		checkPair();
+		int transition = table[COMBO_SUMS[combo]];
+		int count = 1;
+		while (transition == 0){ //Come out pushes
+			count++;
+			transition = table[COMBO_SUMS[source.nextFace(36) - 1]];
+		}
+		int outcome = transition & OUTCOME_MASK;
+		int point = KEYVALUE;
+		boolean pointSet = outcome == KEEP_ROLLING;
+		if (pointSet){
+			int row = transition >>> OUTCOME_BITS;
+			point = row / SUMS;
+			if (playerBonus && cheat < 0.25){
+				//Cheat dice force the next roll to be a 7
+				count++;
+				outcome = table[row + KEYVALUE] & OUTCOME_MASK;
+			}
+			if (outcome == KEEP_ROLLING){
+				count += 1 + (int) (Math.log(1.0 - length) / logUndecided[point]);
+				outcome = (win * deciding[point] < winning[point]) ? WIN : LOSE;
+			}
+		}
+		games++;
+		rolls += count;
+		if (outcome == WIN){
+			wins++;
+		}
+		lastPoint = point;
+		lastPointSet = pointSet;
+		lastRolls = count;
+		return outcome;
+	}
+	
+	/**
+	 * runFast
+	 * <p>
+	 * Plays the requested number of games with playGameFast and adds them to 
+	 * the tallies.
+	 * @param count - the number of games to play
+	 */
+	public void runFast(long count){
+		for (long game = 0; game < count; game++){
+			playGameFast();
+		}
+	}
+	
+	/**
+	 * run
+	 * <p>
+	 * Plays the requested number of games and adds them to the tallies, reading
+	 * the dice sums from the given batch, which is rolled again whenever it has
+	 * been used up. Follows exactly the same rules as playGame.
+	 * @param count - the number of games to play
+	 * @param batch - the batch of rolls to play games with
+	 */
+	public void run(long count, DiceBatch batch){
+		checkPair();
+		int[] sums = batch.getSums();
+		int size = batch.size();
+		int next = size;
+		long winCount = 0;
+		long rollCount = 0;
+		int point = KEYVALUE;
+		boolean pointSet = false;
+		int count1 = 0;
+		for (long game = 0; game < count; game++){
+			int transition;
+			count1 = 0;
+			do { //Come out rolls, repeated while they are pushes
+				if (next == size){
+					batch.roll(source);
+					next = 0;
+				}
+				count1++;
+				transition = table[sums[next++]];
+			} while (transition == 0);
+			int outcome = transition & OUTCOME_MASK;
+			point = KEYVALUE;
+			pointSet = outcome == KEEP_ROLLING;
+			if (pointSet){
+				int row = transition >>> OUTCOME_BITS;
+				point = row / SUMS;
+				if (playerBonus && source.nextFace(4) == 1){
+					//Cheat dice force the next roll to be a 7
+					count1++;
+					outcome = table[row + KEYVALUE] & OUTCOME_MASK;
+				}
+				while (outcome == KEEP_ROLLING){
+					if (next == size){
+						batch.roll(source);
+						next = 0;
+					}
+					count1++;
+					outcome = table[row + sums[next++]] & OUTCOME_MASK;
+				}
+			}
+			rollCount += count1;
+			if (outcome == WIN){
+				winCount++;
+			}
+		}
+		games += count;
+		wins += winCount;
+		rolls += rollCount;
+		if (count > 0){
+			lastPoint = point;
+			lastPointSet = pointSet;
+			lastRolls = count1;
+		}
+	}
+	
+	/**
+	 * checkPair
+	 * <p>
+	 * Refuses to roll face combinations of a pair of dice when the kernel was 
+	 * given other dice.
+	 */
+	private void checkPair(){
+		if (!pair){
+			throw new IllegalStateException("only playGameFast can play " + dice);
+		}
+	}
+	
+	/**
+	 * getGames
+	 * <p>
+	 * Returns the number of games played so far.
+	 * @return games - number of games played
+	 */
+	public long getGames(){
+		return games;
+	}
+	
+	/**
+	 * getWins
+	 * <p>
+	 * Returns the number of games won by the player so far.
+	 * @return wins - number of player wins
+	 */
+	public long getWins(){
+		return wins;
+	}
+	
+	/**
+	 * getRolls
+	 * <p>
+	 * Returns the number of dice rolls made so far.
+	 * @return rolls - number of rolls
+	 */
+	public long getRolls(){
+		return rolls;
+	}
+	
+	/**
+	 * getLastPoint
+	 * <p>
+	 * Returns the point of the last game: 7 if it was decided before a point was
+	 * set, otherwise the point. Under rules where 7 can be a point, 
+	 * isLastPointSet tells the two apart.
+	 * @return lastPoint - the winning roll of the last game
+	 */
+	public int getLastPoint(){
+		return lastPoint;
+	}
+	
+	/**
+	 * isLastPointSet
+	 * <p>
+	 * Returns whether the last game set a point, rather than being decided by 
+	 * its come out rolls.
+	 * @return lastPointSet - whether the last game had a point
+	 */
+	public boolean isLastPointSet(){
+		return lastPointSet;
+	}
+	
+	/**
+	 * getLastRolls
+	 * <p>
+	 * Returns the number of rolls the last game took.
+	 * @return lastRolls - rolls in the last game
+	 */
+	public int getLastRolls(){
+		return lastRolls;
+	}
+	
+	/**
+	 * getLastComeOut
+	 * <p>
+	 * Returns the sum of the first roll of the last game played by playGame.
+	 * @return lastComeOut - the come-out sum of the last game
+	 */
+	public int getLastComeOut(){
+		return lastComeOut;
+	}
+	
+	/**
+	 * getLastSpecial
+	 * <p>
+	 * Returns the first special roll of the last game played by playGame, as a
+	 * GameRecordStore special roll code.
+	 * @return lastSpecial - SEVEN, SNAKE_EYES, BOX_CARS or NONE
+	 */
+	public int getLastSpecial(){
+		return lastSpecial;
+	}
+} //End of CrapsKernel class
@@ -1,6 +1,8 @@
 import java.awt.*;
 import javax.swing.*;
 import java.awt.event.*;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 /**
  * <b>CrapsPanel Class</b>
@@ -16,17 +18,28 @@ public class CrapsPanel extends JPanel
 	private JButton newGame;
 	private JLabel specialLabel;
 	private JLabel diceSum;
-	private JLabel dieLabel1;
-	private JLabel dieLabel2;
+	private DieFace dieFace1;
+	private DieFace dieFace2;
 	private JLabel gameProgress;
 	private JLabel rollStatus;
 	private JLabel valueToWin;
 	private CrapsHandler casino;
+	private boolean playerBonus; //cheat mode
+	
+	//Autoplay controls and results
+	private static final long FRAME_NANOS = 1000000000L / 60; //60 updates a second
+	private JTextField gamesToPlay;
+	private JButton start;
+	private JButton pause;
+	private JButton cancel;
+	private JLabel numPlays;
+	private JLabel numPlayerWins;
+	private AutoPlayWorker autoPlayer;
 	
 	/**
 	 * Constructs a Craps visual interface panel through labels and buttons.
 	 * <p>
-	 * Also initiates automatic play for testing purposes if autoPlay is on/true.
+	 * Also sets up automatic play for testing purposes if autoPlay is on/true.
 	 * @param playerBonus - whether cheat mode is on or not
 	 * @param autoPlay - whether automatic play for testing purposes is on or not
 	 */
@@ -34,14 +47,15 @@ public class CrapsPanel extends JPanel
 		//Creates all the required buttons and labels
 		setLayout(null);
 		casino = new CrapsHandler();
+		this.playerBonus = playerBonus;
 		roll = new JButton ("Roll Dice");
 		roll.addActionListener(new CrapsListener());
 		newGame = new JButton ("New Game");
 		newGame.addActionListener(new NewGameListener());
 		diceSum = new JLabel ("Dice Value: " + casino.getDiceSum());
 		specialLabel = new JLabel ("Special Roll: " + casino.specialRoll());
-		dieLabel1 = new JLabel (casino.getDie1());
-		dieLabel2 = new JLabel (casino.getDie2());
+		dieFace1 = new DieFace (casino.getFaceValue1());
+		dieFace2 = new DieFace (casino.getFaceValue2());
 		gameProgress = new JLabel ("Game Status: " + "New Game");
 		rollStatus = new JLabel ("Player Status: " + "Should Roll");
 		valueToWin = new JLabel ("Roll needed to Win: " + "7");
@@ -51,8 +65,6 @@ public class CrapsPanel extends JPanel
 		//Change the label font color to white for visibility against background
 		diceSum.setForeground(Color.white);
 		specialLabel.setForeground(Color.white);
-		dieLabel1.setForeground(Color.white);
-		dieLabel2.setForeground(Color.white);
 		gameProgress.setForeground(Color.white);
 		rollStatus.setForeground(Color.white);
 		valueToWin.setForeground(Color.white);
@@ -63,8 +75,8 @@ public class CrapsPanel extends JPanel
 		valueToWin.setBounds(75, 50, 150, 20);
 		diceSum.setBounds(75, 80, 100, 20);
 		specialLabel.setBounds(75, 100, 200, 20);
-		dieLabel1.setBounds(80, 125, 100, 100);
-		dieLabel2.setBounds(180, 125, 100, 100);
+		dieFace1.setBounds(65, 135, 75, 75);
+		dieFace2.setBounds(160, 135, 75, 75);
 		roll.setBounds(160, 225, 100, 50);
 		newGame.setBounds(40, 225, 100, 50);
 		
@@ -73,8 +85,8 @@ public class CrapsPanel extends JPanel
 		add(newGame);
 		add(diceSum);
 		add(specialLabel);
-		add(dieLabel1);
-		add(dieLabel2);
+		add(dieFace1);
+		add(dieFace2);
 		add(gameProgress);
 		add(rollStatus);
 		add(valueToWin);
@@ -93,50 +105,59 @@ public class CrapsPanel extends JPanel
 	/**
 	 * testGame
 	 * <p>
-	 * Facilitates automatic play against the computer (1000 games) and records
-	 * the number of games and player wins (Player is also CPU).
+	 * Sets up automatic play against the computer and records the number of 
+	 * games and player wins (Player is also CPU).
+	 * <p>
+	 * The visual interface for automatic play has the roll and new game buttons
+	 * replaced with a field for the number of games to play (1000 by default), 
+	 * start, pause and cancel buttons, and labels describing the number of games
+	 * played and player wins.
 	 * <p>
-	 * The visual interface for the results of this automatic play have the buttons
-	 * replaced with the labels describing the number of games played and 
-	 * player wins.
+	 * The games are played off the Event Dispatch Thread by an AutoPlayWorker, so
+	 * the interface stays responsive however many games are played.
 	 */
 	private void testGame(){
 		//Removes buttons from interface (unnecessary)
 		remove(roll);
 		remove(newGame);
 		
-		//Autoplays 1000 games
-		int gameNumber = 0;
-		int playerWins = 0;
-		while (gameNumber<1000){//Autoplays until 1000 games have been played
-			casino.newGame();
-			updateGame();
-			//Plays through a game until it is over and game status is "New Game?"
-			while (!("New Game?").equals(casino.getGameStatus())){
-				casino.rollDice();
-				casino.applyRules();
-				updateGame();
-			}
-			if (("Has Won!").equals(casino.getPlayerStatus())){
-				playerWins+=1;//Records player wins
-			}
-			gameNumber+=1;//Records number of games
-		}
-		//Creates player wins and number of games played labels
-		JLabel numPlayerWins = new JLabel ("Number of Player Wins: " + playerWins);
-		JLabel numPlays = new JLabel ("Number of Games: " + gameNumber);
+		//Creates the autoplay controls and the result labels
+		JLabel gamesLabel = new JLabel ("Games:");
+		gamesToPlay = new JTextField ("1000");
+		start = new JButton ("Start");
+		start.addActionListener(new StartListener());
+		pause = new JButton ("Pause");
+		pause.addActionListener(new PauseListener());
+		pause.setEnabled(false);
+		cancel = new JButton ("Cancel");
+		cancel.addActionListener(new CancelListener());
+		cancel.setEnabled(false);
+		numPlays = new JLabel ("Number of Games: 0");
+		numPlayerWins = new JLabel ("Number of Player Wins: 0");
 		
 		//Makes new label fonts white for visibility
+		gamesLabel.setForeground(Color.white);
 		numPlayerWins.setForeground(Color.white);
 		numPlays.setForeground(Color.white);
 		
-		//Adds new labels
+		//Adds new controls and labels
+		add(gamesLabel);
+		add(gamesToPlay);
+		add(start);
+		add(pause);
+		add(cancel);
 		add(numPlayerWins);
 		add(numPlays);
 		
-		//Arranges new labels using absolute positioning
-		numPlays.setBounds(75, 215, 200, 50);
-		numPlayerWins.setBounds(75, 240, 200, 50);
+		//Arranges new controls and labels using absolute positioning
+		gamesLabel.setBounds(75, 225, 60, 25);
+		gamesToPlay.setBounds(135, 225, 110, 25);
+		start.setBounds(15, 255, 85, 30);
+		pause.setBounds(107, 255, 85, 30);
+		cancel.setBounds(199, 255, 85, 30);
+		numPlays.setBounds(75, 290, 225, 20);
+		numPlayerWins.setBounds(75, 310, 225, 20);
+		setPreferredSize (new Dimension (300,340));
 	}
 	
 	/**
@@ -147,13 +168,210 @@ public class CrapsPanel extends JPanel
 	private void updateGame(){
 		specialLabel.setText("Special Roll: " + casino.specialRoll());
 		diceSum.setText("Dice Value: " + casino.getDiceSum());
-		dieLabel1.setText(casino.getDie1());
-		dieLabel2.setText(casino.getDie2());
+		dieFace1.setFaceValue(casino.getFaceValue1());
+		dieFace2.setFaceValue(casino.getFaceValue2());
 		gameProgress.setText("Game Status: " + casino.getGameStatus());
 		rollStatus.setText("Player Status: " + casino.getPlayerStatus());
 		valueToWin.setText("Roll needed to Win: " + casino.getWinningRoll());
 	}
 	
+	/**
+	 * showSnapshot
+	 * <p>
+	 * Updates all labels to represent a snapshot of an automatic play run.
+	 */
+	private void showSnapshot(Snapshot snapshot){
+		specialLabel.setText("Special Roll: " + snapshot.special);
+		diceSum.setText("Dice Value: " + snapshot.diceSum);
+		dieFace1.setFaceValue(snapshot.die1);
+		dieFace2.setFaceValue(snapshot.die2);
+		gameProgress.setText("Game Status: " + snapshot.gameStatus);
+		rollStatus.setText("Player Status: " + snapshot.playerStatus);
+		valueToWin.setText("Roll needed to Win: " + snapshot.winningRoll);
+		numPlays.setText("Number of Games: " + snapshot.gameNumber);
+		numPlayerWins.setText("Number of Player Wins: " + snapshot.playerWins);
+	}
+	
+	/**
+	 * <b>Snapshot Class</b>
+	 * <p>
+	 * The state of an automatic play run at one moment, captured by the 
+	 * AutoPlayWorker so that the Event Dispatch Thread never reads the worker's
+	 * CrapsHandler while it is being played.
+	 * @author James Wen - jrw2175
+	 */
+	private static class Snapshot {
+		private final long gameNumber;
+		private final long playerWins;
+		private final int die1;
+		private final int die2;
+		private final int diceSum;
+		private final String special;
+		private final String gameStatus;
+		private final String playerStatus;
+		private final int winningRoll;
+		
+		private Snapshot(CrapsHandler casino, long gameNumber, long playerWins){
+			this.gameNumber = gameNumber;
+			this.playerWins = playerWins;
+			this.die1 = casino.getFaceValue1();
+			this.die2 = casino.getFaceValue2();
+			this.diceSum = casino.getDiceSum();
+			this.special = casino.specialRoll();
+			this.gameStatus = casino.getGameStatus();
+			this.playerStatus = casino.getPlayerStatus();
+			this.winningRoll = casino.getWinningRoll();
+		}
+	}
+	
+	/**
+	 * <b>AutoPlayWorker Class</b>
+	 * <p>
+	 * Plays a run of games in the background with its own CrapsHandler, and 
+	 * publishes snapshots of the run at most 60 times a second. Only the latest
+	 * snapshot of those waiting is shown, so the labels are updated at most once
+	 * per frame however fast the games are played.
+	 * <p>
+	 * The run can be paused, resumed and stopped at any point between games. A 
+	 * stopped run finishes normally, with a snapshot of the games played so far
+	 * as its result, so the final counts are shown even when it is stopped while
+	 * paused or before its first frame.
+	 * @author James Wen - jrw2175
+	 */
+	private class AutoPlayWorker extends SwingWorker<Snapshot, Snapshot>{
+		private final long games;
+		private final Object pauseLock = new Object();
+		private boolean paused; //guarded by pauseLock
+		private volatile boolean stopped;
+		
+		private AutoPlayWorker(long games){
+			this.games = games;
+		}
+		
+		protected Snapshot doInBackground() throws InterruptedException {
+			CrapsHandler autoCasino = new CrapsHandler();
+			autoCasino.bonusSwitch(playerBonus);
+			long gameNumber = 0;
+			long playerWins = 0;
+			long lastPublish = System.nanoTime();
+			while (gameNumber < games && !stopped){
+				synchronized (pauseLock){
+					while (paused && !stopped){
+						pauseLock.wait();
+					}
+				}
+				if (stopped){
+					break;
+				}
+				autoCasino.newGame();
+				//Plays through a game until it is over
+				while (!autoCasino.isGameOver()){
+					autoCasino.rollDice();
+					autoCasino.applyRules();
+				}
+				if (autoCasino.hasPlayerWon()){
+					playerWins+=1;//Records player wins
+				}
+				gameNumber+=1;//Records number of games
+				long now = System.nanoTime();
+				if (now - lastPublish >= FRAME_NANOS){
+					lastPublish = now;
+					publish(new Snapshot(autoCasino, gameNumber, playerWins));
+				}
+			}
+			return new Snapshot(autoCasino, gameNumber, playerWins);
+		}
+		
+		protected void process(List<Snapshot> snapshots){
+			if (!isDone()){
+				showSnapshot(snapshots.get(snapshots.size() - 1));
+			}
+		}
+		
+		protected void done(){
+			try {
+				showSnapshot(get());
+			}
+			catch (InterruptedException | ExecutionException e){
+				//The labels keep the last frame shown
+			}
+			start.setEnabled(true);
+			gamesToPlay.setEnabled(true);
+			pause.setEnabled(false);
+			pause.setText("Pause");
+			cancel.setEnabled(false);
+		}
+		
+		private void togglePause(){
+			synchronized (pauseLock){
+				paused = !paused;
+				pauseLock.notifyAll();
+			}
+		}
+		
+		private void stop(){
+			synchronized (pauseLock){
+				stopped = true;
+				pauseLock.notifyAll();
+			}
+		}
+	}
+	
+	/**
+	 * <b>StartListener Class</b>
+	 * <p>
+	 * An action listener that starts automatic play of the number of games in the
+	 * games field when the start button is clicked.
+	 * @author James Wen - jrw2175
+	 */
+	private class StartListener implements ActionListener{
+		public void actionPerformed(ActionEvent event){
+			long games;
+			try {
+				games = Long.parseLong(gamesToPlay.getText().trim().replace("_", ""));
+			}
+			catch (NumberFormatException e){
+				gamesToPlay.selectAll();
+				return;
+			}
+			start.setEnabled(false);
+			gamesToPlay.setEnabled(false);
+			pause.setEnabled(true);
+			cancel.setEnabled(true);
+			autoPlayer = new AutoPlayWorker(games);
+			autoPlayer.execute();
+		}
+	}
+	
+	/**
+	 * <b>PauseListener Class</b>
+	 * <p>
+	 * An action listener that pauses or resumes automatic play when the pause 
+	 * button is clicked.
+	 * @author James Wen - jrw2175
+	 */
+	private class PauseListener implements ActionListener{
+		public void actionPerformed(ActionEvent event){
+			autoPlayer.togglePause();
+			pause.setText(("Pause").equals(pause.getText()) ? "Resume" : "Pause");
+		}
+	}
+	
+	/**
+	 * <b>CancelListener Class</b>
+	 * <p>
+	 * An action listener that stops automatic play when the cancel button is 
+	 * clicked. The labels keep showing the games played so far.
+	 * @author James Wen - jrw2175
+	 */
+	private class CancelListener implements ActionListener{
+		public void actionPerformed(ActionEvent event){
+			pause.setEnabled(false);
+			cancel.setEnabled(false);
+			autoPlayer.stop();
+		}
+	}
+	
 	/**
 	 * <b>CrapsListener Class</b>
 	 * <p>
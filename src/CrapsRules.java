@@ -0,0 +1,319 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * <b>CrapsRules Class</b>
+ * <p>
+ * A set of Craps rules compiled into a flat transition table, so that resolving
+ * any roll is a single array lookup.
+ * <p>
+ * A game is always in one of 13 states: COME_OUT for the first roll, or the 
+ * point (2-12) the player has been left with. The table holds one int per state
+ * and dice sum, indexed state * 13 + sum. The low two bits are the outcome of 
+ * the roll, KEEP_ROLLING, WIN or LOSE, and the rest are the row of the state the
+ * game moves to, which is next state * 13. An entry of 0 is therefore a come-out
+ * roll that decides nothing. Compiled rules never leave a point except by ending
+ * the game, so the point phase of a game only ever reads a single row.
+ * <p>
+ * Rules are defined by a spec of semicolon or newline separated properties:
+ * <ul>
+ * <li>come.win, come.lose - first roll sums that win or lose the game</li>
+ * <li>come.push - first roll sums that decide nothing and are rolled again</li>
+ * <li>point.win, point.lose - sums that win or lose once a point is set, where
+ * the word point stands for the point itself</li>
+ * </ul>
+ * Any other first roll sum becomes the point, and any other sum after that is
+ * rolled again. For example the casino pass line is
+ * "come.win=7,11; come.lose=2,3,12; point.win=point; point.lose=7".
+ * @author James Wen - jrw2175
+ */
+public final class CrapsRules {
+	//Roll outcomes
+	public static final int KEEP_ROLLING = 0;
+	public static final int WIN = 1;
+	public static final int LOSE = 2;
+	public static final int COME_OUT = 0; //state of the first roll of a game
+	static final int OUTCOME_BITS = 2;
+	static final int OUTCOME_MASK = 3;
+	static final int SUMS = 13; //row length, sums 0-12 of which 2-12 are used
+	
+	/**
+	 * The rules CrapsHandler has always played by: only a first roll of 7 wins, 
+	 * any other first roll is the point, and the point must be rolled before a 7.
+	 * These are the rules of crapless craps.
+	 */
+	public static final CrapsRules HOUSE = parse("house", 
+			"come.win=7; point.win=point; point.lose=7");
+	/**
+	 * The casino pass line: 7 or 11 on the first roll wins, 2, 3 or 12 loses.
+	 */
+	public static final CrapsRules CASINO = parse("casino", 
+			"come.win=7,11; come.lose=2,3,12; point.win=point; point.lose=7");
+	/**
+	 * The casino don't pass line: 2 or 3 on the first roll wins, 7 or 11 loses,
+	 * 12 is a push, and a 7 must be rolled before the point.
+	 */
+	public static final CrapsRules DONT_PASS = parse("dont-pass", 
+			"come.win=2,3; come.lose=7,11; come.push=12; point.win=7; point.lose=point");
+	
+	private final String name;
+	private final String spec;
+	private final int[] table = new int[SUMS * SUMS];
+	private final boolean[] reachable = new boolean[SUMS]; //points the come out can set
+	
+	private CrapsRules(String name, String spec, Properties properties){
+		this.name = name;
+		this.spec = spec;
+		for (String key : properties.stringPropertyNames()){
+			if (!key.matches("(come\\.(win|lose|push))|(point\\.(win|lose))")){
+				throw new IllegalArgumentException("unknown rule " + key);
+			}
+		}
+		boolean[] comeWin = sums(properties, "come.win", 0);
+		boolean[] comeLose = sums(properties, "come.lose", 0);
+		boolean[] comePush = sums(properties, "come.push", 0);
+		boolean decides = false;
+		for (int sum = 2; sum <= 12; sum++){
+			int listed = (comeWin[sum] ? 1 : 0) + (comeLose[sum] ? 1 : 0) 
+					+ (comePush[sum] ? 1 : 0);
+			if (listed > 1){
+				throw new IllegalArgumentException("first roll of " + sum 
+						+ " has more than one rule");
+			}
+			if (comeWin[sum]){
+				table[sum] = WIN;
+			}
+			else if (comeLose[sum]){
+				table[sum] = LOSE;
+			}
+			else if (comePush[sum]){
+				table[sum] = transition(COME_OUT, KEEP_ROLLING);
+				continue;
+			}
+			else {
+				table[sum] = transition(sum, KEEP_ROLLING);
+				reachable[sum] = true;
+			}
+			decides = true;
+		}
+		if (!decides){
+			throw new IllegalArgumentException("every first roll is a push");
+		}
+		for (int point = 2; point <= 12; point++){
+			if (!reachable[point]){
+				continue;
+			}
+			boolean[] pointWin = sums(properties, "point.win", point);
+			boolean[] pointLose = sums(properties, "point.lose", point);
+			boolean ends = false;
+			for (int sum = 2; sum <= 12; sum++){
+				if (pointWin[sum] && pointLose[sum]){
+					throw new IllegalArgumentException("roll of " + sum + " with point " 
+							+ point + " both wins and loses");
+				}
+				int outcome = pointWin[sum] ? WIN : pointLose[sum] ? LOSE : KEEP_ROLLING;
+				table[point * SUMS + sum] = (outcome == KEEP_ROLLING) 
+						? transition(point, KEEP_ROLLING) : outcome;
+				ends |= outcome != KEEP_ROLLING;
+			}
+			if (!ends){
+				throw new IllegalArgumentException("a game with point " + point 
+						+ " can never end");
+			}
+		}
+	}
+	
+	/**
+	 * transition
+	 * <p>
+	 * Packs the state a roll moves to and its outcome into a table entry.
+	 */
+	private static int transition(int state, int outcome){
+		return (state * SUMS) << OUTCOME_BITS | outcome;
+	}
+	
+	/**
+	 * sums
+	 * <p>
+	 * Parses a comma separated list of sums, where the word point stands for the
+	 * given point, into a table of which sums are listed.
+	 */
+	private static boolean[] sums(Properties properties, String key, int point){
+		boolean[] listed = new boolean[SUMS];
+		String value = properties.getProperty(key, "").trim();
+		if (value.isEmpty()){
+			return listed;
+		}
+		for (String item : value.split(",")){
+			item = item.trim();
+			int sum;
+			if (("point").equals(item) && point != 0){
+				sum = point;
+			}
+			else {
+				try {
+					sum = Integer.parseInt(item);
+				}
+				catch (NumberFormatException e){
+					throw new IllegalArgumentException("bad sum " + item + " in " + key);
+				}
+			}
+			if (sum < 2 || sum > 12){
+				throw new IllegalArgumentException("sum " + sum + " in " + key 
+						+ " is not in the range of 2-12");
+			}
+			listed[sum] = true;
+		}
+		return listed;
+	}
+	
+	/**
+	 * parse
+	 * <p>
+	 * Compiles rules from a spec of semicolon or newline separated properties.
+	 * @param name - the name of the rules
+	 * @param spec - the rule definitions
+	 * @return the compiled rules
+	 * @throws IllegalArgumentException - if the spec is malformed, contradicts 
+	 * itself or allows a game that can never end
+	 */
+	public static CrapsRules parse(String name, String spec){
+		try {
+			return load(name, new StringReader(spec.replace(';', '\n')), spec);
+		}
+		catch (IOException e){
+			throw new IllegalArgumentException(e); //cannot happen reading a String
+		}
+	}
+	
+	/**
+	 * load
+	 * <p>
+	 * Compiles rules from a properties file.
+	 * @param file - the file holding the rule definitions
+	 * @return the compiled rules, named after the file
+	 * @throws IOException - if the file cannot be read
+	 * @throws IllegalArgumentException - if the definitions are malformed, 
+	 * contradict each other or allow a game that can never end
+	 */
+	public static CrapsRules load(Path file) throws IOException {
+		String spec = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+		return load(file.getFileName().toString(), new StringReader(spec), 
+				spec.trim().replaceAll("\\s*\\R\\s*", "; "));
+	}
+	
+	private static CrapsRules load(String name, Reader reader, String spec) 
+			throws IOException {
+		Properties properties = new Properties();
+		properties.load(reader);
+		return new CrapsRules(name, spec, properties);
+	}
+	
+	/**
+	 * forName
+	 * <p>
+	 * Returns the built-in rules with the given name (house, casino or 
+	 * dont-pass), or compiles the argument as a spec if it contains an =, or 
+	 * otherwise loads it as a properties file.
+	 * @param rules - a built-in name, a spec or a file name
+	 * @return the compiled rules
+	 * @throws IOException - if the file cannot be read
+	 * @throws IllegalArgumentException - if the rules are not valid
+	 */
+	public static CrapsRules forName(String rules) throws IOException {
+		for (CrapsRules builtIn : new CrapsRules[] {HOUSE, CASINO, DONT_PASS}){
+			if (builtIn.name.equalsIgnoreCase(rules)){
+				return builtIn;
+			}
+		}
+		if (rules.contains("=")){
+			return parse("custom", rules);
+		}
+		return load(Paths.get(rules));
+	}
+	
+	/**
+	 * outcome
+	 * <p>
+	 * Returns the result of rolling sum in the given state.
+	 * @param state - COME_OUT or the point the player has been left with
+	 * @param sum - the value rolled
+	 * @return KEEP_ROLLING, WIN or LOSE
+	 */
+	public int outcome(int state, int sum){
+		return table[state * SUMS + sum] & OUTCOME_MASK;
+	}
+	
+	/**
+	 * nextState
+	 * <p>
+	 * Returns the state a game moves to after rolling sum in the given state, if 
+	 * the roll does not end it.
+	 * @param state - COME_OUT or the point the player has been left with
+	 * @param sum - the value rolled
+	 * @return COME_OUT or the point the player is left with
+	 */
+	public int nextState(int state, int sum){
+		return (table[state * SUMS + sum] >>> OUTCOME_BITS) / SUMS;
+	}
+	
+	/**
+	 * isPoint
+	 * <p>
+	 * Returns whether the first roll of a game can leave the player with the 
+	 * given point.
+	 * @param point - a value in the range of 2-12
+	 * @return whether point can be set
+	 */
+	public boolean isPoint(int point){
+		return point >= 0 && point < SUMS && reachable[point];
+	}
+	
+	/**
+	 * table
+	 * <p>
+	 * Returns the compiled transition table itself, for engines to read rolls 
+	 * from directly. It must not be changed.
+	 * @return the table, indexed state * 13 + sum
+	 */
+	int[] table(){
+		return table;
+	}
+	
+	/**
+	 * getName
+	 * <p>
+	 * Returns the name of the rules.
+	 * @return name - the name of the rules
+	 */
+	public String getName(){
+		return name;
+	}
+	
+	/**
+	 * getSpec
+	 * <p>
+	 * Returns the definition of the rules, which parse compiles back into the 
+	 * same rules.
+	 * @return spec - the rule definitions
+	 */
+	public String getSpec(){
+		return spec;
+	}
+	
+	/**
+	 * toString
+	 * <p>
+	 * Returns the name and definition of the rules.
+	 * @return String representation of the rules
+	 */
+	public String toString(){
+		return name + " (" + spec + ")";
+	}
+} //End of CrapsRules class
@@ -0,0 +1,292 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <b>CrapsServer Class</b>
+ * <p>
+ * Hosts many independent Craps sessions in one JVM behind a local HTTP/JSON API,
+ * served by the JDK's built-in HTTP server.
+ * <p>
+ * Endpoints, all answering with the session state as JSON:
+ * <ul>
+ * <li>POST /sessions[?cheat=true] - creates a session with a new game</li>
+ * <li>GET /sessions/{id} - game status, player status, winning roll, dice and 
+ * special roll</li>
+ * <li>POST /sessions/{id}/new-game - starts a new game</li>
+ * <li>POST /sessions/{id}/roll - rolls the dice and applies the rules</li>
+ * <li>DELETE /sessions/{id} - ends the session</li>
+ * </ul>
+ * Other paths answer 404, and other methods on these paths answer 405 with an
+ * Allow header.
+ * Sessions live in a ConcurrentHashMap and are evicted once they have been idle
+ * for longer than the idle timeout. Each request runs on its own virtual thread
+ * when the JVM supports them (Java 21 and later), and on a cached thread pool
+ * otherwise.
+ * <p>
+ * Usage: java CrapsServer [port] [idleSeconds]
+ * @author James Wen - jrw2175
+ */
+public class CrapsServer {
+	private final ConcurrentHashMap<String, CrapsSession> sessions = 
+			new ConcurrentHashMap<String, CrapsSession>();
+	private final long idleNanos;
+	private final HttpServer server;
+	private final ExecutorService requests;
+	private final ScheduledExecutorService evictor;
+	
+	/**
+	 * Constructs a server listening on the loopback interface.
+	 * @param port - the port to listen on, 0 for any free port
+	 * @param idleSeconds - how long a session may go unused before it is evicted
+	 * @throws IOException - if the port cannot be bound
+	 */
+	public CrapsServer(int port, long idleSeconds) throws IOException {
+		this.idleNanos = TimeUnit.SECONDS.toNanos(idleSeconds);
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 4096);
+		this.requests = requestExecutor();
+		this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "session-evictor");
+			thread.setDaemon(true);
+			return thread;
+		});
+		server.setExecutor(requests);
+		server.createContext("/sessions", this::handle);
+	}
+	
+	/**
+	 * requestExecutor
+	 * <p>
+	 * Returns a virtual-thread-per-task executor if this JVM has one, looked up
+	 * reflectively so that the server still compiles and runs on Java 17, and a
+	 * cached thread pool otherwise.
+	 */
+	private static ExecutorService requestExecutor(){
+		try {
+			return (ExecutorService) Executors.class
+					.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch (ReflectiveOperationException | RuntimeException e){
+			return Executors.newCachedThreadPool();
+		}
+	}
+	
+	/**
+	 * start
+	 * <p>
+	 * Starts serving requests and evicting idle sessions.
+	 */
+	public void start(){
+		long period = Math.max(1, TimeUnit.NANOSECONDS.toMillis(idleNanos) / 2);
+		evictor.scheduleAtFixedRate(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+		server.start();
+	}
+	
+	/**
+	 * stop
+	 * <p>
+	 * Stops serving requests, waiting up to the given time for ongoing ones.
+	 * @param delaySeconds - the longest time to wait for ongoing requests
+	 */
+	public void stop(int delaySeconds){
+		server.stop(delaySeconds);
+		evictor.shutdownNow();
+		requests.shutdownNow();
+	}
+	
+	/**
+	 * getPort
+	 * <p>
+	 * Returns the port the server is listening on.
+	 * @return port number
+	 */
+	public int getPort(){
+		return server.getAddress().getPort();
+	}
+	
+	/**
+	 * getSessionCount
+	 * <p>
+	 * Returns the number of live sessions.
+	 * @return number of sessions
+	 */
+	public int getSessionCount(){
+		return sessions.size();
+	}
+	
+	/**
+	 * evictIdle
+	 * <p>
+	 * Removes every session that has been idle for longer than the idle timeout.
+	 */
+	private void evictIdle(){
+		long oldest = System.nanoTime() - idleNanos;
+		sessions.values().removeIf(session -> session.getLastUsed() - oldest < 0);
+	}
+	
+	/**
+	 * handle
+	 * <p>
+	 * Routes a request under /sessions to the matching session operation. The 
+	 * context also receives paths that merely start with /sessions, such as 
+	 * /sessionsXYZ, which are not found.
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			String method = exchange.getRequestMethod();
+			String[] parts = exchange.getRequestURI().getPath().split("/");
+			//parts[0] is empty and parts[1] must be "sessions"
+			if (parts.length < 2 || !("sessions").equals(parts[1]) || parts.length > 4
+					|| (parts.length == 4 && !("roll").equals(parts[3]) 
+					&& !("new-game").equals(parts[3]))){
+				send(exchange, 404, error("no such operation"));
+				return;
+			}
+			if (parts.length == 2){
+				if (!("POST").equals(method)){
+					notAllowed(exchange, "POST");
+					return;
+				}
+				String cheat;
+				try {
+					cheat = queryParameter(exchange.getRequestURI().getRawQuery(), "cheat");
+				}
+				catch (IllegalArgumentException e){
+					send(exchange, 400, error("malformed query"));
+					return;
+				}
+				if (cheat != null && !("true").equals(cheat) && !("false").equals(cheat)){
+					send(exchange, 400, error("cheat must be true or false"));
+					return;
+				}
+				send(exchange, 201, createSession(("true").equals(cheat)).state());
+				return;
+			}
+			if (parts.length == 3 && !("GET").equals(method) && !("DELETE").equals(method)){
+				notAllowed(exchange, "GET, DELETE");
+				return;
+			}
+			if (parts.length == 4 && !("POST").equals(method)){
+				notAllowed(exchange, "POST");
+				return;
+			}
+			CrapsSession session = sessions.get(parts[2]);
+			if (session == null){
+				send(exchange, 404, error("no such session"));
+			}
+			else if (parts.length == 3 && ("GET").equals(method)){
+				send(exchange, 200, session.state());
+			}
+			else if (parts.length == 3){
+				sessions.remove(session.getId());
+				send(exchange, 200, session.state());
+			}
+			else if (("roll").equals(parts[3])){
+				send(exchange, 200, session.roll());
+			}
+			else {
+				send(exchange, 200, session.newGame());
+			}
+		}
+		finally {
+			exchange.close();
+		}
+	}
+	
+	/**
+	 * queryParameter
+	 * <p>
+	 * Returns the decoded value of the named parameter of a raw query string, 
+	 * the empty string if it has no value, or null if it is absent.
+	 */
+	private static String queryParameter(String query, String name){
+		if (query == null){
+			return null;
+		}
+		for (String pair : query.split("&")){
+			int equals = pair.indexOf('=');
+			String key = (equals < 0) ? pair : pair.substring(0, equals);
+			if (name.equals(URLDecoder.decode(key, StandardCharsets.UTF_8))){
+				return (equals < 0) ? "" 
+						: URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * notAllowed
+	 * <p>
+	 * Answers 405 to a method the path does not support, listing the ones it 
+	 * does.
+	 */
+	private static void notAllowed(HttpExchange exchange, String allowed) 
+			throws IOException {
+		exchange.getResponseHeaders().set("Allow", allowed);
+		send(exchange, 405, error("method not allowed"));
+	}
+	
+	/**
+	 * createSession
+	 * <p>
+	 * Creates a session with an unused random id and its own seeded dice source.
+	 */
+	private CrapsSession createSession(boolean cheat){
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		while (true){
+			String id = Long.toHexString(random.nextLong() & Long.MAX_VALUE);
+			CrapsSession session = new CrapsSession(id, RandomDiceSource.of(
+					RandomDiceSource.L64X128_MIX, random.nextLong()), cheat);
+			if (sessions.putIfAbsent(id, session) == null){
+				return session;
+			}
+		}
+	}
+	
+	private static String error(String message){
+		return "{\"error\":\"" + message + "\"}";
+	}
+	
+	private static void send(HttpExchange exchange, int status, String json) 
+			throws IOException {
+		byte[] body = json.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()){
+			out.write(body);
+		}
+	}
+	
+	/**
+	 * The main method starts a server on the given port (default 8080) whose 
+	 * sessions are evicted after the given idle time (default 600 seconds).
+	 */
+	public static void main(String[] args){
+		try {
+			int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+			long idleSeconds = args.length > 1 ? Long.parseLong(args[1]) : 600;
+			CrapsServer server = new CrapsServer(port, idleSeconds);
+			server.start();
+			System.out.println("Craps server listening on http://127.0.0.1:" 
+					+ server.getPort() + "/sessions");
+		}
+		catch (NumberFormatException e){
+			System.out.println("Usage: java CrapsServer [port] [idleSeconds]");
+			System.exit(1);
+		}
+		catch (IOException e){
+			System.out.println("Cannot start server: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+} //End of CrapsServer class
@@ -0,0 +1,108 @@
+/**
+ * <b>CrapsSession Class</b>
+ * <p>
+ * One player's game hosted by the CrapsServer: a CrapsHandler with its own dice
+ * source, and the time it was last used.
+ * <p>
+ * CrapsHandler is not thread safe, and the server may handle several requests 
+ * for the same session at once, so every operation on the handler is done while
+ * holding the session's lock. State is returned as JSON built inside the lock,
+ * so it always describes a single moment of the game.
+ * @author James Wen - jrw2175
+ */
+public class CrapsSession {
+	private final String id;
+	private final CrapsHandler casino;
+	private volatile long lastUsed;
+	
+	/**
+	 * Constructs a session with a new game.
+	 * @param id - the session id
+	 * @param source - the dice source of the session, used by no other session
+	 * @param playerBonus - whether cheat mode is on or not
+	 */
+	public CrapsSession(String id, DiceSource source, boolean playerBonus){
+		this.id = id;
+		this.casino = new CrapsHandler(source);
+		this.casino.bonusSwitch(playerBonus);
+		touch();
+	}
+	
+	/**
+	 * newGame
+	 * <p>
+	 * Starts a new game.
+	 * @return the state of the session as JSON
+	 */
+	public synchronized String newGame(){
+		touch();
+		casino.newGame();
+		return toJson();
+	}
+	
+	/**
+	 * roll
+	 * <p>
+	 * Rolls the dice and applies the rules, unless the game is already over.
+	 * @return the state of the session as JSON
+	 */
+	public synchronized String roll(){
+		touch();
+		if (!casino.isGameOver()){
+			casino.rollDice();
+			casino.applyRules();
+		}
+		return toJson();
+	}
+	
+	/**
+	 * state
+	 * <p>
+	 * Returns the state of the session without changing it.
+	 * @return the state of the session as JSON
+	 */
+	public synchronized String state(){
+		touch();
+		return toJson();
+	}
+	
+	/**
+	 * getId
+	 * <p>
+	 * Returns the session id.
+	 * @return id - the session id
+	 */
+	public String getId(){
+		return id;
+	}
+	
+	/**
+	 * getLastUsed
+	 * <p>
+	 * Returns when the session was last used, in System.nanoTime units.
+	 * @return lastUsed - time of last use
+	 */
+	public long getLastUsed(){
+		return lastUsed;
+	}
+	
+	private void touch(){
+		lastUsed = System.nanoTime();
+	}
+	
+	/**
+	 * toJson
+	 * <p>
+	 * Returns the state of the game as a JSON object. Must hold the lock.
+	 */
+	private String toJson(){
+		return "{\"id\":\"" + id + "\""
+			 + ",\"gameStatus\":\"" + casino.getGameStatus() + "\""
+			 + ",\"playerStatus\":\"" + casino.getPlayerStatus() + "\""
+			 + ",\"winningRoll\":" + casino.getWinningRoll()
+			 + ",\"diceSum\":" + casino.getDiceSum()
+			 + ",\"die1\":" + casino.getFaceValue1()
+			 + ",\"die2\":" + casino.getFaceValue2()
+			 + ",\"specialRoll\":\"" + casino.specialRoll() + "\"}";
+	}
+} //End of CrapsSession class
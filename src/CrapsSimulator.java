@@ -0,0 +1,899 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * <b>CrapsSimulator Class</b>
+ * <p>
+ * Plays large numbers of Craps games without a visual interface, for statistical
+ * testing of the game rules and the cheat mode.
+ * <p>
+ * Unlike the autoplay in CrapsPanel, no labels are updated while games are being
+ * played, so nothing from AWT or Swing is loaded and the simulator can be run on a
+ * machine without a display.
+ * <p>
+ * Games are played by one of five engines: HANDLER plays every roll through a
+ * CrapsHandler exactly as the visual interface does, KERNEL plays them through
+ * the allocation-free CrapsKernel, BATCH plays them through the CrapsKernel
+ * from rolls made thousands at a time by a DiceBatch, FAST plays them 
+ * through the CrapsKernel with the point phase drawn directly instead of 
+ * rolled, and POOL plays tens of thousands at once, packed into a GamePool 
+ * and advanced a roll at a time from a DiceBatch. All follow the same rules.
+ * <p>
+ * Usage: java CrapsSimulator [games] [-cheat] [-threads n] [-seed s] [-rng name]
+ * [-engine handler|kernel|batch|fast|pool] [-rules name|spec|file] [-bench] [-verify]
+ * [-compare engine] [-stats] [-epsilon e] [-monitor] [-journal file] 
+ * [-replay file] [-records file] [-deterministic] [-checkpoint file] 
+ * [-interval seconds] [-dice NdM]
+ * <p>
+ * With more than one thread the games are played by a ParallelSimulator. The
+ * -deterministic option plays them in seeded chunks whose results, and their 
+ * printed SHA-256 digest, are identical for any number of threads. It prints
+ * the seed first, so a run without -seed can be repeated, and plays every 
+ * game, so it cannot be combined with -epsilon. Adding 
+ * -checkpoint saves the progress of such a run to a file every -interval 
+ * seconds (default 10), and running the same command again resumes it. The 
+ * -bench option plays the games with every engine and compares their throughput,
+ * and -verify checks the results of a run against the exact CrapsSolver. The
+ * -compare option plays the games with both -engine and the given engine and 
+ * tests whether their outcomes, game lengths and points share a distribution. The
+ * -stats option records full SimulationStats for every game, and -epsilon plays
+ * games, up to the given number, only until the 95% confidence interval on the
+ * win rate is narrower than plus or minus epsilon; only a single threaded run
+ * can stop early, so -epsilon cannot be combined with -threads. The -monitor 
+ * option publishes live telemetry through a SimulationMonitor MBean and JFR 
+ * events, and prints it every few seconds, for plain, -stats and 
+ * -deterministic runs alike. The -journal option records every roll of a single 
+ * threaded run through the kernel in a RollJournal file, and cannot be 
+ * combined with -threads, -deterministic, another -engine, -stats, -epsilon,
+ * -monitor, -bench, -compare or -replay; -replay plays the games recorded in
+ * such a file through a CrapsHandler instead of rolling dice. The -records 
+ * option appends a record of every game of a single threaded run through the
+ * kernel to a GameRecordStore, and cannot be combined with the options 
+ * -journal cannot be, nor with -journal. The -rules option plays by other 
+ * rules than the house rules, as named or defined for CrapsRules.forName. The
+ * -dice option rolls other dice than a pair of six sided dice, in dice 
+ * notation such as 3d4, whose sums must all lie in 2-12; only a single 
+ * threaded run of the FAST engine can roll them.
+ * @author James Wen - jrw2175
+ */
+public class CrapsSimulator {
+	
+	/**
+	 * <b>Engine Enum</b>
+	 * <p>
+	 * The ways in which the simulator can play games.
+	 */
+	public enum Engine { HANDLER, KERNEL, BATCH, FAST, POOL }
+	
+	/**
+	 * The version of the games the engines play. Must be raised whenever a 
+	 * change makes any engine play different games from the same source, so
+	 * that results cached by SweepRunner under the old version are not reused.
+	 */
+	public static final int ENGINE_VERSION = 2;
+	private static final int BATCH_SIZE = 1024; //rolls per DiceBatch
+	private static final int POOL_CAPACITY = 1 << 16; //games in flight in a GamePool
+	private static final int CHECK_INTERVAL = 1024; //games between precision checks
+	private static final long MIN_GAMES = 1000; //games before stopping early
+	private static final int MONITOR_CHUNK = 1 << 16; //games per telemetry report
+	private static final int SAMPLE_MASK = 63; //one game in 64 is timed
+	
+	private final boolean playerBonus; //cheat mode
+	private final Engine engine;
+	private SimulationMonitor monitor;
+	private int worker;
+	private CrapsRules rules = CrapsRules.HOUSE;
+	private DiceModel dice = DiceModel.PAIR;
+	
+	/**
+	 * Constructs a simulator whose games are played by the kernel with cheat mode
+	 * on or off.
+	 * @param playerBonus - whether cheat mode is on or not
+	 */
+	public CrapsSimulator(boolean playerBonus){
+		this(playerBonus, Engine.KERNEL);
+	}
+	
+	/**
+	 * Constructs a simulator whose games are played by the given engine with 
+	 * cheat mode on or off.
+	 * @param playerBonus - whether cheat mode is on or not
+	 * @param engine - the engine to play games with
+	 */
+	public CrapsSimulator(boolean playerBonus, Engine engine){
+		this.playerBonus = playerBonus;
+		this.engine = engine;
+	}
+	
+	/**
+	 * setMonitor
+	 * <p>
+	 * Makes later runs report their progress to the given monitor, and to JDK 
+	 * Flight Recorder, as the given worker. Pass null to stop monitoring.
+	 * @param monitor - the monitor to report to, or null
+	 * @param worker - the worker number to report as
+	 */
+	public void setMonitor(SimulationMonitor monitor, int worker){
+		this.monitor = monitor;
+		this.worker = worker;
+	}
+	
+	/**
+	 * setRules
+	 * <p>
+	 * Makes later runs play by the given rules instead of the house rules.
+	 * @param rules - the rules to play by
+	 */
+	public void setRules(CrapsRules rules){
+		this.rules = rules;
+	}
+	
+	/**
+	 * setDice
+	 * <p>
+	 * Makes later runs roll the given dice instead of a pair of six sided dice.
+	 * Only the FAST engine, which draws the sums of the dice from their alias 
+	 * table, can roll other dice, and only dice whose sums all lie in 2-12.
+	 * @param dice - the dice to roll
+	 * @throws IllegalArgumentException - if the dice are not DiceModel.PAIR and
+	 * the engine is not FAST
+	 */
+	public void setDice(DiceModel dice){
+		if (dice != DiceModel.PAIR && engine != Engine.FAST){
+			throw new IllegalArgumentException("only the FAST engine rolls " + dice);
+		}
+		this.dice = dice;
+	}
+	
+	/**
+	 * run
+	 * <p>
+	 * Plays the requested number of games with an unseeded source and records 
+	 * the number of player wins and dice rolls.
+	 * @param games - the number of games to play
+	 * @return result - tallies and timing of the games played
+	 * @throws IllegalArgumentException - if the number of games is negative
+	 */
+	public SimulationResult run(long games){
+		return run(games, RandomDiceSource.of(RandomDiceSource.L64X128_MIX, 
+				System.nanoTime()));
+	}
+	
+	/**
+	 * run
+	 * <p>
+	 * Plays the requested number of games, rolling with the given source.
+	 * @param games - the number of games to play
+	 * @param source - the dice source to roll with
+	 * @return result - tallies and timing of the games played
+	 * @throws IllegalArgumentException - if the number of games is negative
+	 */
+	public SimulationResult run(long games, DiceSource source){
+		if (games < 0){
+			throw new IllegalArgumentException("games must not be negative");
+		}
+		if (monitor != null){
+			return runMonitored(games, source);
+		}
+		if (engine == Engine.HANDLER){
+			return runHandler(games, source);
+		}
+		long start = System.nanoTime();
+		if (engine == Engine.POOL){
+			GamePool pool = new GamePool(POOL_CAPACITY, source, playerBonus, rules);
+			pool.run(games, DiceBatch.create(BATCH_SIZE), null);
+			return new SimulationResult(games, pool.getWins(), pool.getRolls(), 
+					System.nanoTime() - start);
+		}
+		CrapsKernel kernel = new CrapsKernel(source, playerBonus, rules, dice);
+		if (engine == Engine.BATCH){
+			kernel.run(games, DiceBatch.create(BATCH_SIZE));
+		}
+		else if (engine == Engine.FAST){
+			kernel.runFast(games);
+		}
+		else {
+			kernel.run(games);
+		}
+		return new SimulationResult(games, kernel.getWins(), kernel.getRolls(), 
+				System.nanoTime() - start);
+	}
+	
+	/**
+	 * run
+	 * <p>
+	 * Plays games, recording every one in the given statistics, until either 
+	 * maxGames have been played or the confidence interval on the win rate is 
+	 * no wider than plus or minus epsilon. The BATCH engine records games through
+	 * the kernel one game at a time, and the POOL engine plays the games in 
+	 * rounds of POOL_CAPACITY, checking the precision after each. With a 
+	 * monitor, the games are reported in chunks as by runMonitored, but the
+	 * same games are played as without one.
+	 * @param maxGames - the most games to play
+	 * @param epsilon - the wanted half width of the interval, 0 to play all 
+	 * maxGames
+	 * @param z - the standard normal quantile of the confidence level
+	 * @param source - the dice source to roll with
+	 * @param stats - the statistics to record games in
+	 * @throws IllegalArgumentException - if maxGames is negative
+	 */
+	public void run(long maxGames, double epsilon, double z, DiceSource source, 
+			SimulationStats stats){
+		if (maxGames < 0){
+			throw new IllegalArgumentException("games must not be negative");
+		}
+		LatencyHistogram durations = (monitor == null) ? null : new LatencyHistogram();
+		SimulationChunkEvent event = (monitor == null) ? null : new SimulationChunkEvent();
+		long reportedGames = stats.getGames();
+		long reportedWins = stats.getWins();
+		long reportedRolls = stats.getRolls();
+		if (event != null){
+			event.begin();
+		}
+		if (engine == Engine.POOL){
+			GamePool pool = new GamePool(POOL_CAPACITY, source, playerBonus, rules);
+			DiceBatch batch = DiceBatch.create(BATCH_SIZE);
+			for (long game = 0; game < maxGames; game += POOL_CAPACITY){
+				pool.run(Math.min(POOL_CAPACITY, maxGames - game), batch, stats);
+				if (event != null){
+					report(event, stats.getGames() - reportedGames, stats.getWins() - reportedWins,
+							stats.getRolls() - reportedRolls, durations);
+					reportedGames = stats.getGames();
+					reportedWins = stats.getWins();
+					reportedRolls = stats.getRolls();
+					event = new SimulationChunkEvent();
+					event.begin();
+				}
+				if (epsilon > 0 && stats.getGames() >= MIN_GAMES 
+						&& stats.getWinRateHalfWidth(z) <= epsilon){
+					return;
+				}
+			}
+			return;
+		}
+		CrapsKernel kernel = null;
+		CrapsHandler casino = null;
+		if (engine == Engine.HANDLER){
+			casino = new CrapsHandler(source, rules);
+			casino.bonusSwitch(playerBonus);
+		}
+		else {
+			kernel = new CrapsKernel(source, playerBonus, rules, dice);
+		}
+		for (long game = 0; game < maxGames; game++){
+			long gameStart = (durations != null && (game & SAMPLE_MASK) == 0) 
+					? System.nanoTime() : 0;
+			if (kernel != null){
+				int outcome = (engine == Engine.FAST) ? kernel.playGameFast() 
+						: kernel.playGame();
+				stats.record(outcome == CrapsKernel.WIN, kernel.getLastRolls(), 
+						kernel.getLastPoint());
+			}
+			else {
+				casino.newGame();
+				int rolls = 0;
+				while (!casino.isGameOver()){
+					casino.rollDice();
+					casino.applyRules();
+					rolls++;
+				}
+				stats.record(casino.hasPlayerWon(), rolls, casino.getWinningRoll());
+			}
+			if (gameStart != 0){
+				durations.record(System.nanoTime() - gameStart);
+			}
+			boolean done = epsilon > 0 && (game + 1) % CHECK_INTERVAL == 0 
+					&& stats.getGames() >= MIN_GAMES 
+					&& stats.getWinRateHalfWidth(z) <= epsilon;
+			if (event != null && (done || (game + 1) % MONITOR_CHUNK == 0 
+					|| game + 1 == maxGames)){
+				report(event, stats.getGames() - reportedGames, stats.getWins() - reportedWins,
+						stats.getRolls() - reportedRolls, durations);
+				reportedGames = stats.getGames();
+				reportedWins = stats.getWins();
+				reportedRolls = stats.getRolls();
+				event = new SimulationChunkEvent();
+				event.begin();
+			}
+			if (done){
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * run
+	 * <p>
+	 * Plays the requested number of games through the kernel, rolling with the
+	 * given source, and records every roll and game end in the journal. 
+	 * @param games - the number of games to play
+	 * @param source - the dice source to roll with
+	 * @param journal - the journal to record the games in
+	 * @return result - tallies and timing of the games played
+	 * @throws IllegalArgumentException - if the number of games is negative
+	 * @throws java.io.UncheckedIOException - if the journal cannot be written
+	 */
+	public SimulationResult run(long games, DiceSource source, RollJournalWriter journal){
+		if (games < 0){
+			throw new IllegalArgumentException("games must not be negative");
+		}
+		long start = System.nanoTime();
+		CrapsKernel kernel = new CrapsKernel(source, playerBonus, rules);
+		for (long game = 0; game < games; game++){
+			kernel.playGame(journal);
+		}
+		return new SimulationResult(games, kernel.getWins(), kernel.getRolls(), 
+				System.nanoTime() - start);
+	}
+	
+	/**
+	 * run
+	 * <p>
+	 * Plays the requested number of games through the kernel, rolling with the
+	 * given source, and appends the record of every game to the store.
+	 * @param games - the number of games to play
+	 * @param source - the dice source to roll with
+	 * @param records - the store to append the games to
+	 * @return result - tallies and timing of the games played
+	 * @throws IllegalArgumentException - if the number of games is negative
+	 * @throws java.io.UncheckedIOException - if the store cannot be grown
+	 */
+	public SimulationResult run(long games, DiceSource source, GameRecordStore records){
+		if (games < 0){
+			throw new IllegalArgumentException("games must not be negative");
+		}
+		long start = System.nanoTime();
+		CrapsKernel kernel = new CrapsKernel(source, playerBonus, rules);
+		for (long game = 0; game < games; game++){
+			int outcome = kernel.playGame();
+			records.append(kernel.getLastComeOut(), kernel.isLastPointSet() 
+					? kernel.getLastPoint() : GameRecordStore.NO_POINT, kernel.getLastRolls(), 
+					outcome == CrapsKernel.WIN, kernel.getLastSpecial());
+		}
+		return new SimulationResult(games, kernel.getWins(), kernel.getRolls(), 
+				System.nanoTime() - start);
+	}
+	
+	/**
+	 * replay
+	 * <p>
+	 * Plays every game recorded in a journal through a CrapsHandler, setting the
+	 * dice to the recorded faces instead of rolling them.
+	 * @param journal - the journal to replay
+	 * @return result - tallies and timing of the replayed games
+	 * @throws IOException - if the journal cannot be read
+	 * @throws IllegalStateException - if a recorded game does not end where the
+	 * house rules say it does
+	 */
+	public static SimulationResult replay(RollJournalReader journal) throws IOException {
+		return replay(journal, CrapsRules.HOUSE);
+	}
+	
+	/**
+	 * replay
+	 * <p>
+	 * Plays every game recorded in a journal through a CrapsHandler by the given
+	 * rules, setting the dice to the recorded faces instead of rolling them.
+	 * @param journal - the journal to replay
+	 * @param rules - the rules the journal was recorded with
+	 * @return result - tallies and timing of the replayed games
+	 * @throws IOException - if the journal cannot be read
+	 * @throws IllegalStateException - if a recorded game does not end where the
+	 * rules say it does
+	 */
+	public static SimulationResult replay(RollJournalReader journal, CrapsRules rules) 
+			throws IOException {
+		CrapsHandler casino = new CrapsHandler(Die.SHARED_SOURCE, rules);
+		long games = 0;
+		long wins = 0;
+		long rolls = 0;
+		long start = System.nanoTime();
+		casino.newGame();
+		for (int code = journal.next(); code >= 0; code = journal.next()){
+			if (code == RollJournal.END_OF_GAME){
+				if (!casino.isGameOver()){
+					throw new IllegalStateException("game " + games + " ends too early");
+				}
+				games++;
+				if (casino.hasPlayerWon()){
+					wins++;
+				}
+				casino.newGame();
+			}
+			else {
+				if (casino.isGameOver()){
+					throw new IllegalStateException("game " + games + " ends too late");
+				}
+				casino.rollDice(RollJournal.face1(code), RollJournal.face2(code));
+				casino.applyRules();
+				rolls++;
+			}
+		}
+		return new SimulationResult(games, wins, rolls, System.nanoTime() - start);
+	}
+	
+	/**
+	 * runMonitored
+	 * <p>
+	 * Plays the requested number of games in chunks, timing one game in 64 and
+	 * reporting each chunk to the monitor and as a SimulationChunkEvent. The 
+	 * BATCH and POOL engines play their games one at a time through the kernel
+	 * here, so that they can be timed.
+	 */
+	private SimulationResult runMonitored(long games, DiceSource source){
+		CrapsKernel kernel = new CrapsKernel(source, playerBonus, rules, dice);
+		CrapsHandler casino = new CrapsHandler(source, rules);
+		casino.bonusSwitch(playerBonus);
+		LatencyHistogram durations = new LatencyHistogram();
+		long wins = 0;
+		long rolls = 0;
+		long start = System.nanoTime();
+		for (long done = 0; done < games; ){
+			int chunk = (int) Math.min(MONITOR_CHUNK, games - done);
+			SimulationChunkEvent event = new SimulationChunkEvent();
+			event.begin();
+			long chunkWins = 0;
+			long chunkRolls = 0;
+			for (int game = 0; game < chunk; game++){
+				long gameStart = (game & SAMPLE_MASK) == 0 ? System.nanoTime() : 0;
+				if (engine == Engine.HANDLER){
+					casino.newGame();
+					while (!casino.isGameOver()){
+						casino.rollDice();
+						casino.applyRules();
+						chunkRolls++;
+					}
+					if (casino.hasPlayerWon()){
+						chunkWins++;
+					}
+				}
+				else {
+					int outcome = (engine == Engine.FAST) ? kernel.playGameFast() 
+							: kernel.playGame();
+					if (outcome == CrapsKernel.WIN){
+						chunkWins++;
+					}
+					chunkRolls += kernel.getLastRolls();
+				}
+				if (gameStart != 0){
+					durations.record(System.nanoTime() - gameStart);
+				}
+			}
+			report(event, chunk, chunkWins, chunkRolls, durations);
+			wins += chunkWins;
+			rolls += chunkRolls;
+			done += chunk;
+		}
+		return new SimulationResult(games, wins, rolls, System.nanoTime() - start);
+	}
+	
+	/**
+	 * report
+	 * <p>
+	 * Ends the event of a chunk of games, commits it to JDK Flight Recorder if 
+	 * enabled, reports the chunk to the monitor and resets the durations.
+	 */
+	private void report(SimulationChunkEvent event, long chunkGames, long chunkWins, 
+			long chunkRolls, LatencyHistogram durations){
+		event.end();
+		if (event.shouldCommit()){
+			event.worker = worker;
+			event.games = chunkGames;
+			event.wins = chunkWins;
+			event.rolls = chunkRolls;
+			event.commit();
+		}
+		monitor.chunkCompleted(worker, chunkGames, chunkRolls, durations);
+		durations.reset();
+	}
+	
+	/**
+	 * runHandler
+	 * <p>
+	 * Plays the requested number of games through a single CrapsHandler.
+	 */
+	private SimulationResult runHandler(long games, DiceSource source){
+		CrapsHandler casino = new CrapsHandler(source, rules);
+		casino.bonusSwitch(playerBonus);
+		long wins = 0;
+		long rolls = 0;
+		long start = System.nanoTime();
+		for (long game = 0; game < games; game++){
+			casino.newGame();
+			//Plays through a game until it is over
+			while (!casino.isGameOver()){
+				casino.rollDice();
+				casino.applyRules();
+				rolls++;
+			}
+			if (casino.hasPlayerWon()){
+				wins++;
+			}
+		}
+		return new SimulationResult(games, wins, rolls, System.nanoTime() - start);
+	}
+	
+	/**
+	 * The main method for the headless simulator.
+	 * <p>
+	 * The first argument is the number of games to play (default 1000000). Passing
+	 * -cheat turns cheat mode on, -threads sets the number of worker threads 
+	 * (default 1), -seed fixes the seed of the random number generators, -rng
+	 * names the generator algorithm (default L64X128MixRandom, or Sobol for a
+	 * SobolDiceSource), -engine picks
+	 * the engine (default kernel) and -rules the rules (default house).
+	 */
+	public static void main(String[] args){
+		long games = 1000000;
+		boolean cheat = false;
+		boolean bench = false;
+		boolean verify = false;
+		boolean fullStats = false;
+		boolean monitored = false;
+		boolean deterministic = false;
+		String checkpointFile = null;
+		long interval = 10;
+		String journalFile = null;
+		String recordsFile = null;
+		String replayFile = null;
+		double epsilon = 0;
+		int threads = 1;
+		long seed = System.nanoTime();
+		String algorithm = RandomDiceSource.L64X128_MIX;
+		Engine engine = Engine.KERNEL;
+		CrapsRules rules = CrapsRules.HOUSE;
+		Engine compared = null;
+		DiceModel dice = DiceModel.PAIR;
+		try {
+			for (int i = 0; i < args.length; i++){
+				if (("-cheat").equals(args[i])){
+					cheat = true;
+				}
+				else if (("-bench").equals(args[i])){
+					bench = true;
+				}
+				else if (("-verify").equals(args[i])){
+					verify = true;
+				}
+				else if (("-monitor").equals(args[i])){
+					monitored = true;
+				}
+				else if (("-dice").equals(args[i])){
+					dice = DiceModel.of(args[++i]);
+				}
+				else if (("-deterministic").equals(args[i])){
+					deterministic = true;
+				}
+				else if (("-checkpoint").equals(args[i])){
+					checkpointFile = args[++i];
+					deterministic = true;
+				}
+				else if (("-interval").equals(args[i])){
+					interval = Long.parseLong(args[++i]);
+				}
+				else if (("-journal").equals(args[i])){
+					journalFile = args[++i];
+				}
+				else if (("-records").equals(args[i])){
+					recordsFile = args[++i];
+				}
+				else if (("-replay").equals(args[i])){
+					replayFile = args[++i];
+				}
+				else if (("-stats").equals(args[i])){
+					fullStats = true;
+				}
+				else if (("-epsilon").equals(args[i])){
+					epsilon = Double.parseDouble(args[++i]);
+					fullStats = true;
+				}
+				else if (("-threads").equals(args[i])){
+					threads = Integer.parseInt(args[++i]);
+				}
+				else if (("-seed").equals(args[i])){
+					seed = Long.parseLong(args[++i]);
+				}
+				else if (("-rng").equals(args[i])){
+					algorithm = args[++i];
+				}
+				else if (("-engine").equals(args[i])){
+					engine = Engine.valueOf(args[++i].toUpperCase());
+				}
+				else if (("-rules").equals(args[i])){
+					rules = CrapsRules.forName(args[++i]);
+				}
+				else if (("-compare").equals(args[i])){
+					compared = Engine.valueOf(args[++i].toUpperCase());
+				}
+				else {
+					games = Long.parseLong(args[i].replace("_", ""));
+				}
+			}
+			boolean kernelRunOnly = threads > 1 || deterministic || engine != Engine.KERNEL
+					|| fullStats || monitored || bench || compared != null || replayFile != null;
+			if (journalFile != null && kernelRunOnly){
+				throw new IllegalArgumentException("-journal records a plain kernel run");
+			}
+			if (recordsFile != null && (kernelRunOnly || journalFile != null)){
+				throw new IllegalArgumentException("-records records a plain kernel run");
+			}
+			if (dice != DiceModel.PAIR && (engine != Engine.FAST || threads > 1 
+					|| deterministic || bench || compared != null || replayFile != null)){
+				throw new IllegalArgumentException("-dice plays a single threaded FAST run");
+			}
+			if (deterministic && epsilon > 0){
+				throw new IllegalArgumentException("-deterministic plays every game");
+			}
+			if (threads > 1 && epsilon > 0){
+				throw new IllegalArgumentException("-epsilon stops a single threaded run");
+			}
+			if (bench){
+				benchmark(games, cheat, rules, algorithm, seed);
+			}
+			else if (deterministic){
+				System.out.println("Seed: " + seed);
+				SimulationMonitor monitor = monitored ? startMonitor(threads) : null;
+				ParallelSimulator simulator = new ParallelSimulator(cheat, threads, engine);
+				simulator.setMonitor(monitor);
+				simulator.setRules(rules);
+				if (checkpointFile != null){
+					simulator.setCheckpoint(Paths.get(checkpointFile), interval * 1000);
+				}
+				SimulationStats stats = fullStats ? new SimulationStats() : null;
+				SimulationResult result = simulator.runDeterministic(games, seed, stats);
+				if (monitor != null){
+					System.out.println(monitor);
+					monitor.unregister();
+				}
+				if (stats != null){
+					System.out.println(stats);
+				}
+				System.out.println(result);
+				System.out.println("Digest: " + digest(result, stats));
+				if (verify){
+					verify(result, cheat, rules, dice);
+				}
+			}
+			else if (compared != null){
+				compare(games, cheat, rules, engine, compared, 
+						DiceSource.of(algorithm, seed));
+			}
+			else if (replayFile != null){
+				try (RollJournalReader journal = new RollJournalReader(Paths.get(replayFile))){
+					System.out.println(replay(journal, rules));
+				}
+			}
+			else if (recordsFile != null){
+				try (GameRecordStore records = new GameRecordStore(Paths.get(recordsFile))){
+					CrapsSimulator simulator = new CrapsSimulator(cheat, engine);
+					simulator.setRules(rules);
+					System.out.println(simulator.run(games, 
+							DiceSource.of(algorithm, seed), records));
+					System.out.println("Records in store: " + records.size());
+				}
+			}
+			else if (journalFile != null){
+				try (RollJournalWriter journal = new RollJournalWriter(Paths.get(journalFile))){
+					CrapsSimulator simulator = new CrapsSimulator(cheat, engine);
+					simulator.setRules(rules);
+					System.out.println(simulator.run(games, 
+							DiceSource.of(algorithm, seed), journal));
+				}
+			}
+			else if (fullStats){
+				SimulationStats stats = new SimulationStats();
+				DiceSource source = DiceSource.of(algorithm, seed);
+				SimulationMonitor monitor = monitored ? startMonitor(threads) : null;
+				long start = System.nanoTime();
+				if (threads > 1){
+					ParallelSimulator simulator = new ParallelSimulator(cheat, threads, engine);
+					simulator.setMonitor(monitor);
+					simulator.setRules(rules);
+					simulator.run(games, source, stats);
+				}
+				else {
+					CrapsSimulator simulator = new CrapsSimulator(cheat, engine);
+					simulator.setMonitor(monitor, 0);
+					simulator.setRules(rules);
+					simulator.setDice(dice);
+					simulator.run(games, epsilon, SimulationStats.Z95, source, stats);
+				}
+				if (monitor != null){
+					System.out.println(monitor);
+					monitor.unregister();
+				}
+				System.out.println(stats);
+				System.out.println(String.format("Elapsed: %.3f s", 
+						(System.nanoTime() - start) / 1e9));
+				if (verify){
+					verify(new SimulationResult(stats.getGames(), stats.getWins(), 
+							0, 0), cheat, rules, dice);
+				}
+			}
+			else {
+				DiceSource source = DiceSource.of(algorithm, seed);
+				SimulationMonitor monitor = monitored ? startMonitor(threads) : null;
+				SimulationResult result;
+				if (threads > 1){
+					ParallelSimulator simulator = new ParallelSimulator(cheat, threads, engine);
+					simulator.setMonitor(monitor);
+					simulator.setRules(rules);
+					result = simulator.run(games, source);
+				}
+				else {
+					CrapsSimulator simulator = new CrapsSimulator(cheat, engine);
+					simulator.setMonitor(monitor, 0);
+					simulator.setRules(rules);
+					simulator.setDice(dice);
+					result = simulator.run(games, source);
+				}
+				if (monitor != null){
+					System.out.println(monitor);
+					monitor.unregister();
+				}
+				System.out.println(result);
+				if (verify){
+					verify(result, cheat, rules, dice);
+				}
+			}
+		}
+		catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e){
+			System.out.println("Usage: java CrapsSimulator [games] [-cheat] " +
+							   "[-threads n] [-seed s] [-rng name] " +
+							   "[-engine handler|kernel|batch|fast|pool] " +
+							   "[-rules name|spec|file] [-bench] [-verify] " +
+							   "[-compare engine] " +
+							   "[-stats] [-epsilon e] [-monitor] [-journal file] " +
+							   "[-replay file] [-records file] [-deterministic] " +
+							   "[-checkpoint file] [-interval seconds] [-dice NdM]");
+			System.exit(1);
+		}
+		catch (IOException e){
+			System.out.println("File error: " + e.getMessage());
+			System.exit(1);
+		}
+		catch (UncheckedIOException e){
+			System.out.println("File error: " + e.getCause().getMessage());
+			System.exit(1);
+		}
+	}
+	
+	/**
+	 * startMonitor
+	 * <p>
+	 * Registers a SimulationMonitor MBean and starts a daemon thread that prints
+	 * its report every 5 seconds.
+	 */
+	private static SimulationMonitor startMonitor(int workers){
+		final SimulationMonitor monitor = new SimulationMonitor(workers);
+		monitor.register();
+		Thread printer = new Thread(() -> {
+			try {
+				while (true){
+					Thread.sleep(5000);
+					System.out.println(monitor);
+				}
+			}
+			catch (InterruptedException e){
+				//Simulation finished
+			}
+		}, "monitor-printer");
+		printer.setDaemon(true);
+		printer.start();
+		return monitor;
+	}
+	
+	/**
+	 * verify
+	 * <p>
+	 * Prints the exact win rate and rolls per game from CrapsSolver next to the
+	 * simulated ones, with the number of standard errors between them. A sound 
+	 * engine stays within about 3 standard errors.
+	 */
+	private static void verify(SimulationResult result, boolean cheat, 
+			CrapsRules rules, DiceModel dice){
+		CrapsSolver solver = new CrapsSolver(cheat, rules, dice);
+		double p = solver.getWinProbability().doubleValue();
+		double error = Math.sqrt(p * (1 - p) / result.getGames());
+		System.out.println(String.format("Exact Win Rate: %.6f (%+.2f standard errors)", 
+				p, (result.getWinRate() - p) / error));
+		System.out.println(String.format("Exact Rolls per Game: %.4f", 
+				solver.getExpectedRolls().doubleValue()));
+	}
+	
+	/**
+	 * digest
+	 * <p>
+	 * Returns the SHA-256 digest, in hex, of the tallies of a result and the 
+	 * exact contents of its statistics, if any, leaving out the timing.
+	 */
+	static String digest(SimulationResult result, SimulationStats stats) 
+			throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeLong(result.getGames());
+		out.writeLong(result.getWins());
+		out.writeLong(result.getRolls());
+		if (stats != null){
+			stats.write(out);
+		}
+		out.flush();
+		try {
+			StringBuilder hex = new StringBuilder();
+			for (byte b : MessageDigest.getInstance("SHA-256").digest(bytes.toByteArray())){
+				hex.append(String.format("%02x", b));
+			}
+			return hex.toString();
+		}
+		catch (NoSuchAlgorithmException e){
+			throw new IllegalStateException("SHA-256 is always available", e);
+		}
+	}
+	
+	/**
+	 * compare
+	 * <p>
+	 * Plays the same number of games with two engines, from independent sources
+	 * split off the given one, and prints the chi-square tests of whether their
+	 * outcomes and game lengths, and their outcomes and points, come from the 
+	 * same distribution. Engines that play by the same rules should give 
+	 * p-values that are only rarely below 0.001.
+	 */
+	private static void compare(long games, boolean cheat, CrapsRules rules, 
+			Engine engine, Engine other, DiceSource source){
+		SimulationStats first = new SimulationStats();
+		SimulationStats second = new SimulationStats();
+		CrapsSimulator simulator = new CrapsSimulator(cheat, engine);
+		simulator.setRules(rules);
+		simulator.run(games, 0, SimulationStats.Z95, source.split(), first);
+		simulator = new CrapsSimulator(cheat, other);
+		simulator.setRules(rules);
+		simulator.run(games, 0, SimulationStats.Z95, source.split(), second);
+		double[] test = first.compareWith(second);
+		double[] pointTest = first.comparePointsWith(second);
+		System.out.println(String.format("%s: win rate %.6f, rolls per game %.4f (sd %.4f)", 
+				engine, first.getWinRate(), first.getMeanRolls(), 
+				Math.sqrt(first.getRollsVariance())));
+		System.out.println(String.format("%s: win rate %.6f, rolls per game %.4f (sd %.4f)", 
+				other, second.getWinRate(), second.getMeanRolls(), 
+				Math.sqrt(second.getRollsVariance())));
+		System.out.println(String.format("Chi-square: %.2f on %d degrees of freedom, " 
+				+ "p-value %.4f", test[0], (int) test[1], test[2]));
+		System.out.println(String.format("Points chi-square: %.2f on %d degrees of " 
+				+ "freedom, p-value %.4f", pointTest[0], (int) pointTest[1], pointTest[2]));
+	}
+	
+	/**
+	 * benchmark
+	 * <p>
+	 * Plays the same number of games with each engine, after a short warm up, and
+	 * prints the throughput of each and its speedup over the handler.
+	 */
+	private static void benchmark(long games, boolean cheat, CrapsRules rules, 
+			String algorithm, long seed){
+		double[] gamesPerSecond = new double[Engine.values().length];
+		for (Engine engine : Engine.values()){
+			CrapsSimulator simulator = new CrapsSimulator(cheat, engine);
+			simulator.setRules(rules);
+			simulator.run(Math.min(games, 1000000), DiceSource.of(algorithm, seed));
+			SimulationResult result = simulator.run(games, 
+					DiceSource.of(algorithm, seed));
+			gamesPerSecond[engine.ordinal()] = result.getGamesPerSecond();
+			System.out.println("Engine: " + engine);
+			System.out.println(result);
+			System.out.println();
+		}
+		for (Engine engine : Engine.values()){
+			if (engine != Engine.HANDLER){
+				System.out.println(String.format("%s speedup: %.1fx", engine, 
+						gamesPerSecond[engine.ordinal()] 
+						/ gamesPerSecond[Engine.HANDLER.ordinal()]));
+			}
+		}
+	}
+} //End of CrapsSimulator class
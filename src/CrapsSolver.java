@@ -0,0 +1,324 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <b>CrapsSolver Class</b>
+ * <p>
+ * Works out exactly, rather than by simulation, the chances of winning a game of
+ * Craps and how long games last.
+ * <p>
+ * The game is modelled as an absorbing Markov chain. Its transient states are the
+ * first roll of a game, one state per point the player can be left needing, and,
+ * when cheat mode is on, one state per point for the roll that the cheat dice 
+ * force to be a 7. Its absorbing states are a win and a loss. Every transition is
+ * one roll, and the transitions are built from the same compiled CrapsRules 
+ * table that the simulator plays by, and the exact sum distribution of the 
+ * DiceModel rolled, the pair of six sided dice unless given other dice.
+ * <p>
+ * The win probability, expected number of rolls and per-point win probabilities
+ * are solved exactly with Fractions; the distribution of game lengths is 
+ * computed with doubles. All of them serve as an oracle for checking the Monte
+ * Carlo engines.
+ * @author James Wen - jrw2175
+ */
+public class CrapsSolver {
+	private static final Fraction CHEAT_CHANCE = Fraction.of(1, 4); //see CrapsHandler
+	
+	private final List<Integer> points = new ArrayList<Integer>(); //point of each state
+	private final Fraction[][] stay; //transient to transient, Q
+	private final Fraction[] win;   //transient to win
+	private final Fraction[] lose;  //transient to loss
+	private final Fraction[] winProbability;
+	private final Fraction[] expectedRolls;
+	
+	/**
+	 * Constructs a solver for the house rules with cheat mode on or off, and 
+	 * solves the chain.
+	 * @param playerBonus - whether cheat mode is on or not
+	 */
+	public CrapsSolver(boolean playerBonus){
+		this(playerBonus, CrapsRules.HOUSE);
+	}
+	
+	/**
+	 * Constructs a solver for the given rules with cheat mode on or off, and 
+	 * solves the chain.
+	 * @param playerBonus - whether cheat mode is on or not
+	 * @param rules - the rules the game is played by
+	 */
+	public CrapsSolver(boolean playerBonus, CrapsRules rules){
+		this(playerBonus, rules, DiceModel.PAIR);
+	}
+	
+	/**
+	 * Constructs a solver for the given rules and dice with cheat mode on or 
+	 * off, and solves the chain.
+	 * @param playerBonus - whether cheat mode is on or not
+	 * @param rules - the rules the game is played by
+	 * @param dice - the dice rolled, whose sums must all lie in 2-12
+	 */
+	public CrapsSolver(boolean playerBonus, CrapsRules rules, DiceModel dice){
+		//State 0 is the first roll of the game, then one state per reachable point,
+		//then, with cheat mode on, one forced 7 state per reachable point
+		points.add(CrapsRules.COME_OUT);
+		for (int sum = 2; sum <= 12; sum++){
+			if (rules.isPoint(sum)){
+				points.add(sum);
+			}
+		}
+		int cheatStates = points.size() - 1;
+		int states = points.size() + (playerBonus ? cheatStates : 0);
+		stay = new Fraction[states][states];
+		win = new Fraction[states];
+		lose = new Fraction[states];
+		for (int i = 0; i < states; i++){
+			win[i] = Fraction.ZERO;
+			lose[i] = Fraction.ZERO;
+			for (int j = 0; j < states; j++){
+				stay[i][j] = Fraction.ZERO;
+			}
+		}
+		for (int i = 0; i < points.size(); i++){
+			int point = points.get(i);
+			for (int sum = 2; sum <= 12; sum++){
+				Fraction chance = dice.getSumProbability(sum);
+				int outcome = rules.outcome(point, sum);
+				int next = points.indexOf(rules.nextState(point, sum));
+				if (outcome == CrapsRules.WIN){
+					win[i] = win[i].add(chance);
+				}
+				else if (outcome == CrapsRules.LOSE){
+					lose[i] = lose[i].add(chance);
+				}
+				else if (i == 0 && next != 0){
+					//A point is set; the cheat dice may force the next roll
+					if (playerBonus){
+						int cheat = next + cheatStates;
+						stay[i][cheat] = stay[i][cheat].add(chance.multiply(CHEAT_CHANCE));
+						chance = chance.multiply(Fraction.ONE.subtract(CHEAT_CHANCE));
+					}
+					stay[i][next] = stay[i][next].add(chance);
+				}
+				else {
+					stay[i][next] = stay[i][next].add(chance);
+				}
+			}
+		}
+		for (int i = 1; playerBonus && i < points.size(); i++){
+			//The forced 7 is played by the rules of the point it was forced on
+			int point = points.get(i);
+			int cheat = i + cheatStates;
+			int outcome = rules.outcome(point, CrapsKernel.KEYVALUE);
+			if (outcome == CrapsRules.WIN){
+				win[cheat] = Fraction.ONE;
+			}
+			else if (outcome == CrapsRules.LOSE){
+				lose[cheat] = Fraction.ONE;
+			}
+			else {
+				stay[cheat][i] = Fraction.ONE;
+			}
+		}
+		winProbability = solve(win);
+		Fraction[] ones = new Fraction[states];
+		Arrays.fill(ones, Fraction.ONE);
+		expectedRolls = solve(ones);
+	}
+	
+	/**
+	 * sumProbability
+	 * <p>
+	 * Returns the chance that a pair of fair dice sums to the given value.
+	 * @param sum - a value in the range of 2-12
+	 * @return the number of face combinations making sum, out of 36
+	 */
+	public static Fraction sumProbability(int sum){
+		return DiceModel.PAIR.getSumProbability(sum);
+	}
+	
+	/**
+	 * solve
+	 * <p>
+	 * Solves (I - Q) x = b exactly by Gauss-Jordan elimination, which gives the
+	 * absorption probabilities when b is the one-roll win vector and the expected
+	 * number of rolls when b is all ones.
+	 */
+	private Fraction[] solve(Fraction[] b){
+		int n = b.length;
+		Fraction[][] a = new Fraction[n][n + 1];
+		for (int i = 0; i < n; i++){
+			for (int j = 0; j < n; j++){
+				a[i][j] = (i == j ? Fraction.ONE : Fraction.ZERO).subtract(stay[i][j]);
+			}
+			a[i][n] = b[i];
+		}
+		for (int col = 0; col < n; col++){
+			int pivot = col;
+			while (a[pivot][col].isZero()){
+				pivot++;
+			}
+			Fraction[] swap = a[col];
+			a[col] = a[pivot];
+			a[pivot] = swap;
+			for (int row = 0; row < n; row++){
+				if (row != col && !a[row][col].isZero()){
+					Fraction factor = a[row][col].divide(a[col][col]);
+					for (int k = col; k <= n; k++){
+						a[row][k] = a[row][k].subtract(factor.multiply(a[col][k]));
+					}
+				}
+			}
+		}
+		Fraction[] x = new Fraction[n];
+		for (int i = 0; i < n; i++){
+			x[i] = a[i][n].divide(a[i][i]);
+		}
+		return x;
+	}
+	
+	/**
+	 * getWinProbability
+	 * <p>
+	 * Returns the exact chance that the player wins a game.
+	 * @return probability of a player win
+	 */
+	public Fraction getWinProbability(){
+		return winProbability[0];
+	}
+	
+	/**
+	 * getExpectedRolls
+	 * <p>
+	 * Returns the exact expected number of rolls in a game.
+	 * @return mean rolls per game
+	 */
+	public Fraction getExpectedRolls(){
+		return expectedRolls[0];
+	}
+	
+	/**
+	 * getPointWinProbability
+	 * <p>
+	 * Returns the exact chance that the player wins once the first roll has left 
+	 * them needing the given point, before any cheat dice are decided: with cheat
+	 * mode on, the chance after a forced 7 weighted by the cheat chance plus the 
+	 * chance without one weighted by the rest.
+	 * @param point - the value the player needs to roll to win
+	 * @return probability of a player win given the point, 0 if point can never
+	 * be set
+	 */
+	public Fraction getPointWinProbability(int point){
+		int state = points.indexOf(point);
+		if (state <= 0){
+			return Fraction.ZERO;
+		}
+		if (winProbability.length == points.size()){
+			return winProbability[state];
+		}
+		int cheat = state + points.size() - 1;
+		return winProbability[cheat].multiply(CHEAT_CHANCE).add(winProbability[state]
+				.multiply(Fraction.ONE.subtract(CHEAT_CHANCE)));
+	}
+	
+	/**
+	 * getPoints
+	 * <p>
+	 * Returns the points the first roll can leave the player needing.
+	 * @return points in increasing order
+	 */
+	public int[] getPoints(){
+		int[] values = new int[points.size() - 1];
+		for (int i = 1; i < points.size(); i++){
+			values[i - 1] = points.get(i);
+		}
+		return values;
+	}
+	
+	/**
+	 * getLengthDistribution
+	 * <p>
+	 * Returns the chance of a game lasting exactly n rolls, for n in the range of
+	 * 1 to maxRolls, by pushing the distribution over the transient states 
+	 * forward one roll at a time.
+	 * @param maxRolls - the longest game length to report
+	 * @return array whose index n holds the chance of a game lasting n rolls; 
+	 * index 0 holds the chance of a game lasting longer than maxRolls
+	 */
+	public double[] getLengthDistribution(int maxRolls){
+		int n = win.length;
+		double[][] q = new double[n][n];
+		double[] absorb = new double[n];
+		for (int i = 0; i < n; i++){
+			absorb[i] = win[i].add(lose[i]).doubleValue();
+			for (int j = 0; j < n; j++){
+				q[i][j] = stay[i][j].doubleValue();
+			}
+		}
+		double[] lengths = new double[maxRolls + 1];
+		double[] state = new double[n];
+		state[0] = 1.0;
+		double ended = 0.0;
+		for (int roll = 1; roll <= maxRolls; roll++){
+			double[] next = new double[n];
+			for (int i = 0; i < n; i++){
+				lengths[roll] += state[i] * absorb[i];
+				for (int j = 0; j < n; j++){
+					next[j] += state[i] * q[i][j];
+				}
+			}
+			ended += lengths[roll];
+			state = next;
+		}
+		lengths[0] = Math.max(0.0, 1.0 - ended);
+		return lengths;
+	}
+	
+	/**
+	 * The main method prints the exact solution for the house rules, or the rules
+	 * given by -rules (see CrapsRules.forName), with cheat mode on if -cheat is 
+	 * passed.
+	 */
+	public static void main(String[] args){
+		boolean cheat = false;
+		CrapsRules rules = CrapsRules.HOUSE;
+		try {
+			for (int i = 0; i < args.length; i++){
+				if (("-cheat").equals(args[i])){
+					cheat = true;
+				}
+				else if (("-rules").equals(args[i])){
+					rules = CrapsRules.forName(args[++i]);
+				}
+				else {
+					throw new IllegalArgumentException(args[i]);
+				}
+			}
+		}
+		catch (IllegalArgumentException | ArrayIndexOutOfBoundsException | IOException e){
+			System.out.println("Usage: java CrapsSolver [-cheat] [-rules name|spec|file]");
+			System.exit(1);
+		}
+		long start = System.nanoTime();
+		CrapsSolver solver = new CrapsSolver(cheat, rules);
+		System.out.println("Rules: " + rules);
+		double[] lengths = solver.getLengthDistribution(30);
+		long elapsed = System.nanoTime() - start;
+		System.out.println("Win Probability: " + solver.getWinProbability() 
+				+ String.format(" (%.10f)", solver.getWinProbability().doubleValue()));
+		System.out.println("Expected Rolls: " + solver.getExpectedRolls()
+				+ String.format(" (%.10f)", solver.getExpectedRolls().doubleValue()));
+		for (int point : solver.getPoints()){
+			Fraction chance = solver.getPointWinProbability(point);
+			System.out.println("Win Probability with Point " + point + ": " + chance
+					+ String.format(" (%.6f)", chance.doubleValue()));
+		}
+		for (int roll = 1; roll < lengths.length; roll++){
+			System.out.println(String.format("P(%d rolls) = %.10f", roll, lengths[roll]));
+		}
+		System.out.println(String.format("P(more than %d rolls) = %.3e", 
+				lengths.length - 1, lengths[0]));
+		System.out.println(String.format("Solved in %.1f us", elapsed / 1e3));
+	}
+} //End of CrapsSolver class
@@ -0,0 +1,414 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * <b>DiceModel Class</b>
+ * <p>
+ * Models any number of fair dice with any number of faces each, and samples the
+ * sum of a roll of all of them.
+ * <p>
+ * The distribution of the sum is worked out exactly when the model is built, by
+ * convolving the faces of one die with the sums of the dice before it, and kept
+ * as integer counts out of faces^dice. When only the sum of a roll matters it is
+ * drawn directly from a Walker alias table, built by Vose's method, with a 
+ * single draw from the DiceSource, however many dice there are. When the faces 
+ * themselves are needed, for display or for telling snake eyes from other 2s,
+ * rollFaces rolls the dice one at a time instead.
+ * <p>
+ * If the number of sums times faces^dice fits in an int, the alias table is held
+ * in integers and the single draw is a nextFace over all of its cells, so the 
+ * sums come out with exactly the right chances. Tables of at most FLAT_CELLS 
+ * cells, such as the 396 of a pair of six sided dice, are also expanded into 
+ * the sum of every cell, so that a draw needs no division. Larger models use a
+ * double alias table and one nextDouble per sum.
+ * <p>
+ * A model is immutable and may be shared between threads.
+ * @author James Wen - jrw2175
+ */
+public final class DiceModel {
+	/**
+	 * The pair of six sided dice Craps is played with.
+	 */
+	public static final DiceModel PAIR = new DiceModel(2, 6);
+	public static final int FLAT_CELLS = 1 << 12; //largest expanded alias table
+	
+	private final int dice;
+	private final int faces;
+	private final long[] counts; //[sum - dice] face combinations making each sum
+	private final long total;    //faces^dice
+	private final int cells;     //total as an int, for the integer alias table
+	private final int[] alias;   //[column] the other sum of each column, less dice
+	private final int[] cutoffs; //[column] draws below which the column's own sum wins
+	private final double[] chances; //the same cutoffs as fractions, for large models
+	private final int[] cellSums; //[cell] sum drawn by each cell, for small models
+	
+	/**
+	 * Constructs a model of the given number of dice with the given number of 
+	 * faces each, and builds its sum distribution and alias table.
+	 * @param dice - the number of dice rolled together
+	 * @param faces - the number of faces on each die
+	 * @throws IllegalArgumentException - if there are fewer than 1 die or 2 faces,
+	 * or faces^dice does not fit in a long
+	 */
+	public DiceModel(int dice, int faces){
+		if (dice < 1 || faces < 2){
+			throw new IllegalArgumentException("need at least 1 die with 2 faces");
+		}
+		this.dice = dice;
+		this.faces = faces;
+		long combinations = 1;
+		long[] sums = {1}; //sums of no dice, less the number of dice so far
+		for (int die = 0; die < dice; die++){
+			try {
+				combinations = Math.multiplyExact(combinations, faces);
+			}
+			catch (ArithmeticException e){
+				throw new IllegalArgumentException(faces + "^" + dice 
+						+ " rolls is too many to count");
+			}
+			long[] next = new long[sums.length + faces - 1];
+			for (int sum = 0; sum < sums.length; sum++){
+				for (int face = 0; face < faces; face++){
+					next[sum + face] += sums[sum];
+				}
+			}
+			sums = next;
+		}
+		this.counts = sums;
+		this.total = combinations;
+		int columns = counts.length;
+		this.alias = new int[columns];
+		this.cells = (int) Math.min(total, Integer.MAX_VALUE);
+		if (total <= Integer.MAX_VALUE / columns){
+			this.cutoffs = buildIntAlias();
+			this.chances = null;
+		}
+		else {
+			this.cutoffs = null;
+			this.chances = buildDoubleAlias();
+		}
+		if (cutoffs != null && columns * total <= FLAT_CELLS){
+			this.cellSums = new int[columns * cells];
+			for (int cell = 0; cell < cellSums.length; cell++){
+				int column = cell / cells;
+				cellSums[cell] = dice + (cell - column * cells < cutoffs[column] 
+						? column : alias[column]);
+			}
+		}
+		else {
+			this.cellSums = null;
+		}
+	}
+	
+	/**
+	 * of
+	 * <p>
+	 * Returns the model of the dice written in dice notation, such as 3d4.
+	 * @param notation - the number of dice, d, and the number of faces each
+	 * @return PAIR for 2d6, otherwise a new DiceModel
+	 * @throws IllegalArgumentException - if the notation is malformed or 
+	 * describes dice the constructor refuses
+	 */
+	public static DiceModel of(String notation){
+		int d = notation.indexOf('d');
+		if (d < 0){
+			throw new IllegalArgumentException("not in dice notation: " + notation);
+		}
+		int dice = Integer.parseInt(notation.substring(0, d));
+		int faces = Integer.parseInt(notation.substring(d + 1));
+		return (dice == 2 && faces == 6) ? PAIR : new DiceModel(dice, faces);
+	}
+	
+	/**
+	 * buildIntAlias
+	 * <p>
+	 * Builds the alias table in whole draws by Vose's method. Each column holds
+	 * total draws, and each sum is given count * columns draws in all, so no 
+	 * rounding ever happens.
+	 */
+	private int[] buildIntAlias(){
+		int columns = counts.length;
+		long[] weights = new long[columns];
+		int[] cutoff = new int[columns];
+		ArrayDeque<Integer> small = new ArrayDeque<Integer>();
+		ArrayDeque<Integer> large = new ArrayDeque<Integer>();
+		for (int i = 0; i < columns; i++){
+			weights[i] = counts[i] * columns;
+			(weights[i] < total ? small : large).add(i);
+		}
+		while (!small.isEmpty() && !large.isEmpty()){
+			int less = small.poll();
+			int more = large.poll();
+			cutoff[less] = (int) weights[less];
+			alias[less] = more;
+			weights[more] -= total - weights[less];
+			(weights[more] < total ? small : large).add(more);
+		}
+		for (int i : large){
+			cutoff[i] = (int) total;
+			alias[i] = i;
+		}
+		for (int i : small){ //left over only by rounding, which cannot happen here
+			cutoff[i] = (int) total;
+			alias[i] = i;
+		}
+		return cutoff;
+	}
+	
+	/**
+	 * buildDoubleAlias
+	 * <p>
+	 * Builds the alias table in fractions of a column by Vose's method, for 
+	 * models too large for whole draws.
+	 */
+	private double[] buildDoubleAlias(){
+		int columns = counts.length;
+		double[] weights = new double[columns];
+		double[] chance = new double[columns];
+		ArrayDeque<Integer> small = new ArrayDeque<Integer>();
+		ArrayDeque<Integer> large = new ArrayDeque<Integer>();
+		for (int i = 0; i < columns; i++){
+			weights[i] = (double) counts[i] / total * columns;
+			(weights[i] < 1.0 ? small : large).add(i);
+		}
+		while (!small.isEmpty() && !large.isEmpty()){
+			int less = small.poll();
+			int more = large.poll();
+			chance[less] = weights[less];
+			alias[less] = more;
+			weights[more] -= 1.0 - weights[less];
+			(weights[more] < 1.0 ? small : large).add(more);
+		}
+		for (int i : large){
+			chance[i] = 1.0;
+			alias[i] = i;
+		}
+		for (int i : small){ //left over only by rounding error
+			chance[i] = 1.0;
+			alias[i] = i;
+		}
+		return chance;
+	}
+	
+	/**
+	 * sampleSum
+	 * <p>
+	 * Returns the sum of one roll of all the dice, drawn from the alias table with 
+	 * a single draw from the source.
+	 * @param source - the dice source to draw from
+	 * @return sum in the range of getMinSum to getMaxSum
+	 */
+	public int sampleSum(DiceSource source){
+		if (cellSums != null){
+			return cellSums[source.nextFace(cellSums.length) - 1];
+		}
+		if (cutoffs != null){
+			int cell = source.nextFace(counts.length * cells) - 1;
+			int column = cell / cells;
+			int draw = cell - column * cells;
+			return dice + (draw < cutoffs[column] ? column : alias[column]);
+		}
+		double u = source.nextDouble() * counts.length;
+		int column = (int) u;
+		return dice + (u - column < chances[column] ? column : alias[column]);
+	}
+	
+	/**
+	 * getCellSums
+	 * <p>
+	 * Returns the sum drawn by every cell of the expanded alias table, so that a
+	 * caller can map the cells to values of its own and draw one with 
+	 * nextFace(length), exactly as sampleSum does.
+	 * @return a copy of the sum of each cell, or null if the table has more than
+	 * FLAT_CELLS cells
+	 */
+	public int[] getCellSums(){
+		return (cellSums == null) ? null : cellSums.clone();
+	}
+	
+	/**
+	 * rollFaces
+	 * <p>
+	 * Rolls every die separately, for when the faces themselves are needed.
+	 * @param source - the dice source to roll with
+	 * @param values - array that is given the face value of each die
+	 * @return sum of the face values
+	 * @throws ArrayIndexOutOfBoundsException - if values is shorter than the 
+	 * number of dice
+	 */
+	public int rollFaces(DiceSource source, int[] values){
+		int sum = 0;
+		for (int die = 0; die < dice; die++){
+			values[die] = source.nextFace(faces);
+			sum += values[die];
+		}
+		return sum;
+	}
+	
+	/**
+	 * getSumProbability
+	 * <p>
+	 * Returns the exact chance of rolling the given sum.
+	 * @param sum - the value rolled
+	 * @return the number of combinations of faces making sum, out of faces^dice
+	 */
+	public Fraction getSumProbability(int sum){
+		if (sum < getMinSum() || sum > getMaxSum()){
+			return Fraction.ZERO;
+		}
+		return Fraction.of(counts[sum - dice], total);
+	}
+	
+	/**
+	 * getSumCount
+	 * <p>
+	 * Returns the number of combinations of faces that make the given sum.
+	 * @param sum - the value rolled
+	 * @return number of combinations, 0 if sum cannot be rolled
+	 */
+	public long getSumCount(int sum){
+		return (sum < getMinSum() || sum > getMaxSum()) ? 0 : counts[sum - dice];
+	}
+	
+	/**
+	 * getCombinations
+	 * <p>
+	 * Returns the number of equally likely combinations of faces, faces^dice.
+	 * @return total - number of combinations
+	 */
+	public long getCombinations(){
+		return total;
+	}
+	
+	/**
+	 * getDice
+	 * <p>
+	 * Returns the number of dice rolled together.
+	 * @return dice - number of dice
+	 */
+	public int getDice(){
+		return dice;
+	}
+	
+	/**
+	 * getFaces
+	 * <p>
+	 * Returns the number of faces on each die.
+	 * @return faces - number of faces
+	 */
+	public int getFaces(){
+		return faces;
+	}
+	
+	/**
+	 * getMinSum
+	 * <p>
+	 * Returns the lowest sum that can be rolled, all ones.
+	 * @return lowest sum
+	 */
+	public int getMinSum(){
+		return dice;
+	}
+	
+	/**
+	 * getMaxSum
+	 * <p>
+	 * Returns the highest sum that can be rolled, every die on its highest face.
+	 * @return highest sum
+	 */
+	public int getMaxSum(){
+		return dice * faces;
+	}
+	
+	/**
+	 * toString
+	 * <p>
+	 * Returns the model in dice notation, such as 2d6.
+	 * @return String representation of the model
+	 */
+	public String toString(){
+		return dice + "d" + faces;
+	}
+	
+	/**
+	 * The main method samples sums of the given dice (default 2d6) both from the 
+	 * alias table and by rolling every die, and prints the exact distribution, a
+	 * chi-square test of each against it, and the speed of each.
+	 * <p>
+	 * Usage: java DiceModel [dice] [faces] [samples] [-seed s]
+	 */
+	public static void main(String[] args){
+		int dice = 2;
+		int faces = 6;
+		long samples = 10000000;
+		long seed = System.nanoTime();
+		try {
+			int position = 0;
+			for (int i = 0; i < args.length; i++){
+				if (("-seed").equals(args[i])){
+					seed = Long.parseLong(args[++i]);
+				}
+				else if (position == 0){
+					dice = Integer.parseInt(args[i]);
+					position++;
+				}
+				else if (position == 1){
+					faces = Integer.parseInt(args[i]);
+					position++;
+				}
+				else {
+					samples = Long.parseLong(args[i].replace("_", ""));
+				}
+			}
+			DiceModel model = new DiceModel(dice, faces);
+			long[] aliasTally = new long[model.counts.length];
+			long[] rolledTally = new long[model.counts.length];
+			int[] values = new int[dice];
+			DiceSource source = RandomDiceSource.of(RandomDiceSource.L64X128_MIX, seed);
+			long start = System.nanoTime();
+			for (long i = 0; i < samples; i++){
+				aliasTally[model.sampleSum(source) - dice]++;
+			}
+			long aliasNanos = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (long i = 0; i < samples; i++){
+				rolledTally[model.rollFaces(source, values) - dice]++;
+			}
+			long rolledNanos = System.nanoTime() - start;
+			System.out.println("Dice: " + model + ", " + model.total + " combinations, " 
+					+ (model.cutoffs != null ? "exact" : "double") + " alias table");
+			for (int sum = model.getMinSum(); sum <= model.getMaxSum() && sum - dice < 40; sum++){
+				System.out.println(String.format("P(%d) = %-12s alias %.6f rolled %.6f", 
+						sum, model.getSumProbability(sum), 
+						(double) aliasTally[sum - dice] / samples, 
+						(double) rolledTally[sum - dice] / samples));
+			}
+			System.out.println(String.format("Alias: %.1f M sums/s, chi-square %.1f", 
+					samples * 1e3 / aliasNanos, model.chiSquare(aliasTally, samples)));
+			System.out.println(String.format("Rolled: %.1f M sums/s, chi-square %.1f", 
+					samples * 1e3 / rolledNanos, model.chiSquare(rolledTally, samples)));
+			System.out.println("Degrees of freedom: " + (model.counts.length - 1));
+		}
+		catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e){
+			System.out.println("Usage: java DiceModel [dice] [faces] [samples] [-seed s]");
+			System.exit(1);
+		}
+	}
+	
+	/**
+	 * chiSquare
+	 * <p>
+	 * Returns Pearson's chi-square statistic of the given tally of sums against 
+	 * the exact distribution.
+	 */
+	private double chiSquare(long[] tally, long samples){
+		double statistic = 0;
+		for (int i = 0; i < counts.length; i++){
+			double expected = (double) counts[i] / total * samples;
+			if (expected > 0){
+				statistic += (tally[i] - expected) * (tally[i] - expected) / expected;
+			}
+		}
+		return statistic;
+	}
+} //End of DiceModel class
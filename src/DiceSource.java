@@ -0,0 +1,87 @@
+/**
+ * <b>DiceSource Interface</b>
+ * <p>
+ * Supplies the random values that dice are rolled with. Die, PairOfDice and 
+ * CrapsHandler draw every roll, and every cheat decision, from a DiceSource 
+ * handed to them at construction, so that a run can be seeded, replayed, or
+ * switched to a different generator without touching the game classes.
+ * <p>
+ * A DiceSource is not required to be thread safe. Simulations that run on 
+ * several threads should give each thread its own source, for example by 
+ * splitting one off a common parent.
+ * <p>
+ * Game engines call startGame before the first draw of every game. Sources 
+ * that do not care where games begin, such as RandomDiceSource, ignore it; 
+ * quasi-random sources such as SobolDiceSource move to their next point.
+ * @author James Wen - jrw2175
+ */
+public interface DiceSource {
+	
+	/**
+	 * of
+	 * <p>
+	 * Creates a dice source from the named algorithm and an explicit seed: 
+	 * Sobol for a SobolDiceSource, Philox4x32 for stream 0 of a 
+	 * PhiloxDiceSource, or any generator known to RandomDiceSource.
+	 * @param algorithm - the name of the source or generator
+	 * @param seed - the seed of the source
+	 * @return a new seeded DiceSource
+	 * @throws IllegalArgumentException - if the algorithm is not known
+	 */
+	static DiceSource of(String algorithm, long seed){
+		if (SobolDiceSource.SOBOL.equalsIgnoreCase(algorithm)){
+			return new SobolDiceSource(seed);
+		}
+		if (PhiloxDiceSource.PHILOX.equalsIgnoreCase(algorithm)){
+			return new PhiloxDiceSource(seed, 0);
+		}
+		return RandomDiceSource.of(algorithm, seed);
+	}
+	
+	/**
+	 * startGame
+	 * <p>
+	 * Tells the source that the draws that follow belong to a new game. Does 
+	 * nothing unless the source overrides it.
+	 */
+	default void startGame(){
+	}
+	
+	/**
+	 * nextFace
+	 * <p>
+	 * Returns a uniformly distributed face value in the range of 1 to faces.
+	 * @param faces - the number of faces of the die being rolled
+	 * @return face value in the range of 1 to faces
+	 */
+	int nextFace(int faces);
+	
+	/**
+	 * nextLong
+	 * <p>
+	 * Returns 64 uniformly distributed random bits.
+	 * @return random long value
+	 */
+	long nextLong();
+	
+	/**
+	 * nextDouble
+	 * <p>
+	 * Returns a uniformly distributed double in the range of 0 (inclusive) to 1 
+	 * (exclusive), built from the top 53 bits of nextLong.
+	 * @return random double value
+	 */
+	default double nextDouble(){
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+	
+	/**
+	 * split
+	 * <p>
+	 * Returns a new source whose values are statistically independent of this 
+	 * one, for handing to another thread or worker.
+	 * @return a new, independent DiceSource
+	 * @throws UnsupportedOperationException - if this source cannot be split
+	 */
+	DiceSource split();
+}
@@ -1,23 +1,75 @@
 /**
  * <b>Die Class</b>
  * <p>
- * Models a die with 6 faces that can roll and be compared to other dice.
+ * Models a die with 6 faces, or any other number of faces, that can roll and be
+ * compared to other dice.
+ * <p>
+ * Each die draws its rolls from a DiceSource. Dice constructed without one 
+ * share a single default source, like Math.random does; a simulation running on
+ * several threads should give each thread its own source so that the threads do
+ * not contend on it.
  * <p>
  * @author James Wen - jrw2175
  */
 
 public class Die
 {
-   private final int MAX = 6;  // maximum face value
+   private static final int DEFAULT_FACES = 6;  // faces of a standard die
+   private final int MAX;  // maximum face value
+   static final DiceSource SHARED_SOURCE = RandomDiceSource.shared(); // default
+   private final DiceSource source;  // source of rolls
    private int faceValue;  // current value showing on the die
    
+   //Html representations of each face, built once; see toString
+   private static final String[] FACES = {"",
+	   "<html>&nbsp &nbsp X <br /></html>",
+	   "<html>X <br /><br />&nbsp &nbsp &nbsp &nbsp X</html>",
+	   "<html>X<br />&nbsp &nbsp X &nbsp &nbsp<br />&nbsp  " +
+	   "&nbsp &nbsp &nbsp X</html>",
+	   "<html>X &nbsp &nbsp X<br /><br />X &nbsp &nbsp " +
+	   "X</html>",
+	   "<html>X &nbsp &nbsp X<br />&nbsp &nbsp X <br />X " +
+	   "&nbsp &nbsp X</html>",
+	   "<html>X &nbsp &nbsp X<br />X &nbsp &nbsp X<br />X " +
+	   "&nbsp &nbsp X</html>"};
+   
    /**
     * Constructs a die with 6 faces whose currently shown face value is 
     * chosen at random.
     */
    
    public Die(){
-	   this.faceValue = (int)(Math.random() * MAX) + 1;;
+	   this(SHARED_SOURCE);
+   }
+   
+   /**
+    * Constructs a die with 6 faces whose currently shown face value is 
+    * chosen at random, and which draws all its rolls from the given source.
+    * <p>
+    * @param source - the dice source to roll with
+    */
+   public Die(DiceSource source){
+	   this(source, DEFAULT_FACES);
+   }
+   
+   /**
+    * Constructs a die with the given number of faces whose currently shown face
+    * value is chosen at random, and which draws all its rolls from the given 
+    * source.
+    * <p>
+    * @param source - the dice source to roll with
+    * @param faces - the number of faces of the die
+    * <p>
+    * @throws IllegalArgumentException - if the die has fewer than 2 faces
+    */
+   public Die(DiceSource source, int faces) throws IllegalArgumentException
+   {
+	   if (faces < 2){
+		   throw new IllegalArgumentException();
+	   }
+	   this.MAX = faces;
+	   this.source = source;
+	   this.faceValue = source.nextFace(MAX);
    }
    
    /**
@@ -31,6 +83,8 @@ public class Die
     */
    public Die(int faceValue) throws IllegalArgumentException
    {
+	   this.MAX = DEFAULT_FACES;
+	   this.source = SHARED_SOURCE;
 	   if(faceValue >0 && faceValue <= MAX){
 		   this.faceValue = faceValue;
 	   }
@@ -41,17 +95,19 @@ public class Die
    }
    
    /**
-    * Constructs a die with 6 faces whose current shown face value is that of a 
-    * specific other die's currently shown face value.
+    * Constructs a die with as many faces as a specific other die, whose current
+    * shown face value is that of the other die's currently shown face value.
     * <p>
     * @param die - the Die whose currently shown face value is to be the value of 
     * the currently shown face of this new Die object
     * <p>
     * @throws IllegalArgumentException - if the currently shown face value of the 
-    * input Die is not in the range of 1-6
+    * input Die is not in the range of 1 to the number of faces
     */
    public Die(Die die) throws IllegalArgumentException
    {
+      this.MAX = die.MAX;
+      this.source = die.source;
       if(die.getFaceValue() > 0 && die.getFaceValue() <= MAX){
     	  this.faceValue = die.getFaceValue();
       }
@@ -64,13 +120,13 @@ public class Die
     * Roll
     * <p>
     * Simulates the rolling of a die by randomly changing the face value of the 
-    * die to an integer in the range of 1-6.
+    * die to an integer in the range of 1 to the number of faces.
     * <p>
     * @return faceValue - the current face value of the die after rolling
     */
    public int roll()
    {
-      faceValue = (int)(Math.random() * MAX) + 1;
+      faceValue = source.nextFace(MAX);
 
       return faceValue;
    }
@@ -78,12 +134,13 @@ public class Die
    /**
     * setFaceValue
     * <p>
-    * Changes the face value of the die to an integer in the range of 1-6.
+    * Changes the face value of the die to an integer in the range of 1 to the
+    * number of faces.
     * <p>
     * @param value - the desired face value of the die
     * <p>
     * @throws IllegalArgumentException - if the desired face value for the die is 
-    * not in the range of 1-6
+    * not in the range of 1 to the number of faces
     */
    public void setFaceValue (int value) throws IllegalArgumentException
    {
@@ -107,6 +164,18 @@ public class Die
       return faceValue;
    }
 
+   /**
+    * getFaces
+    * <p>
+    * Returns the number of faces of the die.
+    * <p>
+    * @return number of faces
+    */
+   public int getFaces()
+   {
+      return MAX;
+   }
+
    /**
     * equals
     * <p>
@@ -132,34 +201,15 @@ public class Die
     * Returns a string representation of the die's current face.
     * <p>
     * Html tags used to assist with formatting, br tags used for line breaks, &nb sp
-    * characters used for blank spaces.
+    * characters used for blank spaces. The six representations are built once 
+    * and looked up by face value; dice with more than 6 faces show their value
+    * as a number.
+    * <p>
+    * The visual interface draws dice with DieFace components instead.
     * @return dieRepresentation - visual String representation of current die face
     */
    public String toString()
    {
-	  String dieRepresentation = "";
-	  if (faceValue == 1){
-		  dieRepresentation = "<html>&nbsp &nbsp X <br /></html>";
-	  }
-	  if (faceValue == 2){
-		  dieRepresentation = "<html>X <br /><br />&nbsp &nbsp &nbsp &nbsp X</html>";
-	  }	  
-	  if (faceValue == 3){
-		  dieRepresentation = "<html>X<br />&nbsp &nbsp X &nbsp &nbsp<br />&nbsp  " +
-		 					  "&nbsp &nbsp &nbsp X</html>";
-	  }
-	  if (faceValue == 4){
-		  dieRepresentation = "<html>X &nbsp &nbsp X<br /><br />X &nbsp &nbsp " +
-		  					  "X</html>";
-	  }
-	  if (faceValue == 5){
-		  dieRepresentation = "<html>X &nbsp &nbsp X<br />&nbsp &nbsp X <br />X " +
-		  					  "&nbsp &nbsp X</html>";
-	  }	  
-	  if (faceValue == 6){
-		  dieRepresentation = "<html>X &nbsp &nbsp X<br />X &nbsp &nbsp X<br />X " +
-		  					  "&nbsp &nbsp X</html>";
-	  }	  
-      return dieRepresentation;
+      return faceValue < FACES.length ? FACES[faceValue] : Integer.toString(faceValue);
    }
 } //End of Die class
@@ -0,0 +1,93 @@
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import javax.swing.JComponent;
+
+/**
+ * <b>DieFace Class</b>
+ * <p>
+ * Draws one die of the visual interface: a rounded square outline with the pips
+ * of the current face value, in the foreground color.
+ * <p>
+ * The pips of each face come from a fixed table of positions on a 3 by 3 grid, 
+ * so showing a roll needs no text, HTML parsing or allocation. Setting the face
+ * only asks Swing to repaint this die's own bounds, and only if the face 
+ * actually changed.
+ * @author James Wen - jrw2175
+ */
+public class DieFace extends JComponent {
+	private static final long serialVersionUID = 1L;
+	
+	//Pip positions as {column, row} on a 3 by 3 grid, for faces 1-6
+	private static final int[][][] PIPS = {
+		{},
+		{{1, 1}},
+		{{0, 0}, {2, 2}},
+		{{0, 0}, {1, 1}, {2, 2}},
+		{{0, 0}, {2, 0}, {0, 2}, {2, 2}},
+		{{0, 0}, {2, 0}, {1, 1}, {0, 2}, {2, 2}},
+		{{0, 0}, {2, 0}, {0, 1}, {2, 1}, {0, 2}, {2, 2}}};
+	
+	private int faceValue;
+	
+	/**
+	 * Constructs a die showing the given face value, drawn in white.
+	 * @param faceValue - the face value to show, in the range of 1-6
+	 * @throws IllegalArgumentException - if the face value is not in the range of 1-6
+	 */
+	public DieFace(int faceValue){
+		setFaceValue(faceValue);
+		setForeground(Color.white);
+		setOpaque(false);
+		setPreferredSize(new Dimension(75, 75));
+	}
+	
+	/**
+	 * setFaceValue
+	 * <p>
+	 * Changes the face value shown, repainting the die if it changed.
+	 * @param value - the face value to show, in the range of 1-6
+	 * @throws IllegalArgumentException - if the face value is not in the range of 1-6
+	 */
+	public void setFaceValue(int value){
+		if (value < 1 || value >= PIPS.length){
+			throw new IllegalArgumentException();
+		}
+		if (value != faceValue){
+			faceValue = value;
+			repaint();
+		}
+	}
+	
+	/**
+	 * getFaceValue
+	 * <p>
+	 * Returns the face value shown.
+	 * @return faceValue - face value shown
+	 */
+	public int getFaceValue(){
+		return faceValue;
+	}
+	
+	/**
+	 * paintComponent
+	 * <p>
+	 * Draws the outline of the die and the pips of its face.
+	 */
+	protected void paintComponent(Graphics g){
+		Graphics2D g2 = (Graphics2D) g;
+		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		int size = Math.min(getWidth(), getHeight()) - 1;
+		int cell = size / 4;
+		int pip = cell * 3 / 4;
+		g2.setColor(getForeground());
+		g2.drawRoundRect(0, 0, size, size, cell, cell);
+		for (int[] position : PIPS[faceValue]){
+			int x = (size - 3 * cell) / 2 + position[0] * cell + (cell - pip) / 2;
+			int y = (size - 3 * cell) / 2 + position[1] * cell + (cell - pip) / 2;
+			g2.fillOval(x, y, pip, pip);
+		}
+	}
+} //End of DieFace class
@@ -0,0 +1,221 @@
+import java.math.BigInteger;
+
+/**
+ * <b>Fraction Class</b>
+ * <p>
+ * An exact rational number, kept in lowest terms with a positive denominator.
+ * <p>
+ * Used by CrapsSolver so that probabilities that follow from the rules can be 
+ * reported exactly rather than as rounded doubles. Fractions are immutable.
+ * @author James Wen - jrw2175
+ */
+public final class Fraction implements Comparable<Fraction> {
+	public static final Fraction ZERO = new Fraction(BigInteger.ZERO, BigInteger.ONE);
+	public static final Fraction ONE = new Fraction(BigInteger.ONE, BigInteger.ONE);
+	
+	private final BigInteger numerator;
+	private final BigInteger denominator;
+	
+	private Fraction(BigInteger numerator, BigInteger denominator){
+		this.numerator = numerator;
+		this.denominator = denominator;
+	}
+	
+	/**
+	 * of
+	 * <p>
+	 * Returns the fraction numerator / denominator in lowest terms.
+	 * @param numerator - the numerator
+	 * @param denominator - the denominator
+	 * @return the reduced fraction
+	 * @throws ArithmeticException - if the denominator is zero
+	 */
+	public static Fraction of(long numerator, long denominator){
+		return of(BigInteger.valueOf(numerator), BigInteger.valueOf(denominator));
+	}
+	
+	/**
+	 * of
+	 * <p>
+	 * Returns the fraction numerator / denominator in lowest terms.
+	 * @param numerator - the numerator
+	 * @param denominator - the denominator
+	 * @return the reduced fraction
+	 * @throws ArithmeticException - if the denominator is zero
+	 */
+	public static Fraction of(BigInteger numerator, BigInteger denominator){
+		if (denominator.signum() == 0){
+			throw new ArithmeticException("zero denominator");
+		}
+		if (denominator.signum() < 0){
+			numerator = numerator.negate();
+			denominator = denominator.negate();
+		}
+		BigInteger gcd = numerator.gcd(denominator);
+		if (!gcd.equals(BigInteger.ONE) && gcd.signum() != 0){
+			numerator = numerator.divide(gcd);
+			denominator = denominator.divide(gcd);
+		}
+		return new Fraction(numerator, denominator);
+	}
+	
+	/**
+	 * add
+	 * <p>
+	 * Returns the sum of this fraction and another.
+	 * @param other - the fraction to add
+	 * @return the sum
+	 */
+	public Fraction add(Fraction other){
+		return of(numerator.multiply(other.denominator).add(other.numerator.multiply(denominator)),
+				denominator.multiply(other.denominator));
+	}
+	
+	/**
+	 * subtract
+	 * <p>
+	 * Returns this fraction minus another.
+	 * @param other - the fraction to subtract
+	 * @return the difference
+	 */
+	public Fraction subtract(Fraction other){
+		return add(other.negate());
+	}
+	
+	/**
+	 * multiply
+	 * <p>
+	 * Returns the product of this fraction and another.
+	 * @param other - the fraction to multiply by
+	 * @return the product
+	 */
+	public Fraction multiply(Fraction other){
+		return of(numerator.multiply(other.numerator), denominator.multiply(other.denominator));
+	}
+	
+	/**
+	 * divide
+	 * <p>
+	 * Returns this fraction divided by another.
+	 * @param other - the divisor
+	 * @return the quotient
+	 * @throws ArithmeticException - if other is zero
+	 */
+	public Fraction divide(Fraction other){
+		return of(numerator.multiply(other.denominator), denominator.multiply(other.numerator));
+	}
+	
+	/**
+	 * negate
+	 * <p>
+	 * Returns the fraction with the opposite sign.
+	 * @return the negated fraction
+	 */
+	public Fraction negate(){
+		return new Fraction(numerator.negate(), denominator);
+	}
+	
+	/**
+	 * isZero
+	 * <p>
+	 * Returns whether the fraction is zero.
+	 * @return whether the numerator is zero
+	 */
+	public boolean isZero(){
+		return numerator.signum() == 0;
+	}
+	
+	/**
+	 * getNumerator
+	 * <p>
+	 * Returns the numerator of the fraction in lowest terms, which carries its
+	 * sign.
+	 * @return numerator - the reduced numerator
+	 */
+	public BigInteger getNumerator(){
+		return numerator;
+	}
+	
+	/**
+	 * getDenominator
+	 * <p>
+	 * Returns the denominator of the fraction in lowest terms, always positive.
+	 * @return denominator - the reduced denominator
+	 */
+	public BigInteger getDenominator(){
+		return denominator;
+	}
+	
+	/**
+	 * doubleValue
+	 * <p>
+	 * Returns the nearest double to this fraction, rounding half to even, or 
+	 * the nearest after a second rounding when it is subnormal. The quotient is
+	 * taken to at least 65 bits, with a sticky bit set if any remainder is 
+	 * left, so BigInteger's correctly rounded conversion rounds it only once.
+	 * @return this fraction as a double
+	 */
+	public double doubleValue(){
+		if (numerator.signum() == 0){
+			return 0.0;
+		}
+		BigInteger magnitude = numerator.abs();
+		int shift = denominator.bitLength() - magnitude.bitLength() + 65;
+		BigInteger[] quotient = (shift >= 0) 
+				? magnitude.shiftLeft(shift).divideAndRemainder(denominator)
+				: magnitude.divideAndRemainder(denominator.shiftLeft(-shift));
+		BigInteger bits = quotient[1].signum() == 0 ? quotient[0] : quotient[0].setBit(0);
+		double value = Math.scalb(bits.doubleValue(), -shift);
+		return numerator.signum() < 0 ? -value : value;
+	}
+	
+	/**
+	 * compareTo
+	 * <p>
+	 * Compares this fraction with another by value.
+	 * @param other - the fraction to compare with
+	 * @return a negative number, zero or a positive number as this fraction is 
+	 * less than, equal to or greater than other
+	 */
+	public int compareTo(Fraction other){
+		return numerator.multiply(other.denominator).compareTo(other.numerator.multiply(denominator));
+	}
+	
+	/**
+	 * equals
+	 * <p>
+	 * Returns whether the other object is a fraction of the same value. 
+	 * Fractions are kept in lowest terms, so equal values have equal parts.
+	 * @param other - the object to compare with
+	 * @return whether other is an equal fraction
+	 */
+	public boolean equals(Object other){
+		if (!(other instanceof Fraction)){
+			return false;
+		}
+		Fraction fraction = (Fraction) other;
+		return numerator.equals(fraction.numerator) && denominator.equals(fraction.denominator);
+	}
+	
+	/**
+	 * hashCode
+	 * <p>
+	 * Returns a hash code consistent with equals.
+	 * @return hash code of the numerator and denominator
+	 */
+	public int hashCode(){
+		return 31 * numerator.hashCode() + denominator.hashCode();
+	}
+	
+	/**
+	 * toString
+	 * <p>
+	 * Returns the fraction as "numerator/denominator", or just the numerator when
+	 * the denominator is 1.
+	 * @return String form of the fraction
+	 */
+	public String toString(){
+		return denominator.equals(BigInteger.ONE) ? numerator.toString() 
+				: numerator + "/" + denominator;
+	}
+} //End of Fraction class
@@ -0,0 +1,268 @@
+import java.io.IOException;
+
+/**
+ * <b>GamePool Class</b>
+ * <p>
+ * Plays a large number of Craps games at the same time, each packed into three
+ * bytes of primitive arrays instead of a CrapsHandler with its PairOfDice,
+ * Die objects and Strings. Ten million games in flight take 30 MB.
+ * <p>
+ * Each game in the pool is a state byte, the game's CrapsRules state, COME_OUT
+ * or the point, and a rolls count. The rolls count is only kept when games are
+ * recorded in statistics, and stops at Short.MAX_VALUE. When the cheat dice 
+ * force the roll after the point to be a 7, that roll is made as soon as the 
+ * point is set, so a game never waits in the pool for a roll it already knows.
+ * <p>
+ * The pool is advanced in rounds. Every round gives each active game its next
+ * roll, in order, from the sums of a DiceBatch, and resolves it with a lookup in
+ * the rules' transition table. Finished games are compacted out in the same
+ * pass by copying each unfinished game down to the next free slot, so the
+ * active games always fill the front of the arrays, and new games are then
+ * started in the freed slots at the end. Games follow the same rules as
+ * CrapsKernel, including the cheat dice, but take their rolls in a different
+ * order, so a pool and a kernel given the same source play different games.
+ * @author James Wen - jrw2175
+ */
+public class GamePool {
+	private static final int KEYVALUE = 7; //the number the cheat dice roll
+	private static final int OUTCOME_BITS = CrapsRules.OUTCOME_BITS;
+	private static final int OUTCOME_MASK = CrapsRules.OUTCOME_MASK;
+	private static final int SUMS = CrapsRules.SUMS;
+
+	private final DiceSource source;
+	private final boolean playerBonus;
+	private final int[] table;
+	private final byte[] states;
+	private final short[] lengths;
+	private int active;
+	private long games;
+	private long wins;
+	private long rolls;
+
+	/**
+	 * Constructs an empty pool that holds up to capacity games at once, played
+	 * by the given rules with cheat mode on or off.
+	 * @param capacity - the most games in flight at once
+	 * @param source - the dice source that batches and cheat dice roll with
+	 * @param playerBonus - whether cheat mode is on or not
+	 * @param rules - the rules to play by
+	 * @throws IllegalArgumentException - if capacity is less than 1
+	 */
+	public GamePool(int capacity, DiceSource source, boolean playerBonus,
+			CrapsRules rules){
+		if (capacity < 1){
+			throw new IllegalArgumentException("capacity must be at least 1");
+		}
+		this.source = source;
+		this.playerBonus = playerBonus;
+		this.table = rules.table();
+		this.states = new byte[capacity];
+		this.lengths = new short[capacity];
+	}
+
+	/**
+	 * run
+	 * <p>
+	 * Plays the requested number of games, keeping the pool as full as it can,
+	 * and adds them to the tallies. Returns once every game has finished.
+	 * @param count - the number of games to play
+	 * @param batch - the batch of rolls to play games with, rolled again
+	 * whenever it has been used up
+	 * @param stats - the statistics to record every game in, or null
+	 */
+	public void run(long count, DiceBatch batch, SimulationStats stats){
+		int[] sums = batch.getSums();
+		int size = batch.size();
+		int next = size;
+		long remaining = count - start(count);
+		long winCount = 0;
+		long rollCount = 0;
+		boolean counting = stats != null;
+		while (active > 0){
+			int kept = 0;
+			int i = 0;
+			while (i < active){
+				if (next == size){
+					batch.roll(source);
+					next = 0;
+				}
+				int end = Math.min(active, i + size - next); //one sum for each game
+				rollCount += end - i;
+				for (; i < end; i++){
+					int state = states[i];
+					int length = 0;
+					if (counting && (length = lengths[i]) < Short.MAX_VALUE){
+						length++;
+					}
+					int transition = table[state * SUMS + sums[next++]];
+					int outcome = transition & OUTCOME_MASK;
+					if (outcome == CrapsRules.KEEP_ROLLING){
+						int nextState = (transition >>> OUTCOME_BITS) / SUMS;
+						if (playerBonus && state == CrapsRules.COME_OUT 
+								&& nextState != CrapsRules.COME_OUT && source.nextFace(4) == 1){
+							//Cheat dice force the next roll to be a 7
+							rollCount++;
+							if (counting && length < Short.MAX_VALUE){
+								length++;
+							}
+							state = nextState;
+							outcome = table[state * SUMS + KEYVALUE] & OUTCOME_MASK;
+						}
+					}
+					if (outcome == CrapsRules.KEEP_ROLLING){
+						states[kept] = (byte) ((transition >>> OUTCOME_BITS) / SUMS);
+						if (counting){
+							lengths[kept] = (short) length;
+						}
+						kept++;
+					}
+					else {
+						if (outcome == CrapsRules.WIN){
+							winCount++;
+						}
+						if (counting){
+							stats.record(outcome == CrapsRules.WIN, length,
+									state == CrapsRules.COME_OUT ? KEYVALUE : state);
+						}
+					}
+				}
+			}
+			active = kept;
+			remaining -= start(remaining);
+		}
+		games += count;
+		wins += winCount;
+		rolls += rollCount;
+	}
+
+	/**
+	 * start
+	 * <p>
+	 * Starts up to count new games in the free slots after the active games and
+	 * returns how many were started.
+	 */
+	private int start(long count){
+		int started = (int) Math.min(count, states.length - active);
+		for (int i = active; i < active + started; i++){
+			states[i] = CrapsRules.COME_OUT;
+			lengths[i] = 0;
+		}
+		active += started;
+		return started;
+	}
+
+	/**
+	 * getCapacity
+	 * <p>
+	 * Returns the most games the pool can hold at once.
+	 * @return capacity of the pool
+	 */
+	public int getCapacity(){
+		return states.length;
+	}
+
+	/**
+	 * getGames
+	 * <p>
+	 * Returns the number of games played so far.
+	 * @return games - the number of finished games
+	 */
+	public long getGames(){
+		return games;
+	}
+
+	/**
+	 * getWins
+	 * <p>
+	 * Returns the number of games won by the player so far.
+	 * @return wins - the number of player wins
+	 */
+	public long getWins(){
+		return wins;
+	}
+
+	/**
+	 * getRolls
+	 * <p>
+	 * Returns the number of rolls made so far, counting forced cheat rolls.
+	 * @return rolls - the total number of rolls
+	 */
+	public long getRolls(){
+		return rolls;
+	}
+
+	/**
+	 * The main method fills a pool of ten million games, by default, and plays
+	 * games through it, printing the heap the pool takes next to the heap the
+	 * same number of CrapsHandlers would take, the throughput, and the win rate
+	 * next to the exact value from CrapsSolver.
+	 * <p>
+	 * Usage: java GamePool [games] [-capacity n] [-cheat] [-seed s]
+	 * [-rules name|spec|file]
+	 */
+	public static void main(String[] args){
+		long games = 100000000;
+		int capacity = 10000000;
+		boolean cheat = false;
+		long seed = System.nanoTime();
+		CrapsRules rules = CrapsRules.HOUSE;
+		try {
+			for (int i = 0; i < args.length; i++){
+				if (("-capacity").equals(args[i])){
+					capacity = Integer.parseInt(args[++i].replace("_", ""));
+				}
+				else if (("-cheat").equals(args[i])){
+					cheat = true;
+				}
+				else if (("-seed").equals(args[i])){
+					seed = Long.parseLong(args[++i]);
+				}
+				else if (("-rules").equals(args[i])){
+					rules = CrapsRules.forName(args[++i]);
+				}
+				else {
+					games = Long.parseLong(args[i].replace("_", ""));
+				}
+			}
+			DiceSource source = RandomDiceSource.of(RandomDiceSource.L64X128_MIX, seed);
+			int sample = 100000;
+			long before = usedHeap();
+			CrapsHandler[] handlers = new CrapsHandler[sample];
+			for (int i = 0; i < sample; i++){
+				handlers[i] = new CrapsHandler(source, rules);
+			}
+			double handlerBytes = (double) (usedHeap() - before) / handlers.length;
+			handlers = null;
+			before = usedHeap();
+			GamePool pool = new GamePool(capacity, source, cheat, rules);
+			long poolBytes = usedHeap() - before;
+			System.out.println(String.format("Pool of %d games: %.1f MB; as "
+					+ "CrapsHandlers (%.0f bytes each): %.1f MB", capacity,
+					poolBytes / 1e6, handlerBytes, handlerBytes * capacity / 1e6));
+			long start = System.nanoTime();
+			pool.run(games, DiceBatch.create(1 << 16), null);
+			SimulationResult result = new SimulationResult(pool.getGames(),
+					pool.getWins(), pool.getRolls(), System.nanoTime() - start);
+			System.out.println(result);
+			System.out.println(String.format("Exact Win Rate: %.6f",
+					new CrapsSolver(cheat, rules).getWinProbability().doubleValue()));
+		}
+		catch (IllegalArgumentException | ArrayIndexOutOfBoundsException
+				| IOException e){
+			System.out.println("Usage: java GamePool [games] [-capacity n] [-cheat] "
+					+ "[-seed s] [-rules name|spec|file]");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * usedHeap
+	 * <p>
+	 * Returns the bytes of heap in use after a garbage collection.
+	 */
+	private static long usedHeap(){
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+} //End of GamePool class
@@ -0,0 +1,593 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * <b>GameRecordStore Class</b>
+ * <p>
+ * An append-only file of one record per game: the come-out sum, the point, the
+ * number of rolls, whether the player won, and the first special roll of the
+ * game, as named by CrapsHandler.specialRoll. Each record takes 4 bytes, and
+ * counting the games with a given point and range of lengths reads a small
+ * index instead of the records, so it takes milliseconds for a billion games.
+ * <p>
+ * The file is a 4096 byte header, holding MAGIC, VERSION and the number of
+ * records, followed by blocks of 65536 records. Each block starts with its
+ * index, a count of its games for every point (0 for none, 2-12), number of
+ * rolls (1-63 exactly, then 64 and over together) and outcome, followed by
+ * three columns: a byte of come-out sum and point, a byte of outcome and first
+ * special roll, and a char of rolls, which stops at MAX_ROLLS. Queries only
+ * look at the columns of blocks whose index says they hold a match, and only
+ * to find which records match or to count games of 64 rolls or more.
+ * <p>
+ * The file is memory mapped a few megabytes at a time as it grows, so records
+ * live outside the heap and appending them allocates nothing; the heap holds
+ * only one buffer per mapped region. The number of records is written to the
+ * header by flush and close, so records appended after the last of those are
+ * lost if the program dies. A store is not thread safe.
+ * @author James Wen - jrw2175
+ */
+public class GameRecordStore implements AutoCloseable {
+	//First special rolls of a game
+	public static final int NONE = 0;
+	public static final int SEVEN = 1;
+	public static final int SNAKE_EYES = 2;
+	public static final int BOX_CARS = 3;
+	public static final int NO_POINT = 0; //point of a game decided on the come-out
+	public static final int ANY_POINT = -1;
+	public static final int MAX_ROLLS = 65535; //longer games are stored as this
+
+	private static final int MAGIC = 0x43524753; //"CRGS"
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 4096;
+	private static final int BLOCK_SHIFT = 16;
+	private static final int BLOCK_RECORDS = 1 << BLOCK_SHIFT;
+	private static final int POINTS = 13; //index rows, by point 0-12
+	private static final int TAIL = 64; //index bucket of games of 64 rolls or more
+	private static final int BUCKETS = TAIL + 1;
+	private static final int INDEX_BYTES = 8192; //POINTS * BUCKETS * 2 ints, padded
+	private static final int POINT_COLUMN = INDEX_BYTES;
+	private static final int OUTCOME_COLUMN = POINT_COLUMN + BLOCK_RECORDS;
+	private static final int ROLLS_COLUMN = OUTCOME_COLUMN + BLOCK_RECORDS;
+	private static final int BLOCK_BYTES = ROLLS_COLUMN + 2 * BLOCK_RECORDS;
+	private static final int REGION_BLOCKS = 32; //blocks mapped at a time
+	private static final long REGION_BYTES = (long) REGION_BLOCKS * BLOCK_BYTES;
+
+	private final FileChannel channel;
+	private final List<MappedByteBuffer> regions = new ArrayList<MappedByteBuffer>();
+	private long count;
+
+	/**
+	 * Opens the store at the given path, creating it if it does not exist,
+	 * ready to append records after the ones it already holds.
+	 * @param path - the store file
+	 * @throws IOException - if the file cannot be opened, or is not a store
+	 */
+	public GameRecordStore(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			if (channel.size() == 0){
+				writeHeader();
+			}
+			else {
+				ByteBuffer header = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+				channel.read(header, 0);
+				header.flip();
+				if (header.remaining() < 16 || header.getInt() != MAGIC
+						|| header.getInt() != VERSION){
+					throw new IOException("not a game record store: " + path);
+				}
+				count = header.getLong();
+				if (count < 0 || HEADER_BYTES + blocks(count) * BLOCK_BYTES > channel.size()){
+					throw new IOException("truncated game record store: " + path);
+				}
+			}
+		}
+		catch (IOException e){
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * special
+	 * <p>
+	 * Returns the special roll a dice sum is: SEVEN, SNAKE_EYES, BOX_CARS or
+	 * NONE.
+	 * @param sum - the sum of the two dice
+	 * @return special roll code of the sum
+	 */
+	public static int special(int sum){
+		switch (sum){
+			case 7:
+				return SEVEN;
+			case 2:
+				return SNAKE_EYES;
+			case 12:
+				return BOX_CARS;
+			default:
+				return NONE;
+		}
+	}
+
+	/**
+	 * append
+	 * <p>
+	 * Adds the record of one game to the end of the store.
+	 * @param comeOut - the sum of the first roll, 2-12
+	 * @param point - the point, 2-12, or NO_POINT
+	 * @param rolls - the number of rolls the game took, at least 1
+	 * @param won - whether the player won
+	 * @param special - the first special roll of the game
+	 * @throws IllegalArgumentException - if a field is out of range
+	 * @throws UncheckedIOException - if the file cannot be grown
+	 */
+	public void append(int comeOut, int point, int rolls, boolean won, int special){
+		if (comeOut < 2 || comeOut > 12 || point < 0 || point > 12 || point == 1
+				|| rolls < 1 || special < NONE || special > BOX_CARS){
+			throw new IllegalArgumentException("invalid game record");
+		}
+		long block = count >>> BLOCK_SHIFT;
+		int slot = (int) count & (BLOCK_RECORDS - 1);
+		ByteBuffer region = region(block);
+		int base = base(block);
+		int stored = Math.min(rolls, MAX_ROLLS);
+		region.put(base + POINT_COLUMN + slot, (byte) (comeOut << 4 | point));
+		region.put(base + OUTCOME_COLUMN + slot, (byte) (special << 1 | (won ? 1 : 0)));
+		region.putChar(base + ROLLS_COLUMN + 2 * slot, (char) stored);
+		int counter = base + counter(point, Math.min(stored, TAIL), won);
+		region.putInt(counter, region.getInt(counter) + 1);
+		count++;
+	}
+
+	/**
+	 * count
+	 * <p>
+	 * Returns the number of games with the given point that took from minRolls
+	 * to maxRolls rolls, inclusive.
+	 * @param point - the point, NO_POINT, or ANY_POINT for all games
+	 * @param minRolls - the fewest rolls
+	 * @param maxRolls - the most rolls
+	 * @return number of matching games
+	 * @throws IllegalArgumentException - if the point is not valid
+	 */
+	public long count(int point, int minRolls, int maxRolls){
+		return query(point, minRolls, maxRolls, false, null);
+	}
+
+	/**
+	 * countWins
+	 * <p>
+	 * Returns the number of games won with the given point that took from
+	 * minRolls to maxRolls rolls, inclusive.
+	 * @param point - the point, NO_POINT, or ANY_POINT for all games
+	 * @param minRolls - the fewest rolls
+	 * @param maxRolls - the most rolls
+	 * @return number of matching games won by the player
+	 * @throws IllegalArgumentException - if the point is not valid
+	 */
+	public long countWins(int point, int minRolls, int maxRolls){
+		return query(point, minRolls, maxRolls, true, null);
+	}
+
+	/**
+	 * forEach
+	 * <p>
+	 * Passes the number of every game with the given point that took from
+	 * minRolls to maxRolls rolls, inclusive, to the action, in order.
+	 * @param point - the point, NO_POINT, or ANY_POINT for all games
+	 * @param minRolls - the fewest rolls
+	 * @param maxRolls - the most rolls
+	 * @param action - what to do with each matching record number
+	 * @return number of matching games
+	 * @throws IllegalArgumentException - if the point is not valid
+	 */
+	public long forEach(int point, int minRolls, int maxRolls, LongConsumer action){
+		return query(point, minRolls, maxRolls, false, action);
+	}
+
+	/**
+	 * query
+	 * <p>
+	 * Counts, or visits, matching games block by block. Counting adds up the
+	 * index entries of every number of rolls in range, and scans a block's
+	 * columns only for games of TAIL rolls or more when the range does not
+	 * take in all of them. Visiting scans the columns of each block whose
+	 * index has a match.
+	 */
+	private long query(int point, int minRolls, int maxRolls, boolean winsOnly,
+			LongConsumer action){
+		if (point != ANY_POINT && (point < 0 || point > 12 || point == 1)){
+			throw new IllegalArgumentException("invalid point: " + point);
+		}
+		int first = (point == ANY_POINT) ? 0 : point;
+		int last = (point == ANY_POINT) ? POINTS - 1 : point;
+		int low = Math.max(minRolls, 1);
+		int high = Math.min(maxRolls, MAX_ROLLS);
+		if (low > high){
+			return 0;
+		}
+		boolean wholeTail = low <= TAIL && high == MAX_ROLLS;
+		long total = 0;
+		for (long block = 0; block < blocks(count); block++){
+			ByteBuffer region = region(block);
+			int base = base(block);
+			int records = (int) Math.min(BLOCK_RECORDS, count - (block << BLOCK_SHIFT));
+			long matches = 0;
+			boolean scanTail = false;
+			for (int p = first; p <= last; p++){
+				for (int rolls = low; rolls <= high && rolls < TAIL; rolls++){
+					matches += indexed(region, base, p, rolls, winsOnly);
+				}
+				if (high >= TAIL){
+					long tail = indexed(region, base, p, TAIL, winsOnly);
+					if (wholeTail || tail == 0){
+						matches += tail;
+					}
+					else {
+						scanTail = true;
+					}
+				}
+			}
+			if (action != null && (matches > 0 || scanTail)){
+				total += scan(region, base, records, first, last, low, high, winsOnly,
+						block << BLOCK_SHIFT, action);
+			}
+			else {
+				if (scanTail){
+					matches += scan(region, base, records, first, last, Math.max(low, TAIL),
+							high, winsOnly, 0, null);
+				}
+				total += matches;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * indexed
+	 * <p>
+	 * Returns a block's index count of games with the given point and rolls
+	 * bucket, won or, unless winsOnly, lost.
+	 */
+	private static int indexed(ByteBuffer region, int base, int point, int bucket,
+			boolean winsOnly){
+		int wins = region.getInt(base + counter(point, bucket, true));
+		return winsOnly ? wins : wins + region.getInt(base + counter(point, bucket, false));
+	}
+
+	/**
+	 * scan
+	 * <p>
+	 * Counts the matching games in the columns of one block, passing the
+	 * number of each to the action if there is one.
+	 */
+	private static long scan(ByteBuffer region, int base, int records, int first,
+			int last, int low, int high, boolean winsOnly, long firstRecord,
+			LongConsumer action){
+		long matches = 0;
+		for (int slot = 0; slot < records; slot++){
+			int point = region.get(base + POINT_COLUMN + slot) & 0xF;
+			if (point < first || point > last){
+				continue;
+			}
+			int rolls = region.getChar(base + ROLLS_COLUMN + 2 * slot);
+			if (rolls < low || rolls > high
+					|| (winsOnly && (region.get(base + OUTCOME_COLUMN + slot) & 1) == 0)){
+				continue;
+			}
+			matches++;
+			if (action != null){
+				action.accept(firstRecord + slot);
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * getComeOut
+	 * <p>
+	 * Returns the sum of the first roll of a game.
+	 * @param record - the number of the game, from 0
+	 * @return come-out sum, 2-12
+	 */
+	public int getComeOut(long record){
+		return (column(record, POINT_COLUMN) & 0xFF) >>> 4;
+	}
+
+	/**
+	 * getPoint
+	 * <p>
+	 * Returns the point of a game.
+	 * @param record - the number of the game, from 0
+	 * @return point, 2-12, or NO_POINT
+	 */
+	public int getPoint(long record){
+		return column(record, POINT_COLUMN) & 0xF;
+	}
+
+	/**
+	 * isWin
+	 * <p>
+	 * Returns whether the player won a game.
+	 * @param record - the number of the game, from 0
+	 * @return whether the game was won
+	 */
+	public boolean isWin(long record){
+		return (column(record, OUTCOME_COLUMN) & 1) != 0;
+	}
+
+	/**
+	 * getSpecial
+	 * <p>
+	 * Returns the first special roll of a game.
+	 * @param record - the number of the game, from 0
+	 * @return SEVEN, SNAKE_EYES, BOX_CARS or NONE
+	 */
+	public int getSpecial(long record){
+		return (column(record, OUTCOME_COLUMN) & 0xFF) >>> 1;
+	}
+
+	/**
+	 * getRolls
+	 * <p>
+	 * Returns the number of rolls a game took, up to MAX_ROLLS.
+	 * @param record - the number of the game, from 0
+	 * @return number of rolls
+	 */
+	public int getRolls(long record){
+		long block = checked(record) >>> BLOCK_SHIFT;
+		int slot = (int) record & (BLOCK_RECORDS - 1);
+		return region(block).getChar(base(block) + ROLLS_COLUMN + 2 * slot);
+	}
+
+	/**
+	 * column
+	 * <p>
+	 * Returns a record's byte of the given byte column.
+	 */
+	private byte column(long record, int column){
+		long block = checked(record) >>> BLOCK_SHIFT;
+		int slot = (int) record & (BLOCK_RECORDS - 1);
+		return region(block).get(base(block) + column + slot);
+	}
+
+	/**
+	 * checked
+	 * <p>
+	 * Returns the record number, if the store holds it.
+	 */
+	private long checked(long record){
+		if (record < 0 || record >= count){
+			throw new IndexOutOfBoundsException("no record " + record);
+		}
+		return record;
+	}
+
+	/**
+	 * size
+	 * <p>
+	 * Returns the number of records in the store.
+	 * @return count - the number of games recorded
+	 */
+	public long size(){
+		return count;
+	}
+
+	/**
+	 * flush
+	 * <p>
+	 * Writes the records and the record count to the disk.
+	 * @throws IOException - if the file cannot be written
+	 */
+	public void flush() throws IOException {
+		for (MappedByteBuffer region : regions){
+			region.force();
+		}
+		writeHeader();
+		channel.force(true);
+	}
+
+	/**
+	 * close
+	 * <p>
+	 * Flushes the store, trims the file to its last block and closes it.
+	 * @throws IOException - if the file cannot be written
+	 */
+	public void close() throws IOException {
+		try {
+			flush();
+			channel.truncate(HEADER_BYTES + blocks(count) * BLOCK_BYTES);
+		}
+		finally {
+			regions.clear();
+			channel.close();
+		}
+	}
+
+	/**
+	 * writeHeader
+	 * <p>
+	 * Writes the magic number, version and record count at the start of the
+	 * file.
+	 */
+	private void writeHeader() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(VERSION).putLong(count).flip();
+		while (header.hasRemaining()){
+			channel.write(header, header.position());
+		}
+	}
+
+	/**
+	 * region
+	 * <p>
+	 * Returns the mapped region holding a block, mapping regions up to it, and
+	 * growing the file, if they are not mapped yet.
+	 */
+	private ByteBuffer region(long block){
+		int index = (int) (block / REGION_BLOCKS);
+		while (regions.size() <= index){
+			try {
+				MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE,
+						HEADER_BYTES + regions.size() * REGION_BYTES, REGION_BYTES);
+				region.order(ByteOrder.LITTLE_ENDIAN);
+				regions.add(region);
+			}
+			catch (IOException e){
+				throw new UncheckedIOException(e);
+			}
+		}
+		return regions.get(index);
+	}
+
+	/**
+	 * base
+	 * <p>
+	 * Returns the offset of a block within its region.
+	 */
+	private static int base(long block){
+		return (int) (block % REGION_BLOCKS) * BLOCK_BYTES;
+	}
+
+	/**
+	 * counter
+	 * <p>
+	 * Returns the offset within a block of an index count.
+	 */
+	private static int counter(int point, int bucket, boolean won){
+		return ((point * BUCKETS + bucket) * 2 + (won ? 1 : 0)) * 4;
+	}
+
+	/**
+	 * blocks
+	 * <p>
+	 * Returns the number of blocks that hold the given number of records.
+	 */
+	private static long blocks(long records){
+		return (records + BLOCK_RECORDS - 1) >>> BLOCK_SHIFT;
+	}
+
+	/**
+	 * The main method plays games through a CrapsSimulator, appends their records
+	 * to a store, and prints the garbage collections that happened while doing
+	 * so. It then counts the games with a point of 4 that took more than 20
+	 * rolls, and the games of 30 to 70 rolls, and checks both counts against a 
+	 * scan of every record, timing each.
+	 * <p>
+	 * Usage: java GameRecordStore file [games] [-cheat] [-seed s]
+	 * [-rules name|spec|file]
+	 */
+	public static void main(String[] args){
+		long games = 10000000;
+		boolean cheat = false;
+		long seed = System.nanoTime();
+		CrapsRules rules = CrapsRules.HOUSE;
+		String file = null;
+		try {
+			for (int i = 0; i < args.length; i++){
+				if (("-cheat").equals(args[i])){
+					cheat = true;
+				}
+				else if (("-seed").equals(args[i])){
+					seed = Long.parseLong(args[++i]);
+				}
+				else if (("-rules").equals(args[i])){
+					rules = CrapsRules.forName(args[++i]);
+				}
+				else if (file == null){
+					file = args[i];
+				}
+				else {
+					games = Long.parseLong(args[i].replace("_", ""));
+				}
+			}
+			if (file == null){
+				throw new IllegalArgumentException("no store file");
+			}
+			try (GameRecordStore store = new GameRecordStore(Paths.get(file))){
+				CrapsSimulator simulator = new CrapsSimulator(cheat, 
+						CrapsSimulator.Engine.KERNEL);
+				simulator.setRules(rules);
+				long collections = collections();
+				long start = System.nanoTime();
+				simulator.run(games, RandomDiceSource.of(RandomDiceSource.L64X128_MIX, 
+						seed), store);
+				System.out.println(String.format("Appended %d records in %.3f s with %d "
+						+ "garbage collections; store holds %d", games,
+						(System.nanoTime() - start) / 1e9, collections() - collections,
+						store.size()));
+				for (int i = 0; i < 200; i++){ //Warms up the query code
+					store.count(4, 21, MAX_ROLLS);
+					store.countWins(4, 21, MAX_ROLLS);
+					store.count(ANY_POINT, 30, 70);
+				}
+				start = System.nanoTime();
+				long indexed = store.count(4, 21, MAX_ROLLS);
+				long indexedWins = store.countWins(4, 21, MAX_ROLLS);
+				double indexTime = (System.nanoTime() - start) / 1e6;
+				start = System.nanoTime();
+				long longer = store.count(ANY_POINT, 30, 70);
+				double tailTime = (System.nanoTime() - start) / 1e6;
+				long[] visited = new long[1];
+				long visits = store.forEach(4, 21, MAX_ROLLS, record -> visited[0]++);
+				start = System.nanoTime();
+				long scanned = 0;
+				long scannedWins = 0;
+				long scannedLonger = 0;
+				for (long record = 0; record < store.size(); record++){
+					int rolls = store.getRolls(record);
+					if (store.getPoint(record) == 4 && rolls > 20){
+						scanned++;
+						if (store.isWin(record)){
+							scannedWins++;
+						}
+					}
+					if (rolls >= 30 && rolls <= 70){
+						scannedLonger++;
+					}
+				}
+				double scanTime = (System.nanoTime() - start) / 1e6;
+				System.out.println(String.format("Point 4, over 20 rolls: %d games, %d "
+						+ "won, in %.2f ms", indexed, indexedWins, indexTime));
+				System.out.println(String.format("30 to 70 rolls: %d games, in %.2f ms", 
+						longer, tailTime));
+				System.out.println(String.format("Full scan: %.1f ms, %s", scanTime,
+						indexed == scanned && indexedWins == scannedWins 
+						&& longer == scannedLonger && visits == scanned 
+						&& visited[0] == scanned ? "same counts" : "MISMATCH"));
+			}
+		}
+		catch (IllegalArgumentException | ArrayIndexOutOfBoundsException | IOException e){
+			System.out.println("Usage: java GameRecordStore file [games] [-cheat] "
+					+ "[-seed s] [-rules name|spec|file]");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * collections
+	 * <p>
+	 * Returns the number of garbage collections so far.
+	 */
+	private static long collections(){
+		long total = 0;
+		for (GarbageCollectorMXBean collector
+				: ManagementFactory.getGarbageCollectorMXBeans()){
+			total += Math.max(0, collector.getCollectionCount());
+		}
+		return total;
+	}
+} //End of GameRecordStore class
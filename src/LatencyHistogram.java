@@ -0,0 +1,137 @@
+import java.util.Arrays;
+
+/**
+ * <b>LatencyHistogram Class</b>
+ * <p>
+ * Counts durations in nanoseconds in log-linear buckets, in the manner of 
+ * HdrHistogram, so that percentiles can be read off with about 3% precision 
+ * over the whole range of a long.
+ * <p>
+ * Values below 32 each get their own bucket; above that every power of two is
+ * split into 32 equal buckets. Recording a value is a few shifts and an array
+ * increment and never allocates. A histogram is not thread safe; each worker 
+ * records into its own and hands it over to be merged.
+ * @author James Wen - jrw2175
+ */
+public class LatencyHistogram {
+	private static final int SUB_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+	
+	private final long[] counts = new long[BUCKETS];
+	private long total;
+	private long max;
+	
+	/**
+	 * record
+	 * <p>
+	 * Counts one duration. Negative durations are counted as 0.
+	 * @param value - the duration in nanoseconds
+	 */
+	public void record(long value){
+		if (value < 0){
+			value = 0;
+		}
+		counts[indexOf(value)]++;
+		total++;
+		if (value > max){
+			max = value;
+		}
+	}
+	
+	/**
+	 * indexOf
+	 * <p>
+	 * Returns the bucket of a non-negative value.
+	 */
+	private static int indexOf(long value){
+		if (value < SUB_BUCKETS){
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+	}
+	
+	/**
+	 * valueOf
+	 * <p>
+	 * Returns the middle of the range of values counted in a bucket.
+	 */
+	private static long valueOf(int index){
+		if (index < SUB_BUCKETS){
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		long lowest = (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+		return lowest + ((1L << shift) >>> 1);
+	}
+	
+	/**
+	 * merge
+	 * <p>
+	 * Adds the counts of another histogram to this one.
+	 * @param other - the histogram to add
+	 */
+	public void merge(LatencyHistogram other){
+		for (int i = 0; i < BUCKETS; i++){
+			counts[i] += other.counts[i];
+		}
+		total += other.total;
+		max = Math.max(max, other.max);
+	}
+	
+	/**
+	 * reset
+	 * <p>
+	 * Clears all counts so that the histogram can be reused.
+	 */
+	public void reset(){
+		Arrays.fill(counts, 0L);
+		total = 0;
+		max = 0;
+	}
+	
+	/**
+	 * getCount
+	 * <p>
+	 * Returns the number of durations recorded.
+	 * @return total - number of durations
+	 */
+	public long getCount(){
+		return total;
+	}
+	
+	/**
+	 * getMax
+	 * <p>
+	 * Returns the longest duration recorded, exactly.
+	 * @return max - longest duration in nanoseconds
+	 */
+	public long getMax(){
+		return max;
+	}
+	
+	/**
+	 * getPercentile
+	 * <p>
+	 * Returns the duration below which the given percentage of recorded 
+	 * durations fall.
+	 * @param percentile - the percentage, in the range of 0-100
+	 * @return duration in nanoseconds, 0 if nothing was recorded
+	 */
+	public long getPercentile(double percentile){
+		if (total == 0){
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++){
+			seen += counts[i];
+			if (seen >= rank){
+				return Math.min(valueOf(i), max);
+			}
+		}
+		return max;
+	}
+} //End of LatencyHistogram class
@@ -11,6 +11,7 @@
  */
 
 public class PairOfDice {
+	private final DiceSource source;
 	private Die die1;
 	private Die die2;
 	private int diceSum; 
@@ -21,8 +22,19 @@ public class PairOfDice {
 	 * chosen at random.
 	 */
 	public PairOfDice(){
-		this.die1 = new Die();
-		this.die2 = new Die();
+		this(Die.SHARED_SOURCE);
+	}
+	
+	/**
+	 * Constructs two dice each with 6 faces whose currently shown face values are
+	 * chosen at random. Both dice, and the cheat dice, roll with the given 
+	 * source.
+	 * @param source - the dice source to roll with
+	 */
+	public PairOfDice(DiceSource source){
+		this.die1 = new Die(source);
+		this.die2 = new Die(source);
+		this.source = source;
 		diceSum = die1.getFaceValue()+die2.getFaceValue();
 	}
 	
@@ -33,6 +45,7 @@ public class PairOfDice {
 	public PairOfDice(int dieValue1, int dieValue2){
 		this.die1= new Die(dieValue1);
 		this.die2= new Die(dieValue2);
+		this.source = Die.SHARED_SOURCE;
 		diceSum = die1.getFaceValue()+die2.getFaceValue();
 	}
 	
@@ -43,6 +56,7 @@ public class PairOfDice {
 	public PairOfDice(Die die1, Die die2){
 		this.die1= new Die(die1.getFaceValue());
 		this.die2= new Die(die2.getFaceValue());
+		this.source = Die.SHARED_SOURCE;
 		diceSum = this.die1.getFaceValue()+ this.die2.getFaceValue();
 	}
 	/**
@@ -63,7 +77,7 @@ public class PairOfDice {
       */
 	public int roll(){
 		if(cheatOn){//If cheat mode is on
-			int visualSelector = ((int)(Math.random() * 6) + 1);
+			int visualSelector = source.nextFace(6);
 			if (visualSelector==1){
 				die1.setFaceValue(3);
 				die2.setFaceValue(4);
@@ -98,6 +112,44 @@ public class PairOfDice {
 		return (die1.getFaceValue()+die2.getFaceValue());
 	}
 	
+	/**
+	  * roll
+	  * <p>
+	  * Sets the dice to the given face values as if they had been rolled, for 
+	  * replaying recorded rolls. Any pending cheat dice are cancelled.
+	  * @param dieValue1 - the face value of die 1
+	  * @param dieValue2 - the face value of die 2
+	  * @return diceSum - the sum of the two face values
+	  * @throws IllegalArgumentException - if a face value is not in the range of 1-6
+	  */
+	public int roll(int dieValue1, int dieValue2){
+		die1.setFaceValue(dieValue1);
+		die2.setFaceValue(dieValue2);
+		cheatOn = false;
+		diceSum = dieValue1 + dieValue2;
+		return diceSum;
+	}
+	
+	/**
+	  * rollBatch
+	  * <p>
+	  * Rolls the pair of dice batch.size() times at once with this pair's source,
+	  * filling the primitive arrays of the batch, and leaves the dice showing the
+	  * last roll of the batch.
+	  * <p>
+	  * Cheat dice are not applied to batches.
+	  * @param batch - the batch to fill with rolls
+	  * @return diceSum - the sum of the last roll of the batch
+	  */
+	public int rollBatch(DiceBatch batch){
+		batch.roll(source);
+		int last = batch.size() - 1;
+		die1.setFaceValue(batch.getFaces1()[last]);
+		die2.setFaceValue(batch.getFaces2()[last]);
+		diceSum = batch.getSums()[last];
+		return diceSum;
+	}
+	
 	/**
 	  * cheatDice
 	  * <p>
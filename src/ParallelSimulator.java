@@ -0,0 +1,486 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <b>ParallelSimulator Class</b>
+ * <p>
+ * Plays a batch of Craps games split across a fixed pool of worker threads and
+ * merges the tallies of the workers once they have all finished.
+ * <p>
+ * Every worker owns its own CrapsSimulator and DiceSource, and with them the
+ * game state of the engine it plays with: a CrapsHandler and pair of dice for
+ * HANDLER, a CrapsKernel, the default, for KERNEL and FAST, a kernel and 
+ * DiceBatch for BATCH, and a GamePool and DiceBatch for POOL. The sources 
+ * are split off a single seeded source given by the caller, so the workers 
+ * never share any mutable state while playing.
+ * <p>
+ * runDeterministic instead cuts the games into chunks of CHUNK_GAMES, which the
+ * workers take in turn. Every chunk is played with the PhiloxDiceSource stream
+ * of its chunk index under a master seed, and the chunk tallies are merged in
+ * chunk order, so the results are the same bit for bit whatever the number of
+ * threads and however the chunks were scheduled. With setCheckpoint, such a
+ * run saves its progress to a SimulationCheckpoint every few seconds and, if 
+ * the checkpoint file already exists, resumes from it.
+ * @author James Wen - jrw2175
+ */
+public class ParallelSimulator {
+	public static final int CHUNK_GAMES = 1 << 16; //games per deterministic chunk
+	
+	private final boolean playerBonus; //cheat mode
+	private final int threads;
+	private final CrapsSimulator.Engine engine;
+	private SimulationMonitor monitor;
+	private CrapsRules rules = CrapsRules.HOUSE;
+	private Path checkpointFile;
+	private long checkpointMillis;
+	
+	/**
+	 * Constructs a parallel simulator with the given number of worker threads, 
+	 * whose workers play games with the kernel.
+	 * @param playerBonus - whether cheat mode is on or not
+	 * @param threads - the number of worker threads to play games on
+	 * @throws IllegalArgumentException - if threads is less than 1
+	 */
+	public ParallelSimulator(boolean playerBonus, int threads){
+		this(playerBonus, threads, CrapsSimulator.Engine.KERNEL);
+	}
+	
+	/**
+	 * Constructs a parallel simulator with the given number of worker threads, 
+	 * whose workers play games with the given engine.
+	 * @param playerBonus - whether cheat mode is on or not
+	 * @param threads - the number of worker threads to play games on
+	 * @param engine - the engine each worker plays games with
+	 * @throws IllegalArgumentException - if threads is less than 1
+	 */
+	public ParallelSimulator(boolean playerBonus, int threads, 
+			CrapsSimulator.Engine engine){
+		if (threads < 1){
+			throw new IllegalArgumentException("threads must be at least 1");
+		}
+		this.playerBonus = playerBonus;
+		this.threads = threads;
+		this.engine = engine;
+	}
+	
+	/**
+	 * setMonitor
+	 * <p>
+	 * Makes later runs report every worker's progress to the given monitor, 
+	 * which must have room for as many workers as there are threads. Pass null 
+	 * to stop monitoring.
+	 * @param monitor - the monitor to report to, or null
+	 */
+	public void setMonitor(SimulationMonitor monitor){
+		this.monitor = monitor;
+	}
+	
+	/**
+	 * setRules
+	 * <p>
+	 * Makes later runs play by the given rules instead of the house rules.
+	 * @param rules - the rules to play by
+	 */
+	public void setRules(CrapsRules rules){
+		this.rules = rules;
+	}
+	
+	/**
+	 * setCheckpoint
+	 * <p>
+	 * Makes later deterministic runs resume from the given checkpoint file if it
+	 * exists, and save their progress to it at the given interval and when they
+	 * finish. Pass null to stop checkpointing.
+	 * @param file - the checkpoint file, or null
+	 * @param intervalMillis - the time between checkpoints, in milliseconds
+	 */
+	public void setCheckpoint(Path file, long intervalMillis){
+		this.checkpointFile = file;
+		this.checkpointMillis = intervalMillis;
+	}
+	
+	/**
+	 * run
+	 * <p>
+	 * Splits the requested number of games evenly across the worker threads, 
+	 * plays them, and merges the per-worker tallies.
+	 * @param games - the number of games to play
+	 * @param seed - the seed of the SplittableRandom every worker's source is 
+	 * split from
+	 * @return result - merged tallies of all workers and the wall clock time
+	 * @throws IllegalArgumentException - if the number of games is negative
+	 */
+	public SimulationResult run(long games, long seed){
+		return run(games, RandomDiceSource.of(RandomDiceSource.SPLITTABLE, seed));
+	}
+	
+	/**
+	 * run
+	 * <p>
+	 * Splits the requested number of games evenly across the worker threads and
+	 * plays them, each worker rolling with its own source split off root.
+	 * @param games - the number of games to play
+	 * @param root - the source every worker's source is split from
+	 * @return result - merged tallies of all workers and the wall clock time
+	 * @throws IllegalArgumentException - if the number of games is negative
+	 * @throws UnsupportedOperationException - if root cannot be split
+	 */
+	public SimulationResult run(long games, DiceSource root){
+		if (games < 0){
+			throw new IllegalArgumentException("games must not be negative");
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		long start = System.nanoTime();
+		try {
+			List<Future<SimulationResult>> workers = new ArrayList<Future<SimulationResult>>();
+			for (int i = 0; i < threads; i++){
+				final long share = games / threads + (i < games % threads ? 1 : 0);
+				final CrapsSimulator simulator = new CrapsSimulator(playerBonus, engine);
+				simulator.setMonitor(monitor, i);
+				simulator.setRules(rules);
+				final DiceSource stream = root.split();
+				workers.add(pool.submit(() -> simulator.run(share, stream)));
+			}
+			long wins = 0;
+			long rolls = 0;
+			for (Future<SimulationResult> worker : workers){
+				SimulationResult tally = worker.get();
+				wins += tally.getWins();
+				rolls += tally.getRolls();
+			}
+			return new SimulationResult(games, wins, rolls, System.nanoTime() - start);
+		}
+		catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("simulation interrupted", e);
+		}
+		catch (ExecutionException e){
+			throw new IllegalStateException("simulation worker failed", e.getCause());
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+	
+	/**
+	 * run
+	 * <p>
+	 * Splits the requested number of games evenly across the worker threads and
+	 * plays them, each worker rolling with its own source split off root and 
+	 * recording every game in its own statistics, which are merged into the 
+	 * given statistics in worker order once all workers have finished.
+	 * @param games - the number of games to play
+	 * @param root - the source every worker's source is split from
+	 * @param stats - the statistics to record the games in
+	 * @return result - merged tallies of all workers and the wall clock time
+	 * @throws IllegalArgumentException - if the number of games is negative
+	 * @throws UnsupportedOperationException - if root cannot be split
+	 */
+	public SimulationResult run(long games, DiceSource root, SimulationStats stats){
+		if (games < 0){
+			throw new IllegalArgumentException("games must not be negative");
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		long start = System.nanoTime();
+		try {
+			List<Future<SimulationStats>> workers = new ArrayList<Future<SimulationStats>>();
+			for (int i = 0; i < threads; i++){
+				final long share = games / threads + (i < games % threads ? 1 : 0);
+				final CrapsSimulator simulator = new CrapsSimulator(playerBonus, engine);
+				simulator.setMonitor(monitor, i);
+				simulator.setRules(rules);
+				final DiceSource stream = root.split();
+				workers.add(pool.submit(() -> {
+					SimulationStats workerStats = new SimulationStats();
+					simulator.run(share, 0, SimulationStats.Z95, stream, workerStats);
+					return workerStats;
+				}));
+			}
+			long wins = 0;
+			long rolls = 0;
+			for (Future<SimulationStats> worker : workers){
+				SimulationStats tally = worker.get();
+				wins += tally.getWins();
+				rolls += tally.getRolls();
+				stats.merge(tally);
+			}
+			return new SimulationResult(games, wins, rolls, System.nanoTime() - start);
+		}
+		catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("simulation interrupted", e);
+		}
+		catch (ExecutionException e){
+			throw new IllegalStateException("simulation worker failed", e.getCause());
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+	
+	/**
+	 * runDeterministic
+	 * <p>
+	 * Plays the requested number of games in chunks of CHUNK_GAMES, each with 
+	 * the Philox stream of its chunk index under the master seed, and merges 
+	 * the chunks in chunk order. The tallies, and the statistics if asked for,
+	 * depend only on the games, seed, engine, rules and cheat mode, not on the
+	 * number of threads, nor on whether the run was resumed from a checkpoint.
+	 * A monitor is told of every chunk once it is played; game durations are 
+	 * not sampled, since timing games one at a time would change how the BATCH
+	 * and POOL engines play them.
+	 * @param games - the number of games to play
+	 * @param masterSeed - the key of every chunk's PhiloxDiceSource
+	 * @param stats - the statistics to record every game in, or null for tallies
+	 * only
+	 * @return result - merged tallies of all chunks and the wall clock time of 
+	 * this session
+	 * @throws IllegalArgumentException - if the number of games is negative, or
+	 * the checkpoint to resume from belongs to a different run
+	 * @throws UncheckedIOException - if the checkpoint cannot be read or written
+	 */
+	public SimulationResult runDeterministic(long games, long masterSeed, 
+			SimulationStats stats){
+		if (games < 0){
+			throw new IllegalArgumentException("games must not be negative");
+		}
+		final long chunks = (games + CHUNK_GAMES - 1) / CHUNK_GAMES;
+		final String identity = "games=" + games + ";seed=" + masterSeed + ";chunk=" 
+				+ CHUNK_GAMES + ";engine=" + engine + ";cheat=" + playerBonus + ";rules=" 
+				+ rules + ";stats=" + (stats != null);
+		SimulationCheckpoint resumed = null;
+		SimulationCheckpoint.Writer writer = null;
+		if (checkpointFile != null){
+			try {
+				if (Files.exists(checkpointFile)){
+					resumed = SimulationCheckpoint.load(checkpointFile);
+					if (!resumed.identity.equals(identity)){
+						throw new IllegalArgumentException("checkpoint is of another run: " 
+								+ resumed.identity);
+					}
+				}
+			}
+			catch (IOException e){
+				throw new UncheckedIOException(e);
+			}
+			writer = new SimulationCheckpoint.Writer(checkpointFile);
+		}
+		final ChunkMerger merger = new ChunkMerger(stats, identity, writer, 
+				checkpointMillis, resumed);
+		final long firstChunk = merger.nextChunk;
+		final AtomicLong nextChunk = new AtomicLong(firstChunk);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		long start = System.nanoTime();
+		try {
+			List<Future<?>> workers = new ArrayList<Future<?>>();
+			for (int i = 0; i < threads; i++){
+				final CrapsSimulator simulator = new CrapsSimulator(playerBonus, engine);
+				simulator.setRules(rules);
+				final int worker = i;
+				final LatencyHistogram durations = new LatencyHistogram();
+				workers.add(pool.submit(() -> {
+					for (long chunk = nextChunk.getAndIncrement(); chunk < chunks; 
+							chunk = nextChunk.getAndIncrement()){
+						if (merger.isResumed(chunk)){
+							continue;
+						}
+						SimulationStats chunkStats = (stats == null) ? null 
+								: new SimulationStats();
+						SimulationResult result = playChunk(simulator, games, masterSeed, 
+								chunk, chunkStats);
+						merger.add(chunk, result, chunkStats);
+						if (monitor != null){
+							monitor.chunkCompleted(worker, result.getGames(), 
+									result.getRolls(), durations);
+						}
+					}
+				}));
+			}
+			for (Future<?> worker : workers){
+				worker.get();
+			}
+			if (writer != null){
+				merger.finalCheckpoint();
+			}
+			return merger.result(games, System.nanoTime() - start);
+		}
+		catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("simulation interrupted", e);
+		}
+		catch (ExecutionException e){
+			throw new IllegalStateException("simulation worker failed", e.getCause());
+		}
+		finally {
+			pool.shutdownNow();
+			if (writer != null){
+				writer.close();
+			}
+		}
+	}
+	
+	/**
+	 * playChunk
+	 * <p>
+	 * Plays one chunk of a deterministic run with the given simulator: the 
+	 * chunk's share of the games, with the Philox stream of its index under the
+	 * master seed, recorded in the statistics if any are given. Used by 
+	 * runDeterministic and by SimulationWorker, so that a chunk gives the same 
+	 * tallies wherever it is played.
+	 * @param simulator - the simulator to play the games with
+	 * @param games - the number of games of the whole run
+	 * @param masterSeed - the key of every chunk's PhiloxDiceSource
+	 * @param chunk - the index of the chunk
+	 * @param chunkStats - empty statistics to record the chunk's games in, or null
+	 * @return result - tallies of the chunk
+	 */
+	static SimulationResult playChunk(CrapsSimulator simulator, long games, 
+			long masterSeed, long chunk, SimulationStats chunkStats){
+		long size = Math.min(CHUNK_GAMES, games - chunk * CHUNK_GAMES);
+		DiceSource source = new PhiloxDiceSource(masterSeed, chunk);
+		if (chunkStats == null){
+			return simulator.run(size, source);
+		}
+		long start = System.nanoTime();
+		simulator.run(size, 0, SimulationStats.Z95, source, chunkStats);
+		return new SimulationResult(size, chunkStats.getWins(), chunkStats.getRolls(), 
+				System.nanoTime() - start);
+	}
+	
+	/**
+	 * <b>ChunkMerger Class</b>
+	 * <p>
+	 * Merges chunk tallies strictly in chunk order. Chunks that finish early 
+	 * wait in a map until every chunk before them has been merged, so only 
+	 * about as many chunks as there are threads are ever held at once. A 
+	 * SimulationCoordinator merges the chunks of its workers with one too.
+	 * <p>
+	 * When checkpointing, the merger snapshots its state into a free writer 
+	 * buffer after merging, at most once per interval, and skips the snapshot 
+	 * if the writer has no free buffer, so workers never wait on the disk.
+	 */
+	static class ChunkMerger {
+		private final SimulationStats stats;
+		private final Map<Long, Object> pending = new HashMap<Long, Object>();
+		private final String identity;
+		private final SimulationCheckpoint.Writer writer;
+		private final long intervalNanos;
+		private final Map<Long, Object> resumedChunks;
+		private long nextCheckpoint;
+		private long nextChunk;
+		private long wins;
+		private long rolls;
+		
+		ChunkMerger(SimulationStats stats, String identity, 
+				SimulationCheckpoint.Writer writer, long intervalMillis, 
+				SimulationCheckpoint resumed){
+			this.stats = stats;
+			this.identity = identity;
+			this.writer = writer;
+			this.intervalNanos = intervalMillis * 1000000L;
+			this.nextCheckpoint = System.nanoTime() + intervalNanos;
+			if (resumed != null){
+				nextChunk = resumed.mergedChunks;
+				wins = resumed.wins;
+				rolls = resumed.rolls;
+				if (stats != null){
+					stats.merge(resumed.stats);
+				}
+				pending.putAll(resumed.pending);
+				resumedChunks = new HashMap<Long, Object>(resumed.pending);
+			}
+			else {
+				resumedChunks = new HashMap<Long, Object>();
+			}
+		}
+		
+		/**
+		 * isResumed
+		 * <p>
+		 * Returns whether the chunk was finished before the run was resumed. 
+		 * The map is never changed after construction, so workers may read it.
+		 */
+		boolean isResumed(long chunk){
+			return resumedChunks.containsKey(chunk);
+		}
+		
+		/**
+		 * finalCheckpoint
+		 * <p>
+		 * Saves the finished run, waiting for a free buffer if need be.
+		 */
+		synchronized void finalCheckpoint(){
+			try {
+				ByteArrayOutputStream buffer = writer.acquireWaiting();
+				SimulationCheckpoint.snapshot(writer, buffer, identity, nextChunk, wins, 
+						rolls, stats, pending);
+			}
+			catch (InterruptedException e){
+				Thread.currentThread().interrupt();
+			}
+		}
+		
+		/**
+		 * getNextChunk
+		 * <p>
+		 * Returns the index of the first chunk that has not been merged.
+		 */
+		synchronized long getNextChunk(){
+			return nextChunk;
+		}
+		
+		/**
+		 * result
+		 * <p>
+		 * Returns the merged tallies as the result of a run of the given number
+		 * of games and duration.
+		 */
+		synchronized SimulationResult result(long games, long nanos){
+			return new SimulationResult(games, wins, rolls, nanos);
+		}
+		
+		/**
+		 * add
+		 * <p>
+		 * Hands over the tallies, or the statistics if there are any, of a 
+		 * finished chunk and merges every chunk that is now next in order.
+		 */
+		synchronized void add(long chunk, SimulationResult result, SimulationStats chunkStats){
+			pending.put(chunk, chunkStats == null ? result : chunkStats);
+			for (Object done = pending.remove(nextChunk); done != null; 
+					done = pending.remove(nextChunk)){
+				if (done instanceof SimulationResult){
+					wins += ((SimulationResult) done).getWins();
+					rolls += ((SimulationResult) done).getRolls();
+				}
+				else {
+					SimulationStats merged = (SimulationStats) done;
+					stats.merge(merged);
+					wins += merged.getWins();
+					rolls += merged.getRolls();
+				}
+				nextChunk++;
+			}
+			if (writer != null && System.nanoTime() - nextCheckpoint >= 0){
+				ByteArrayOutputStream buffer = writer.acquire();
+				if (buffer != null){
+					SimulationCheckpoint.snapshot(writer, buffer, identity, nextChunk, 
+							wins, rolls, stats, pending);
+					nextCheckpoint = System.nanoTime() + intervalNanos;
+				}
+			}
+		}
+	} //End of ChunkMerger class
+} //End of ParallelSimulator class
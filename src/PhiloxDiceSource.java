@@ -0,0 +1,136 @@
+/**
+ * <b>PhiloxDiceSource Class</b>
+ * <p>
+ * A DiceSource backed by Philox4x32-10, the counter based generator of Salmon 
+ * et al. (Random123), whose output is a keyed hash of a 128 bit counter.
+ * <p>
+ * The key is a 64 bit seed and the counter is split into a 64 bit stream 
+ * number and a 64 bit block number, so the values of any stream are known 
+ * without generating the streams before it. Deterministic parallel runs give
+ * every chunk of games the stream of its chunk index under one master seed, so 
+ * a chunk always plays the same games whichever thread plays it.
+ * <p>
+ * Faces are drawn from 32 bit values with Lemire's multiply-shift method with
+ * rejection, as in RandomDiceSource, so every face is exactly equally likely.
+ * @author James Wen - jrw2175
+ */
+public final class PhiloxDiceSource implements DiceSource {
+	public static final String PHILOX = "Philox4x32";
+	private static final int M0 = 0xD2511F53;
+	private static final int M1 = 0xCD9E8D57;
+	private static final int W0 = 0x9E3779B9; //key schedule
+	private static final int W1 = 0xBB67AE85;
+	private static final int ROUNDS = 10;
+	
+	private final int key0;
+	private final int key1;
+	private final long stream;
+	private long block;
+	private final int[] output = new int[4];
+	private int next = 4; //index of the next unused output word
+	
+	/**
+	 * Constructs a source for the given stream under the given seed.
+	 * @param seed - the key of the generator
+	 * @param stream - the stream number, such as a chunk index
+	 */
+	public PhiloxDiceSource(long seed, long stream){
+		this.key0 = (int) seed;
+		this.key1 = (int) (seed >>> 32);
+		this.stream = stream;
+	}
+	
+	/**
+	 * generate
+	 * <p>
+	 * Hashes the current counter into the next four output words and moves the 
+	 * counter on.
+	 */
+	private void generate(){
+		philox(key0, key1, (int) block, (int) (block >>> 32), (int) stream, 
+				(int) (stream >>> 32), output);
+		block++;
+		next = 0;
+	}
+	
+	/**
+	 * philox
+	 * <p>
+	 * Computes Philox4x32-10 of the counter (c0, c1, c2, c3) under the key 
+	 * (k0, k1) into out.
+	 */
+	static void philox(int k0, int k1, int c0, int c1, int c2, int c3, int[] out){
+		for (int round = 0; round < ROUNDS; round++){
+			long product0 = (M0 & 0xFFFFFFFFL) * (c0 & 0xFFFFFFFFL);
+			long product1 = (M1 & 0xFFFFFFFFL) * (c2 & 0xFFFFFFFFL);
+			int next0 = (int) (product1 >>> 32) ^ c1 ^ k0;
+			int next2 = (int) (product0 >>> 32) ^ c3 ^ k1;
+			c1 = (int) product1;
+			c3 = (int) product0;
+			c0 = next0;
+			c2 = next2;
+			k0 += W0;
+			k1 += W1;
+		}
+		out[0] = c0;
+		out[1] = c1;
+		out[2] = c2;
+		out[3] = c3;
+	}
+	
+	/**
+	 * nextInt
+	 * <p>
+	 * Returns the next 32 random bits.
+	 */
+	private int nextInt(){
+		if (next == 4){
+			generate();
+		}
+		return output[next++];
+	}
+	
+	/**
+	 * nextFace
+	 * <p>
+	 * Returns a face value in the range of 1 to faces using Lemire's bias-free
+	 * multiply-shift bounded sampling.
+	 * @param faces - the number of faces of the die being rolled
+	 * @return face value in the range of 1 to faces
+	 */
+	public int nextFace(int faces){
+		long product = (nextInt() & 0xFFFFFFFFL) * faces;
+		int low = (int) product;
+		if (Integer.compareUnsigned(low, faces) < 0){
+			int threshold = Integer.remainderUnsigned(-faces, faces);
+			while (Integer.compareUnsigned(low, threshold) < 0){
+				product = (nextInt() & 0xFFFFFFFFL) * faces;
+				low = (int) product;
+			}
+		}
+		return (int) (product >>> 32) + 1;
+	}
+	
+	/**
+	 * nextLong
+	 * <p>
+	 * Returns the next two 32 bit words as the high and low halves.
+	 * @return random long value
+	 */
+	public long nextLong(){
+		long high = nextInt() & 0xFFFFFFFFL;
+		return high << 32 | (nextInt() & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * split
+	 * <p>
+	 * Returns the source of a stream, under the same key, whose number is drawn 
+	 * from this source.
+	 * @return a new, independent DiceSource
+	 */
+	public DiceSource split(){
+		return new PhiloxDiceSource((key1 & 0xFFFFFFFFL) << 32 | (key0 & 0xFFFFFFFFL), 
+				nextLong());
+	}
+} //End of PhiloxDiceSource class
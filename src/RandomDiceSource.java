@@ -0,0 +1,115 @@
+import java.util.Random;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGenerator.JumpableGenerator;
+import java.util.random.RandomGenerator.SplittableGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+/**
+ * <b>RandomDiceSource Class</b>
+ * <p>
+ * A DiceSource backed by a java.util.random.RandomGenerator.
+ * <p>
+ * Face values are drawn with Lemire's multiply-shift method: a random 32 bit 
+ * value is multiplied by the number of faces and the high 32 bits of the product
+ * are the face. The few low products that would make some faces more likely than
+ * others are rejected and redrawn, so every face is exactly equally likely. This
+ * is cheaper than the floating point multiply and truncate used by Math.random 
+ * dice, and it only ever consumes whole nextInt values, so a seeded run replays
+ * roll for roll.
+ * <p>
+ * The built-in generators are L64X128MixRandom, Xoshiro256PlusPlus and 
+ * SplittableRandom, but any algorithm known to RandomGeneratorFactory can be
+ * named.
+ * @author James Wen - jrw2175
+ */
+public class RandomDiceSource implements DiceSource {
+	public static final String L64X128_MIX = "L64X128MixRandom";
+	public static final String XOSHIRO256_PLUS_PLUS = "Xoshiro256PlusPlus";
+	public static final String SPLITTABLE = "SplittableRandom";
+	
+	private final RandomGenerator random;
+	
+	/**
+	 * Constructs a dice source that draws from the given generator.
+	 * @param random - the random number generator to draw from
+	 */
+	public RandomDiceSource(RandomGenerator random){
+		this.random = random;
+	}
+	
+	/**
+	 * of
+	 * <p>
+	 * Creates a dice source from the named generator algorithm and an explicit 
+	 * seed. The same algorithm and seed always produce the same rolls.
+	 * @param algorithm - the RandomGeneratorFactory name of the generator
+	 * @param seed - the seed of the generator
+	 * @return a new seeded DiceSource
+	 * @throws IllegalArgumentException - if the algorithm is not known
+	 */
+	public static RandomDiceSource of(String algorithm, long seed){
+		return new RandomDiceSource(RandomGeneratorFactory.of(algorithm).create(seed));
+	}
+	
+	/**
+	 * shared
+	 * <p>
+	 * Creates a thread safe, unseeded dice source backed by java.util.Random, as
+	 * used by Math.random. Dice that are not given a source share one of these.
+	 * @return a new unseeded, thread safe DiceSource
+	 */
+	public static RandomDiceSource shared(){
+		return new RandomDiceSource(new Random());
+	}
+	
+	/**
+	 * nextFace
+	 * <p>
+	 * Returns a face value in the range of 1 to faces using Lemire's bias-free
+	 * multiply-shift bounded sampling.
+	 * @param faces - the number of faces of the die being rolled
+	 * @return face value in the range of 1 to faces
+	 */
+	public int nextFace(int faces){
+		long product = (random.nextInt() & 0xFFFFFFFFL) * faces;
+		int low = (int) product;
+		if (Integer.compareUnsigned(low, faces) < 0){
+			int threshold = Integer.remainderUnsigned(-faces, faces);
+			while (Integer.compareUnsigned(low, threshold) < 0){
+				product = (random.nextInt() & 0xFFFFFFFFL) * faces;
+				low = (int) product;
+			}
+		}
+		return (int) (product >>> 32) + 1;
+	}
+	
+	/**
+	 * nextLong
+	 * <p>
+	 * Returns 64 random bits from the generator.
+	 * @return random long value
+	 */
+	public long nextLong(){
+		return random.nextLong();
+	}
+	
+	/**
+	 * split
+	 * <p>
+	 * Returns an independent source. Splittable generators are split, and 
+	 * jumpable generators hand out a copy of themselves before jumping ahead.
+	 * @return a new, independent DiceSource
+	 * @throws UnsupportedOperationException - if the generator can neither split
+	 * nor jump
+	 */
+	public DiceSource split(){
+		if (random instanceof SplittableGenerator){
+			return new RandomDiceSource(((SplittableGenerator) random).split());
+		}
+		if (random instanceof JumpableGenerator){
+			return new RandomDiceSource(((JumpableGenerator) random).copyAndJump());
+		}
+		throw new UnsupportedOperationException(random.getClass().getName() 
+				+ " cannot be split");
+	}
+} //End of RandomDiceSource class
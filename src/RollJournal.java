@@ -0,0 +1,57 @@
+/**
+ * <b>RollJournal Class</b>
+ * <p>
+ * Constants of the binary roll journal format written by RollJournalWriter and
+ * read by RollJournalReader.
+ * <p>
+ * Every roll of a pair of dice is one of 36 face combinations, stored as a 6 bit
+ * code (die1 - 1) * 6 + (die2 - 1). The end of each game is marked by the code
+ * END_OF_GAME. Codes are packed four at a time into 3 bytes, the first code in
+ * the highest bits. The file starts with a 12 byte header: the int MAGIC, then 
+ * the long number of codes. A last, partly filled group is padded with PAD 
+ * codes, which are not counted.
+ * @author James Wen - jrw2175
+ */
+public final class RollJournal {
+	public static final int MAGIC = 0x43524A31; //"CRJ1"
+	public static final int HEADER_BYTES = 12;
+	public static final int END_OF_GAME = 63;
+	public static final int PAD = 62;
+	
+	private RollJournal(){
+	}
+	
+	/**
+	 * code
+	 * <p>
+	 * Returns the journal code of a roll.
+	 * @param face1 - the face value of die 1, in the range of 1-6
+	 * @param face2 - the face value of die 2, in the range of 1-6
+	 * @return code in the range of 0-35
+	 */
+	public static int code(int face1, int face2){
+		return (face1 - 1) * 6 + (face2 - 1);
+	}
+	
+	/**
+	 * face1
+	 * <p>
+	 * Returns the face value of die 1 of a roll code.
+	 * @param code - a roll code in the range of 0-35
+	 * @return face value in the range of 1-6
+	 */
+	public static int face1(int code){
+		return code / 6 + 1;
+	}
+	
+	/**
+	 * face2
+	 * <p>
+	 * Returns the face value of die 2 of a roll code.
+	 * @param code - a roll code in the range of 0-35
+	 * @return face value in the range of 1-6
+	 */
+	public static int face2(int code){
+		return code % 6 + 1;
+	}
+} //End of RollJournal class
@@ -0,0 +1,100 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <b>RollJournalReader Class</b>
+ * <p>
+ * Reads back a RollJournal file one code at a time through memory mapping.
+ * <p>
+ * The file is mapped in segments of whole groups, each well under the 2 GB 
+ * limit of a MappedByteBuffer, so journals of any size can be read. Reading a 
+ * code never allocates.
+ * @author James Wen - jrw2175
+ */
+public class RollJournalReader implements AutoCloseable {
+	private static final long SEGMENT_BYTES = 3L << 28; //whole groups only
+	
+	private final FileChannel channel;
+	private final long codes;
+	private final long dataBytes;
+	private MappedByteBuffer segment;
+	private long segmentStart; //offset of the segment from the start of the data
+	private long read;
+	private int group;
+	private int inGroup;
+	
+	/**
+	 * Opens the journal file at the given path.
+	 * @param path - the journal file to read
+	 * @throws IOException - if the file cannot be read or is not a journal
+	 */
+	public RollJournalReader(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		ByteBuffer header = ByteBuffer.allocate(RollJournal.HEADER_BYTES);
+		while (header.hasRemaining() && channel.read(header) >= 0){
+			//Keeps reading until the header is complete or the file ends
+		}
+		header.flip();
+		if (header.remaining() < RollJournal.HEADER_BYTES 
+				|| header.getInt() != RollJournal.MAGIC){
+			channel.close();
+			throw new IOException(path + " is not a roll journal");
+		}
+		codes = header.getLong();
+		dataBytes = channel.size() - RollJournal.HEADER_BYTES;
+		segmentStart = -SEGMENT_BYTES;
+	}
+	
+	/**
+	 * next
+	 * <p>
+	 * Returns the next code of the journal.
+	 * @return a roll code in the range of 0-35, RollJournal.END_OF_GAME, or -1 
+	 * when the journal has been read to the end
+	 * @throws IOException - if the next segment cannot be mapped
+	 */
+	public int next() throws IOException {
+		if (read == codes){
+			return -1;
+		}
+		if (inGroup == 0){
+			if (segment == null || !segment.hasRemaining()){
+				segmentStart += SEGMENT_BYTES;
+				long size = Math.min(SEGMENT_BYTES, dataBytes - segmentStart);
+				segment = channel.map(FileChannel.MapMode.READ_ONLY, 
+						RollJournal.HEADER_BYTES + segmentStart, size);
+			}
+			group = (segment.get() & 0xFF) << 16 | (segment.get() & 0xFF) << 8 
+					| (segment.get() & 0xFF);
+			inGroup = 4;
+		}
+		inGroup--;
+		read++;
+		return (group >>> (inGroup * 6)) & 63;
+	}
+	
+	/**
+	 * getCodeCount
+	 * <p>
+	 * Returns the number of codes in the journal.
+	 * @return codes - number of codes
+	 */
+	public long getCodeCount(){
+		return codes;
+	}
+	
+	/**
+	 * close
+	 * <p>
+	 * Closes the journal file. The mapping is released once it is unreachable.
+	 * @throws IOException - if the file cannot be closed
+	 */
+	public void close() throws IOException {
+		segment = null;
+		channel.close();
+	}
+} //End of RollJournalReader class
@@ -0,0 +1,138 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <b>RollJournalWriter Class</b>
+ * <p>
+ * Writes a RollJournal file of every roll of a simulation.
+ * <p>
+ * Codes are packed into a large direct buffer that is written to a FileChannel
+ * whenever it fills, so recording a roll is a few shifts and never allocates. 
+ * The number of codes is filled into the header when the writer is closed.
+ * @author James Wen - jrw2175
+ */
+public class RollJournalWriter implements AutoCloseable {
+	private static final int BUFFER_BYTES = 3 << 20; //whole groups only
+	
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+	private int group;
+	private int inGroup;
+	private long codes;
+	
+	/**
+	 * Creates, or replaces, the journal file at the given path.
+	 * @param path - the journal file to write
+	 * @throws IOException - if the file cannot be created
+	 */
+	public RollJournalWriter(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, 
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		buffer.putInt(RollJournal.MAGIC).putLong(0L);
+	}
+	
+	/**
+	 * recordRoll
+	 * <p>
+	 * Records one roll of the pair of dice.
+	 * @param face1 - the face value of die 1
+	 * @param face2 - the face value of die 2
+	 * @throws UncheckedIOException - if the journal cannot be written
+	 */
+	public void recordRoll(int face1, int face2){
+		record(RollJournal.code(face1, face2));
+	}
+	
+	/**
+	 * endGame
+	 * <p>
+	 * Marks the end of the current game.
+	 * @throws UncheckedIOException - if the journal cannot be written
+	 */
+	public void endGame(){
+		record(RollJournal.END_OF_GAME);
+	}
+	
+	/**
+	 * record
+	 * <p>
+	 * Records one code, a roll code or END_OF_GAME.
+	 * @param code - the 6 bit code to record
+	 * @throws UncheckedIOException - if the journal cannot be written
+	 */
+	public void record(int code){
+		codes++;
+		pack(code);
+	}
+	
+	/**
+	 * pack
+	 * <p>
+	 * Adds a code to the current group, moving full groups into the buffer and
+	 * writing out a full buffer.
+	 */
+	private void pack(int code){
+		group = (group << 6) | code;
+		if (++inGroup == 4){
+			buffer.put((byte) (group >>> 16)).put((byte) (group >>> 8)).put((byte) group);
+			group = 0;
+			inGroup = 0;
+			if (!buffer.hasRemaining()){
+				try {
+					flush();
+				}
+				catch (IOException e){
+					throw new UncheckedIOException(e);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * flush
+	 * <p>
+	 * Writes the buffered whole groups to the file.
+	 */
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()){
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+	
+	/**
+	 * getCodeCount
+	 * <p>
+	 * Returns the number of codes recorded so far.
+	 * @return codes - number of codes
+	 */
+	public long getCodeCount(){
+		return codes;
+	}
+	
+	/**
+	 * close
+	 * <p>
+	 * Pads and writes the last group, fills in the header and closes the file.
+	 * @throws IOException - if the journal cannot be written
+	 */
+	public void close() throws IOException {
+		try {
+			while (inGroup != 0){
+				pack(RollJournal.PAD);
+			}
+			flush();
+			ByteBuffer header = ByteBuffer.allocate(RollJournal.HEADER_BYTES);
+			header.putInt(RollJournal.MAGIC).putLong(codes).flip();
+			channel.write(header, 0);
+		}
+		finally {
+			channel.close();
+		}
+	}
+} //End of RollJournalWriter class
@@ -0,0 +1,337 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <b>SimulationCheckpoint Class</b>
+ * <p>
+ * The saved progress of a deterministic chunked run of a ParallelSimulator, 
+ * from which a preempted run can be resumed with bit for bit the same final 
+ * results.
+ * <p>
+ * Chunks are played from their own Philox streams and merged in chunk order, 
+ * so a run's progress is fully described by the number of chunks merged so 
+ * far, the merged tallies and statistics, and the tallies of any chunks that 
+ * have finished out of order. Chunks that were still being played are simply
+ * played again from their start on resume, so no generator or game state needs
+ * to be saved.
+ * <p>
+ * File format, all big endian: the int MAGIC, the int VERSION, the run 
+ * identity as a UTF string, the long number of merged chunks, the merged wins
+ * and rolls as longs, a boolean saying whether statistics follow and, if so,
+ * the SimulationStats. Then a completion bitmap of the chunks after the merged 
+ * ones, as an int count of longs followed by the longs, and, for every set bit
+ * in order, that chunk's wins and rolls or its statistics.
+ * <p>
+ * Files are written by a Writer on its own thread, to a temporary file that is
+ * forced to disk and then atomically renamed over the checkpoint, so a crash 
+ * always leaves the previous or the next complete checkpoint.
+ * @author James Wen - jrw2175
+ */
+public final class SimulationCheckpoint {
+	static final int MAGIC = 0x4352434B; //"CRCK"
+	static final int VERSION = 1;
+	
+	final String identity;
+	final long mergedChunks;
+	final long wins;
+	final long rolls;
+	final SimulationStats stats;      //null when the run keeps no statistics
+	final Map<Long, Object> pending;  //chunk to SimulationResult or SimulationStats
+	
+	private SimulationCheckpoint(String identity, long mergedChunks, long wins, long rolls, 
+			SimulationStats stats, Map<Long, Object> pending){
+		this.identity = identity;
+		this.mergedChunks = mergedChunks;
+		this.wins = wins;
+		this.rolls = rolls;
+		this.stats = stats;
+		this.pending = pending;
+	}
+	
+	/**
+	 * write
+	 * <p>
+	 * Writes the progress of a run in the checkpoint format.
+	 * @param out - the stream to write to
+	 * @param identity - the description of the run that must match on resume
+	 * @param mergedChunks - the number of chunks merged
+	 * @param wins - the merged wins
+	 * @param rolls - the merged rolls
+	 * @param stats - the merged statistics, or null
+	 * @param pending - chunks finished but not yet merged, each with its 
+	 * SimulationResult, or its SimulationStats if stats is not null
+	 * @throws IOException - if the stream cannot be written
+	 */
+	static void write(DataOutput out, String identity, long mergedChunks, long wins, 
+			long rolls, SimulationStats stats, Map<Long, Object> pending) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeUTF(identity);
+		out.writeLong(mergedChunks);
+		out.writeLong(wins);
+		out.writeLong(rolls);
+		out.writeBoolean(stats != null);
+		if (stats != null){
+			stats.write(out);
+		}
+		TreeMap<Long, Object> finished = new TreeMap<Long, Object>(pending);
+		long[] bitmap = new long[finished.isEmpty() ? 0 
+				: (int) ((finished.lastKey() - mergedChunks) / 64 + 1)];
+		for (long chunk : finished.keySet()){
+			long offset = chunk - mergedChunks;
+			bitmap[(int) (offset / 64)] |= 1L << (offset % 64);
+		}
+		out.writeInt(bitmap.length);
+		for (long word : bitmap){
+			out.writeLong(word);
+		}
+		for (Object tally : finished.values()){
+			if (tally instanceof SimulationStats){
+				((SimulationStats) tally).write(out);
+			}
+			else {
+				out.writeLong(((SimulationResult) tally).getWins());
+				out.writeLong(((SimulationResult) tally).getRolls());
+			}
+		}
+	}
+	
+	/**
+	 * load
+	 * <p>
+	 * Reads a checkpoint file.
+	 * @param file - the checkpoint to read
+	 * @return the saved progress
+	 * @throws IOException - if the file cannot be read or is not a checkpoint
+	 */
+	public static SimulationCheckpoint load(Path file) throws IOException {
+		try (DataInputStream in = new DataInputStream(Files.newInputStream(file))){
+			if (in.readInt() != MAGIC || in.readInt() != VERSION){
+				throw new IOException(file + " is not a version " + VERSION + " checkpoint");
+			}
+			String identity = in.readUTF();
+			long mergedChunks = in.readLong();
+			long wins = in.readLong();
+			long rolls = in.readLong();
+			boolean hasStats = in.readBoolean();
+			SimulationStats stats = hasStats ? SimulationStats.read(in) : null;
+			long[] bitmap = new long[in.readInt()];
+			for (int i = 0; i < bitmap.length; i++){
+				bitmap[i] = in.readLong();
+			}
+			Map<Long, Object> pending = new HashMap<Long, Object>();
+			for (int i = 0; i < bitmap.length; i++){
+				for (long word = bitmap[i]; word != 0; word &= word - 1){
+					long chunk = mergedChunks + i * 64L + Long.numberOfTrailingZeros(word);
+					pending.put(chunk, hasStats ? SimulationStats.read(in) 
+							: new SimulationResult(0, in.readLong(), in.readLong(), 0));
+				}
+			}
+			return new SimulationCheckpoint(identity, mergedChunks, wins, rolls, stats, 
+					pending);
+		}
+	}
+	
+	/**
+	 * getMergedChunks
+	 * <p>
+	 * Returns the number of chunks, from the first, whose games are merged.
+	 * @return mergedChunks - number of merged chunks
+	 */
+	public long getMergedChunks(){
+		return mergedChunks;
+	}
+	
+	/**
+	 * getFinishedChunks
+	 * <p>
+	 * Returns the number of chunks finished, merged or not.
+	 * @return number of finished chunks
+	 */
+	public long getFinishedChunks(){
+		return mergedChunks + pending.size();
+	}
+	
+	/**
+	 * <b>Writer Class</b>
+	 * <p>
+	 * Writes checkpoints on a background thread from two snapshot buffers, so 
+	 * that the thread taking snapshots never waits for the disk. acquire hands
+	 * out a free buffer to fill, or null while both are busy, in which case the
+	 * snapshot is simply skipped; publish queues a filled buffer for writing.
+	 */
+	public static final class Writer implements AutoCloseable {
+		private final Path file;
+		private final Path temporary;
+		private final ArrayDeque<ByteArrayOutputStream> free = 
+				new ArrayDeque<ByteArrayOutputStream>();
+		private ByteArrayOutputStream queued;
+		private boolean closed;
+		private IOException failure;
+		private final Thread thread;
+		
+		/**
+		 * Constructs a writer of the given checkpoint file and starts its 
+		 * thread.
+		 * @param file - the checkpoint file to keep up to date
+		 */
+		public Writer(Path file){
+			this.file = file;
+			this.temporary = file.resolveSibling(file.getFileName() + ".tmp");
+			free.add(new ByteArrayOutputStream());
+			free.add(new ByteArrayOutputStream());
+			thread = new Thread(this::writeLoop, "checkpoint-writer");
+			thread.setDaemon(true);
+			thread.start();
+		}
+		
+		/**
+		 * acquire
+		 * <p>
+		 * Returns an empty buffer to fill with a snapshot, without waiting.
+		 * @return a free buffer, or null if both are being written or queued
+		 */
+		public synchronized ByteArrayOutputStream acquire(){
+			ByteArrayOutputStream buffer = free.poll();
+			if (buffer != null){
+				buffer.reset();
+			}
+			return buffer;
+		}
+		
+		/**
+		 * acquireWaiting
+		 * <p>
+		 * Returns an empty buffer to fill with a snapshot, waiting for one to 
+		 * be freed if need be.
+		 * @return a free buffer
+		 * @throws InterruptedException - if interrupted while waiting
+		 */
+		public synchronized ByteArrayOutputStream acquireWaiting() 
+				throws InterruptedException {
+			while (free.isEmpty()){
+				wait();
+			}
+			return acquire();
+		}
+		
+		/**
+		 * publish
+		 * <p>
+		 * Queues a filled buffer for writing. A newer checkpoint replaces one 
+		 * still waiting to be written, whose buffer is freed again.
+		 * @param buffer - a buffer from acquire holding a whole checkpoint
+		 */
+		public synchronized void publish(ByteArrayOutputStream buffer){
+			if (queued != null){
+				free.add(queued);
+			}
+			queued = buffer;
+			notifyAll();
+		}
+		
+		/**
+		 * writeLoop
+		 * <p>
+		 * Writes every queued buffer to the temporary file, forces it to disk,
+		 * renames it over the checkpoint and frees the buffer.
+		 */
+		private void writeLoop(){
+			while (true){
+				ByteArrayOutputStream buffer;
+				synchronized (this){
+					while (queued == null && !closed){
+						try {
+							wait();
+						}
+						catch (InterruptedException e){
+							return;
+						}
+					}
+					if (queued == null){
+						return;
+					}
+					buffer = queued;
+					queued = null;
+				}
+				try {
+					try (FileChannel channel = FileChannel.open(temporary, 
+							StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, 
+							StandardOpenOption.WRITE)){
+						buffer.writeTo(Channels.newOutputStream(channel));
+						channel.force(true);
+					}
+					Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, 
+							StandardCopyOption.REPLACE_EXISTING);
+				}
+				catch (IOException e){
+					synchronized (this){
+						failure = e;
+					}
+				}
+				synchronized (this){
+					free.add(buffer);
+					notifyAll();
+				}
+			}
+		}
+		
+		/**
+		 * close
+		 * <p>
+		 * Writes any queued checkpoint and stops the writer thread.
+		 * @throws UncheckedIOException - if any checkpoint could not be written
+		 */
+		public void close(){
+			synchronized (this){
+				closed = true;
+				notifyAll();
+			}
+			try {
+				thread.join();
+			}
+			catch (InterruptedException e){
+				Thread.currentThread().interrupt();
+			}
+			synchronized (this){
+				if (failure != null){
+					throw new UncheckedIOException("checkpoint not written", failure);
+				}
+			}
+		}
+	} //End of Writer class
+	
+	/**
+	 * snapshot
+	 * <p>
+	 * Fills a writer buffer with the given progress and publishes it.
+	 * @throws UncheckedIOException - cannot happen writing to memory
+	 */
+	static void snapshot(Writer writer, ByteArrayOutputStream buffer, String identity, 
+			long mergedChunks, long wins, long rolls, SimulationStats stats, 
+			Map<Long, Object> pending){
+		try {
+			DataOutputStream out = new DataOutputStream(buffer);
+			write(out, identity, mergedChunks, wins, rolls, stats, pending);
+			out.flush();
+		}
+		catch (IOException e){
+			throw new UncheckedIOException(e);
+		}
+		writer.publish(buffer);
+	}
+} //End of SimulationCheckpoint class
@@ -0,0 +1,35 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * <b>SimulationChunkEvent Class</b>
+ * <p>
+ * A JDK Flight Recorder event covering one chunk of games played by one 
+ * simulation worker. Record with, for example, 
+ * java -XX:StartFlightRecording=filename=sim.jfr CrapsSimulator ... -monitor
+ * <p>
+ * One event is created per chunk, never per game or roll, and nothing is 
+ * committed unless a recording with the event enabled is running.
+ * @author James Wen - jrw2175
+ */
+@Name("craps.SimulationChunk")
+@Label("Simulation Chunk")
+@Category("Craps Simulator")
+@Description("A chunk of games played by one simulation worker")
+public class SimulationChunkEvent extends Event {
+	
+	@Label("Worker")
+	int worker;
+	
+	@Label("Games")
+	long games;
+	
+	@Label("Player Wins")
+	long wins;
+	
+	@Label("Rolls")
+	long rolls;
+}
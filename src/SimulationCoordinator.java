@@ -0,0 +1,506 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <b>SimulationCoordinator Class</b>
+ * <p>
+ * Plays a deterministic run, as ParallelSimulator's runDeterministic does, on
+ * SimulationWorker processes that connect to it over TCP, on this machine or
+ * on others, instead of on threads of its own.
+ * <p>
+ * The games are cut into the same chunks of ParallelSimulator.CHUNK_GAMES,
+ * each played with the PhiloxDiceSource stream of its index under the master
+ * seed, and the workers' tallies and statistics are merged in chunk order by
+ * a ParallelSimulator.ChunkMerger, so a run gives bit for bit the same results
+ * and digest as CrapsSimulator -deterministic, whatever the number of workers
+ * and whichever of them played which chunk.
+ * <p>
+ * Every worker asks for a number of credits when it connects, the most chunks
+ * it may have outstanding at once, and is sent a new chunk whenever it returns
+ * one. Chunks are only handed out up to WINDOW chunks past the first chunk not
+ * yet merged, so a slow worker holding back the merge stalls the others
+ * instead of piling up unmerged results in the coordinator. A worker that
+ * disconnects or sends nothing for the timeout is dropped, and its
+ * outstanding chunks are handed to the other workers, first in line.
+ * <p>
+ * A coordinator may play several runs in turn on the same server socket. Each
+ * run keeps its own chunk queue and merger, and stops taking workers before it
+ * returns, so workers that connect between runs wait in the socket's backlog
+ * for the next run, and the workers of a finished run are only ever sent DONE.
+ * <p>
+ * Protocol, all big endian: the worker sends the int MAGIC, the int VERSION
+ * and its int credits. The coordinator answers with the long master seed, the
+ * long number of games, the boolean cheat mode, the engine name, the rules
+ * name and definition as UTF strings, and a boolean saying whether statistics
+ * are kept. Then the coordinator sends CHUNK messages, a byte type followed
+ * by the long chunk index, and the worker answers each with a RESULT message:
+ * the type, the chunk index, the long wins and rolls and, when statistics are
+ * kept, the chunk's SimulationStats. A DONE message, the type alone, ends the
+ * run.
+ * @author James Wen - jrw2175
+ */
+public class SimulationCoordinator {
+	static final int MAGIC = 0x43524457; //"CRDW"
+	static final int VERSION = 1;
+	static final byte CHUNK = 1;
+	static final byte DONE = 2;
+	static final byte RESULT = 3;
+	public static final int WINDOW = 256; //chunks handed out past the merge
+	private static final int ACCEPT_POLL_MILLIS = 100; //checks for the end of a run
+
+	private final ServerSocket server;
+	private final boolean playerBonus; //cheat mode
+	private final CrapsSimulator.Engine engine;
+	private CrapsRules rules = CrapsRules.HOUSE;
+	private int timeoutMillis = 60000;
+
+	private final Object lock = new Object(); //guards everything below and every Run
+	private int connected;
+	private int dropped;
+	private long requeuedCount;
+
+	/**
+	 * <b>Run Class</b>
+	 * <p>
+	 * The state of one run: what its workers are told, its merger, and the 
+	 * chunks not yet handed out.
+	 */
+	private static final class Run {
+		private final ParallelSimulator.ChunkMerger merger;
+		private final long games;
+		private final long masterSeed;
+		private final boolean keepStats;
+		private final long chunks;
+		private final TreeSet<Long> requeued = new TreeSet<Long>();
+		private long nextFresh;
+		private boolean finished;
+
+		Run(long games, long masterSeed, SimulationStats stats){
+			this.merger = new ParallelSimulator.ChunkMerger(stats, null, null, 0, null);
+			this.games = games;
+			this.masterSeed = masterSeed;
+			this.keepStats = stats != null;
+			this.chunks = (games + ParallelSimulator.CHUNK_GAMES - 1) 
+					/ ParallelSimulator.CHUNK_GAMES;
+		}
+	}
+
+	/**
+	 * Constructs a coordinator that takes workers on the given server socket and
+	 * has them play games with the given engine.
+	 * @param server - the bound socket workers connect to
+	 * @param playerBonus - whether cheat mode is on or not
+	 * @param engine - the engine workers play games with
+	 */
+	public SimulationCoordinator(ServerSocket server, boolean playerBonus,
+			CrapsSimulator.Engine engine){
+		this.server = server;
+		this.playerBonus = playerBonus;
+		this.engine = engine;
+	}
+
+	/**
+	 * setRules
+	 * <p>
+	 * Makes later runs play by the given rules instead of the house rules.
+	 * @param rules - the rules to play by
+	 */
+	public void setRules(CrapsRules rules){
+		this.rules = rules;
+	}
+
+	/**
+	 * setTimeout
+	 * <p>
+	 * Sets how long a worker may send nothing while it has chunks outstanding
+	 * before it is taken for dead and its chunks are handed to other workers.
+	 * @param millis - the timeout, in milliseconds
+	 */
+	public void setTimeout(int millis){
+		this.timeoutMillis = millis;
+	}
+
+	/**
+	 * runDeterministic
+	 * <p>
+	 * Plays the requested number of games on the workers that connect, merging
+	 * their chunks in chunk order, and returns once every chunk is merged and 
+	 * the run has stopped taking workers. Workers may connect, and disconnect,
+	 * at any time during the run.
+	 * @param games - the number of games to play
+	 * @param masterSeed - the key of every chunk's PhiloxDiceSource
+	 * @param stats - the statistics to record every game in, or null for tallies
+	 * only
+	 * @return result - merged tallies of all chunks and the wall clock time
+	 * @throws IllegalArgumentException - if the number of games is negative
+	 */
+	public SimulationResult runDeterministic(long games, long masterSeed,
+			SimulationStats stats){
+		if (games < 0){
+			throw new IllegalArgumentException("games must not be negative");
+		}
+		final Run run = new Run(games, masterSeed, stats);
+		long start = System.nanoTime();
+		Thread acceptor = new Thread(() -> accept(run), "coordinator-accept");
+		acceptor.setDaemon(true);
+		acceptor.start();
+		try {
+			synchronized (lock){
+				while (run.merger.getNextChunk() < run.chunks){
+					lock.wait();
+				}
+			}
+		}
+		catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("simulation interrupted", e);
+		}
+		finally {
+			synchronized (lock){
+				run.finished = true;
+				lock.notifyAll();
+			}
+			try {
+				acceptor.join();
+			}
+			catch (InterruptedException e){
+				Thread.currentThread().interrupt();
+			}
+		}
+		return run.merger.result(games, System.nanoTime() - start);
+	}
+
+	/**
+	 * accept
+	 * <p>
+	 * Takes worker connections until the run has finished, serving each on its
+	 * own thread. Accepting times out every ACCEPT_POLL_MILLIS to check whether
+	 * the run has finished, so that the next run's acceptor takes over.
+	 */
+	private void accept(Run run){
+		try {
+			server.setSoTimeout(ACCEPT_POLL_MILLIS);
+			while (!isFinished(run)){
+				final Socket socket;
+				try {
+					socket = server.accept();
+				}
+				catch (SocketTimeoutException e){
+					continue;
+				}
+				Thread handler = new Thread(() -> serve(socket, run), 
+						"coordinator-" + socket.getRemoteSocketAddress());
+				handler.setDaemon(true);
+				handler.start();
+			}
+		}
+		catch (SocketException e){
+			//Server socket closed
+		}
+		catch (IOException e){
+			System.err.println("Coordinator stopped taking workers: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * serve
+	 * <p>
+	 * Runs the protocol with one worker: hands it chunks as long as it has
+	 * credits left and there are chunks within the window, and merges every
+	 * result it sends back. If the worker fails, its outstanding chunks are
+	 * requeued.
+	 */
+	private void serve(Socket socket, Run run){
+		Set<Long> outstanding = new HashSet<Long>();
+		try (socket){
+			socket.setTcpNoDelay(true);
+			socket.setSoTimeout(timeoutMillis);
+			DataInputStream in = new DataInputStream(
+					new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(socket.getOutputStream()));
+			if (in.readInt() != MAGIC || in.readInt() != VERSION){
+				throw new IOException("not a simulation worker of version " + VERSION);
+			}
+			int credits = Math.max(1, in.readInt());
+			out.writeLong(run.masterSeed);
+			out.writeLong(run.games);
+			out.writeBoolean(playerBonus);
+			out.writeUTF(engine.name());
+			out.writeUTF(rules.getName());
+			out.writeUTF(rules.getSpec());
+			out.writeBoolean(run.keepStats);
+			out.flush();
+			synchronized (lock){
+				connected++;
+			}
+			while (true){
+				List<Long> claimed = claim(run, outstanding, credits);
+				if (claimed == null){
+					out.writeByte(DONE);
+					out.flush();
+					return;
+				}
+				for (long chunk : claimed){
+					out.writeByte(CHUNK);
+					out.writeLong(chunk);
+				}
+				out.flush();
+				if (in.readByte() != RESULT){
+					throw new IOException("expected a result");
+				}
+				long chunk = in.readLong();
+				long wins = in.readLong();
+				long rolls = in.readLong();
+				SimulationStats chunkStats = run.keepStats ? SimulationStats.read(in) : null;
+				synchronized (lock){
+					if (!outstanding.remove(chunk)){
+						throw new IOException("result for chunk " + chunk + " not sent to worker");
+					}
+				}
+				run.merger.add(chunk, new SimulationResult(0, wins, rolls, 0), chunkStats);
+				synchronized (lock){
+					lock.notifyAll();
+				}
+			}
+		}
+		catch (IOException e){
+			synchronized (lock){
+				if (!outstanding.isEmpty() || !run.finished){
+					System.err.println("Dropped worker " + socket.getRemoteSocketAddress()
+							+ ": " + e);
+					dropped++;
+				}
+				run.requeued.addAll(outstanding);
+				requeuedCount += outstanding.size();
+				lock.notifyAll();
+			}
+		}
+		catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * claim
+	 * <p>
+	 * Waits until a worker may be sent more chunks, or has results on the way,
+	 * and returns the chunks to send it, which may be none. Returns null once
+	 * the run has finished.
+	 */
+	private List<Long> claim(Run run, Set<Long> outstanding, int credits) 
+			throws InterruptedException {
+		synchronized (lock){
+			while (true){
+				if (run.finished){
+					return null;
+				}
+				List<Long> claimed = new ArrayList<Long>();
+				long limit = run.merger.getNextChunk() + WINDOW;
+				while (outstanding.size() < credits){
+					long chunk;
+					if (!run.requeued.isEmpty()){
+						chunk = run.requeued.pollFirst();
+					}
+					else if (run.nextFresh < run.chunks && run.nextFresh < limit){
+						chunk = run.nextFresh++;
+					}
+					else {
+						break;
+					}
+					outstanding.add(chunk);
+					claimed.add(chunk);
+				}
+				if (!outstanding.isEmpty()){
+					return claimed;
+				}
+				lock.wait();
+			}
+		}
+	}
+
+	/**
+	 * isFinished
+	 * <p>
+	 * Returns whether every chunk of the given run has been merged.
+	 */
+	private boolean isFinished(Run run){
+		synchronized (lock){
+			return run.finished;
+		}
+	}
+
+	/**
+	 * getConnected
+	 * <p>
+	 * Returns the number of workers that have connected so far.
+	 * @return connected - the number of workers that completed the handshake
+	 */
+	public int getConnected(){
+		synchronized (lock){
+			return connected;
+		}
+	}
+
+	/**
+	 * getDropped
+	 * <p>
+	 * Returns the number of workers dropped as dead before their run finished.
+	 * @return dropped - the number of failed workers
+	 */
+	public int getDropped(){
+		synchronized (lock){
+			return dropped;
+		}
+	}
+
+	/**
+	 * getRequeued
+	 * <p>
+	 * Returns the number of chunks handed to another worker after their worker
+	 * was dropped.
+	 * @return requeued - the number of requeued chunks
+	 */
+	public long getRequeued(){
+		synchronized (lock){
+			return requeuedCount;
+		}
+	}
+
+	/**
+	 * spawnWorker
+	 * <p>
+	 * Starts a SimulationWorker process on this machine, with the same Java and
+	 * class path as this one, that connects to the given port.
+	 */
+	private static Process spawnWorker(int port, int threads) throws IOException {
+		String java = System.getProperty("java.home") + File.separator + "bin"
+				+ File.separator + "java";
+		ProcessBuilder builder = new ProcessBuilder(java, "-cp",
+				System.getProperty("java.class.path"), "SimulationWorker",
+				"127.0.0.1", Integer.toString(port), "-threads", Integer.toString(threads));
+		builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+		builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		return builder.start();
+	}
+
+	/**
+	 * The main method listens for workers and plays a deterministic run on them,
+	 * then prints the merged result, its statistics if asked for, and the same
+	 * digest CrapsSimulator -deterministic prints for the same games, seed,
+	 * engine, rules and cheat mode; both play with the kernel unless -engine
+	 * says otherwise. With -workers, that many SimulationWorker processes are
+	 * started on this machine; without it, workers are started by hand,
+	 * anywhere, with java SimulationWorker host port.
+	 * <p>
+	 * Usage: java SimulationCoordinator [games] [-port p] [-workers n]
+	 * [-worker-threads n] [-seed s] [-cheat] [-engine handler|kernel|batch|fast|pool]
+	 * [-rules name|spec|file] [-stats] [-timeout seconds]
+	 */
+	public static void main(String[] args){
+		long games = 10000000;
+		int port = 0;
+		int workers = 0;
+		int workerThreads = 1;
+		long seed = 0;
+		boolean cheat = false;
+		boolean fullStats = false;
+		int timeout = 60;
+		CrapsSimulator.Engine engine = CrapsSimulator.Engine.KERNEL;
+		CrapsRules rules = CrapsRules.HOUSE;
+		try {
+			for (int i = 0; i < args.length; i++){
+				if (("-port").equals(args[i])){
+					port = Integer.parseInt(args[++i]);
+				}
+				else if (("-workers").equals(args[i])){
+					workers = Integer.parseInt(args[++i]);
+				}
+				else if (("-worker-threads").equals(args[i])){
+					workerThreads = Integer.parseInt(args[++i]);
+				}
+				else if (("-seed").equals(args[i])){
+					seed = Long.parseLong(args[++i]);
+				}
+				else if (("-cheat").equals(args[i])){
+					cheat = true;
+				}
+				else if (("-stats").equals(args[i])){
+					fullStats = true;
+				}
+				else if (("-timeout").equals(args[i])){
+					timeout = Integer.parseInt(args[++i]);
+				}
+				else if (("-engine").equals(args[i])){
+					engine = CrapsSimulator.Engine.valueOf(args[++i].toUpperCase());
+				}
+				else if (("-rules").equals(args[i])){
+					rules = CrapsRules.forName(args[++i]);
+				}
+				else {
+					games = Long.parseLong(args[i].replace("_", ""));
+				}
+			}
+			List<Process> processes = new ArrayList<Process>();
+			try (ServerSocket server = new ServerSocket(port, 50,
+					workers > 0 && port == 0 ? InetAddress.getLoopbackAddress() : null)){
+				System.out.println("Coordinator listening on port " + server.getLocalPort());
+				for (int i = 0; i < workers; i++){
+					processes.add(spawnWorker(server.getLocalPort(), workerThreads));
+				}
+				SimulationCoordinator coordinator = new SimulationCoordinator(server,
+						cheat, engine);
+				coordinator.setRules(rules);
+				coordinator.setTimeout(timeout * 1000);
+				SimulationStats stats = fullStats ? new SimulationStats() : null;
+				SimulationResult result = coordinator.runDeterministic(games, seed, stats);
+				if (stats != null){
+					System.out.println(stats);
+				}
+				System.out.println(result);
+				System.out.println(String.format("Workers: %d connected, %d dropped, "
+						+ "%d chunks requeued", coordinator.getConnected(),
+						coordinator.getDropped(), coordinator.getRequeued()));
+				System.out.println("Digest: " + CrapsSimulator.digest(result, stats));
+			}
+			finally {
+				for (Process process : processes){
+					try {
+						if (!process.waitFor(5, TimeUnit.SECONDS)){
+							process.destroy();
+						}
+					}
+					catch (InterruptedException e){
+						process.destroy();
+					}
+				}
+			}
+		}
+		catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e){
+			System.out.println("Usage: java SimulationCoordinator [games] [-port p] "
+					+ "[-workers n] [-worker-threads n] [-seed s] [-cheat] "
+					+ "[-engine handler|kernel|batch|fast|pool] [-rules name|spec|file] "
+					+ "[-stats] [-timeout seconds]");
+			System.exit(1);
+		}
+		catch (IOException e){
+			System.out.println("Network error: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+} //End of SimulationCoordinator class
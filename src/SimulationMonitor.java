@@ -0,0 +1,138 @@
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * <b>SimulationMonitor Class</b>
+ * <p>
+ * Collects live telemetry from simulation workers and publishes it as a JMX 
+ * MBean: games and rolls completed and per second, per-worker progress, and
+ * percentiles of sampled game durations.
+ * <p>
+ * Workers never report single games or rolls. They play in chunks, time only a
+ * sample of their games into their own LatencyHistogram, and report once per 
+ * chunk, so the cost of monitoring is a lock taken a few times a second per 
+ * worker.
+ * @author James Wen - jrw2175
+ */
+public class SimulationMonitor implements SimulationMonitorMBean {
+	public static final String OBJECT_NAME = "CrapsSimulator:type=SimulationMonitor";
+	
+	private final long startNanos = System.nanoTime();
+	private final long[] workerGames;
+	private final LatencyHistogram durations = new LatencyHistogram();
+	private long games;
+	private long rolls;
+	private ObjectName name;
+	
+	/**
+	 * Constructs a monitor for the given number of workers.
+	 * @param workers - the number of workers that will report to the monitor
+	 */
+	public SimulationMonitor(int workers){
+		this.workerGames = new long[workers];
+	}
+	
+	/**
+	 * register
+	 * <p>
+	 * Registers the monitor with the platform MBean server under OBJECT_NAME.
+	 * @throws IllegalStateException - if the MBean cannot be registered, for 
+	 * example because another monitor is already registered
+	 */
+	public synchronized void register(){
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			name = new ObjectName(OBJECT_NAME);
+			server.registerMBean(this, name);
+		}
+		catch (JMException e){
+			throw new IllegalStateException("cannot register " + OBJECT_NAME, e);
+		}
+	}
+	
+	/**
+	 * unregister
+	 * <p>
+	 * Removes the monitor from the platform MBean server if it was registered.
+	 */
+	public synchronized void unregister(){
+		if (name != null){
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+			}
+			catch (JMException e){
+				//Already gone
+			}
+			name = null;
+		}
+	}
+	
+	/**
+	 * chunkCompleted
+	 * <p>
+	 * Adds a finished chunk of a worker's games to the totals. The worker may 
+	 * reset and reuse its histogram as soon as this returns.
+	 * @param worker - the number of the reporting worker
+	 * @param chunkGames - the number of games in the chunk
+	 * @param chunkRolls - the number of rolls in the chunk
+	 * @param chunkDurations - durations of the games sampled in the chunk
+	 */
+	public synchronized void chunkCompleted(int worker, long chunkGames, long chunkRolls,
+			LatencyHistogram chunkDurations){
+		workerGames[worker] += chunkGames;
+		games += chunkGames;
+		rolls += chunkRolls;
+		durations.merge(chunkDurations);
+	}
+	
+	public synchronized long getGamesCompleted(){
+		return games;
+	}
+	
+	public synchronized long getRollsCompleted(){
+		return rolls;
+	}
+	
+	public synchronized double getGamesPerSecond(){
+		return games * 1e9 / Math.max(1, System.nanoTime() - startNanos);
+	}
+	
+	public synchronized double getRollsPerSecond(){
+		return rolls * 1e9 / Math.max(1, System.nanoTime() - startNanos);
+	}
+	
+	public synchronized long[] getWorkerProgress(){
+		return workerGames.clone();
+	}
+	
+	public synchronized long getGameDurationP50Nanos(){
+		return durations.getPercentile(50);
+	}
+	
+	public synchronized long getGameDurationP99Nanos(){
+		return durations.getPercentile(99);
+	}
+	
+	public synchronized long getGameDurationP999Nanos(){
+		return durations.getPercentile(99.9);
+	}
+	
+	public synchronized long getGameDurationMaxNanos(){
+		return durations.getMax();
+	}
+	
+	/**
+	 * toString
+	 * <p>
+	 * Returns a one line progress report suitable for console output.
+	 * @return progress String
+	 */
+	public synchronized String toString(){
+		return String.format("%d games, %.0f games/s, %.0f rolls/s, game p50 %d ns, "
+				+ "p99 %d ns, p99.9 %d ns", games, getGamesPerSecond(), 
+				getRollsPerSecond(), getGameDurationP50Nanos(), getGameDurationP99Nanos(),
+				getGameDurationP999Nanos());
+	}
+} //End of SimulationMonitor class
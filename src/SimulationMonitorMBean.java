@@ -0,0 +1,54 @@
+/**
+ * <b>SimulationMonitorMBean Interface</b>
+ * <p>
+ * The JMX management interface of a SimulationMonitor, readable from JConsole,
+ * VisualVM or any other JMX client while a simulation is running.
+ * @author James Wen - jrw2175
+ */
+public interface SimulationMonitorMBean {
+	
+	/**
+	 * @return number of games completed by all workers
+	 */
+	long getGamesCompleted();
+	
+	/**
+	 * @return number of rolls made by all workers
+	 */
+	long getRollsCompleted();
+	
+	/**
+	 * @return games completed per second since the monitor was started
+	 */
+	double getGamesPerSecond();
+	
+	/**
+	 * @return rolls made per second since the monitor was started
+	 */
+	double getRollsPerSecond();
+	
+	/**
+	 * @return number of games completed by each worker, by worker number
+	 */
+	long[] getWorkerProgress();
+	
+	/**
+	 * @return median sampled game duration in nanoseconds
+	 */
+	long getGameDurationP50Nanos();
+	
+	/**
+	 * @return 99th percentile sampled game duration in nanoseconds
+	 */
+	long getGameDurationP99Nanos();
+	
+	/**
+	 * @return 99.9th percentile sampled game duration in nanoseconds
+	 */
+	long getGameDurationP999Nanos();
+	
+	/**
+	 * @return longest sampled game duration in nanoseconds
+	 */
+	long getGameDurationMaxNanos();
+}
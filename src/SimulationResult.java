@@ -0,0 +1,129 @@
+/**
+ * <b>SimulationResult Class</b>
+ * <p>
+ * Holds the tallies of a batch of Craps games played without a visual interface:
+ * the number of games, player wins and losses, dice rolls, and the time taken.
+ * <p>
+ * Counts are kept as longs so that runs of billions of games do not overflow.
+ * @author James Wen - jrw2175
+ */
+public class SimulationResult {
+	private final long games;
+	private final long wins;
+	private final long rolls;
+	private final long elapsedNanos;
+	
+	/**
+	 * Constructs a result from the tallies of a finished batch of games.
+	 * @param games - the number of games played
+	 * @param wins - the number of games won by the player
+	 * @param rolls - the total number of dice rolls made across all games
+	 * @param elapsedNanos - the wall clock time taken, in nanoseconds
+	 */
+	public SimulationResult(long games, long wins, long rolls, long elapsedNanos){
+		this.games = games;
+		this.wins = wins;
+		this.rolls = rolls;
+		this.elapsedNanos = elapsedNanos;
+	}
+	
+	/**
+	 * getGames
+	 * <p>
+	 * Returns the number of games played.
+	 * @return games - number of games played
+	 */
+	public long getGames(){
+		return games;
+	}
+	
+	/**
+	 * getWins
+	 * <p>
+	 * Returns the number of games won by the player.
+	 * @return wins - number of player wins
+	 */
+	public long getWins(){
+		return wins;
+	}
+	
+	/**
+	 * getLosses
+	 * <p>
+	 * Returns the number of games lost by the player.
+	 * @return number of player losses
+	 */
+	public long getLosses(){
+		return games - wins;
+	}
+	
+	/**
+	 * getRolls
+	 * <p>
+	 * Returns the total number of dice rolls made across all games.
+	 * @return rolls - total number of rolls
+	 */
+	public long getRolls(){
+		return rolls;
+	}
+	
+	/**
+	 * getElapsedNanos
+	 * <p>
+	 * Returns the wall clock time taken to play the games.
+	 * @return elapsedNanos - time taken in nanoseconds
+	 */
+	public long getElapsedNanos(){
+		return elapsedNanos;
+	}
+	
+	/**
+	 * getWinRate
+	 * <p>
+	 * Returns the fraction of games won by the player.
+	 * @return fraction of games won, 0 if no games were played
+	 */
+	public double getWinRate(){
+		return games == 0 ? 0.0 : (double) wins / games;
+	}
+	
+	/**
+	 * getRollsPerGame
+	 * <p>
+	 * Returns the average number of dice rolls needed to decide a game.
+	 * @return mean rolls per game, 0 if no games were played
+	 */
+	public double getRollsPerGame(){
+		return games == 0 ? 0.0 : (double) rolls / games;
+	}
+	
+	/**
+	 * getGamesPerSecond
+	 * <p>
+	 * Returns the throughput of the run in games played per second.
+	 * @return games per second, 0 if no time was measured
+	 */
+	public double getGamesPerSecond(){
+		return elapsedNanos == 0 ? 0.0 : games * 1e9 / elapsedNanos;
+	}
+	
+	/**
+	 * toString
+	 * <p>
+	 * Returns a multi-line summary of the run suitable for console output.
+	 * <p>
+	 * NEWLINE constant is used to ensure that a new line is produced no
+	 * matter what OS this program is being run on.
+	 * @return summary String of the tallies and throughput
+	 */
+	public String toString(){
+		final String NEWLINE = System.getProperty("line.separator");
+		return "Number of Games: " + games + NEWLINE
+			 + "Number of Player Wins: " + wins + NEWLINE
+			 + "Number of Player Losses: " + getLosses() + NEWLINE
+			 + String.format("Win Rate: %.6f", getWinRate()) + NEWLINE
+			 + String.format("Rolls per Game: %.4f", getRollsPerGame()) + NEWLINE
+			 + String.format("Elapsed: %.3f s", elapsedNanos / 1e9) + NEWLINE
+			 + String.format("Throughput: %.0f games/s", getGamesPerSecond());
+	}
+} //End of SimulationResult class
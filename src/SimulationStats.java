@@ -0,0 +1,462 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * <b>SimulationStats Class</b>
+ * <p>
+ * Accumulates statistics of a simulation one game at a time in a fixed amount of
+ * memory, however many games are played.
+ * <p>
+ * Keeps the number of games and player wins, the running mean and variance of 
+ * the rolls per game (Welford's method), histograms of rolls per game for all 
+ * games and for won games, and the number of games and wins for each value the
+ * player needed to roll to win (7 for games decided on the first roll). Games 
+ * longer than MAX_ROLLS rolls share the last histogram bucket.
+ * <p>
+ * The win rate comes with a Wilson score confidence interval, which lets a 
+ * simulation stop as soon as the win rate is known precisely enough. Stats from
+ * separate workers can be merged, and stats from two engines can be tested for
+ * coming from the same distribution with compareWith and comparePointsWith. Stats can be written to
+ * and read back from a binary stream exactly, bit for bit.
+ * @author James Wen - jrw2175
+ */
+public class SimulationStats {
+	public static final int MAX_ROLLS = 100; //last histogram bucket
+	public static final double Z95 = 1.959963984540054; //95% confidence
+	private static final int MIN_CELL = 10; //games per pooled chi-square cell
+	
+	private long games;
+	private long wins;
+	private long rolls;
+	private double meanRolls;
+	private double sumSquares; //sum of squared differences from the mean
+	private final long[] rollHistogram = new long[MAX_ROLLS + 1];
+	private final long[] winHistogram = new long[MAX_ROLLS + 1];
+	private final long[] pointGames = new long[13];
+	private final long[] pointWins = new long[13];
+	
+	/**
+	 * record
+	 * <p>
+	 * Adds one finished game to the statistics.
+	 * @param won - whether the player won the game
+	 * @param rolls - the number of rolls the game took
+	 * @param point - the value the player needed to roll to win the game
+	 */
+	public void record(boolean won, int rolls, int point){
+		games++;
+		this.rolls += rolls;
+		double delta = rolls - meanRolls;
+		meanRolls += delta / games;
+		sumSquares += delta * (rolls - meanRolls);
+		rollHistogram[Math.min(rolls, MAX_ROLLS)]++;
+		pointGames[point]++;
+		if (won){
+			wins++;
+			pointWins[point]++;
+			winHistogram[Math.min(rolls, MAX_ROLLS)]++;
+		}
+	}
+	
+	/**
+	 * merge
+	 * <p>
+	 * Adds the statistics of another accumulator to this one, combining the 
+	 * rolls means and variances with Chan's parallel formula.
+	 * @param other - the statistics to add
+	 */
+	public void merge(SimulationStats other){
+		if (other.games == 0){
+			return;
+		}
+		long total = games + other.games;
+		double delta = other.meanRolls - meanRolls;
+		sumSquares += other.sumSquares + delta * delta * games * other.games / total;
+		//Merging into empty stats copies the mean exactly, so restored stats merge
+		//bit for bit as the originals did
+		meanRolls = (games == 0) ? other.meanRolls : meanRolls + delta * other.games / total;
+		games = total;
+		wins += other.wins;
+		rolls += other.rolls;
+		for (int i = 0; i <= MAX_ROLLS; i++){
+			rollHistogram[i] += other.rollHistogram[i];
+			winHistogram[i] += other.winHistogram[i];
+		}
+		for (int i = 0; i < 13; i++){
+			pointGames[i] += other.pointGames[i];
+			pointWins[i] += other.pointWins[i];
+		}
+	}
+	
+	/**
+	 * getGames
+	 * <p>
+	 * Returns the number of games recorded.
+	 * @return games - number of games
+	 */
+	public long getGames(){
+		return games;
+	}
+	
+	/**
+	 * getWins
+	 * <p>
+	 * Returns the number of games won by the player.
+	 * @return wins - number of player wins
+	 */
+	public long getWins(){
+		return wins;
+	}
+	
+	/**
+	 * getRolls
+	 * <p>
+	 * Returns the total number of rolls of all games recorded.
+	 * @return rolls - number of rolls
+	 */
+	public long getRolls(){
+		return rolls;
+	}
+	
+	/**
+	 * getWinRate
+	 * <p>
+	 * Returns the fraction of games won by the player.
+	 * @return fraction of games won, 0 if no games were recorded
+	 */
+	public double getWinRate(){
+		return games == 0 ? 0.0 : (double) wins / games;
+	}
+	
+	/**
+	 * getWinRateHalfWidth
+	 * <p>
+	 * Returns half the width of the Wilson score interval around the win rate.
+	 * @param z - the standard normal quantile of the confidence level, for 
+	 * example Z95
+	 * @return half width of the confidence interval, 1 if no games were recorded
+	 */
+	public double getWinRateHalfWidth(double z){
+		if (games == 0){
+			return 1.0;
+		}
+		double p = getWinRate();
+		double z2n = z * z / games;
+		return z / (1 + z2n) * Math.sqrt(p * (1 - p) / games + z2n / (4.0 * games));
+	}
+	
+	/**
+	 * getWinRateCenter
+	 * <p>
+	 * Returns the center of the Wilson score interval around the win rate.
+	 * @param z - the standard normal quantile of the confidence level
+	 * @return center of the confidence interval
+	 */
+	public double getWinRateCenter(double z){
+		if (games == 0){
+			return 0.5;
+		}
+		double z2n = z * z / games;
+		return (getWinRate() + z2n / 2) / (1 + z2n);
+	}
+	
+	/**
+	 * getMeanRolls
+	 * <p>
+	 * Returns the mean number of rolls per game.
+	 * @return meanRolls - mean rolls per game, 0 if no games were recorded
+	 */
+	public double getMeanRolls(){
+		return meanRolls;
+	}
+	
+	/**
+	 * getRollsVariance
+	 * <p>
+	 * Returns the sample variance of the number of rolls per game.
+	 * @return variance of rolls per game, 0 if fewer than 2 games were recorded
+	 */
+	public double getRollsVariance(){
+		return games < 2 ? 0.0 : sumSquares / (games - 1);
+	}
+	
+	/**
+	 * getRollHistogram
+	 * <p>
+	 * Returns the number of games that took each number of rolls. Index n holds 
+	 * games of n rolls; index MAX_ROLLS also holds all longer games.
+	 * @return copy of the rolls per game histogram
+	 */
+	public long[] getRollHistogram(){
+		return rollHistogram.clone();
+	}
+	
+	/**
+	 * getWinHistogram
+	 * <p>
+	 * Returns the number of won games that took each number of rolls, indexed as
+	 * getRollHistogram.
+	 * @return copy of the rolls per won game histogram
+	 */
+	public long[] getWinHistogram(){
+		return winHistogram.clone();
+	}
+	
+	/**
+	 * compareWith
+	 * <p>
+	 * Tests whether this and the other statistics could have been drawn from the
+	 * same joint distribution of outcome and game length, with Pearson's 
+	 * chi-square test of homogeneity. Each outcome has one category per game 
+	 * length, pooled with the lengths after it until it holds at least 10 games
+	 * of the two together.
+	 * @param other - the statistics to compare against
+	 * @return {chi-square statistic, degrees of freedom, p-value}; a p-value 
+	 * below 0.001 says the two are very unlikely to share a distribution
+	 */
+	public double[] compareWith(SimulationStats other){
+		double statistic = 0;
+		int categories = 0;
+		double share = (double) games / (games + other.games);
+		for (int outcome = 0; outcome < 2; outcome++){
+			long mine = 0;
+			long theirs = 0;
+			for (int rolls = 1; rolls <= MAX_ROLLS; rolls++){
+				mine += (outcome == 0) ? winHistogram[rolls] 
+						: rollHistogram[rolls] - winHistogram[rolls];
+				theirs += (outcome == 0) ? other.winHistogram[rolls] 
+						: other.rollHistogram[rolls] - other.winHistogram[rolls];
+				if (mine + theirs >= MIN_CELL || (rolls == MAX_ROLLS && mine + theirs > 0)){
+					statistic += chiSquareTerm(mine, theirs, share);
+					categories++;
+					mine = 0;
+					theirs = 0;
+				}
+			}
+		}
+		int freedom = Math.max(1, categories - 1);
+		return new double[] {statistic, freedom, chiSquarePValue(statistic, freedom)};
+	}
+	
+	/**
+	 * comparePointsWith
+	 * <p>
+	 * Tests whether this and the other statistics could have been drawn from the
+	 * same joint distribution of outcome and point, with the chi-square test of
+	 * compareWith. Each outcome has one category per point, and the points 
+	 * holding fewer than 10 games of the two together share one category.
+	 * @param other - the statistics to compare against
+	 * @return {chi-square statistic, degrees of freedom, p-value}
+	 */
+	public double[] comparePointsWith(SimulationStats other){
+		double statistic = 0;
+		int categories = 0;
+		double share = (double) games / (games + other.games);
+		long mine = 0;
+		long theirs = 0;
+		for (int outcome = 0; outcome < 2; outcome++){
+			for (int point = 2; point <= 12; point++){
+				long cell = (outcome == 0) ? pointWins[point] 
+						: pointGames[point] - pointWins[point];
+				long otherCell = (outcome == 0) ? other.pointWins[point] 
+						: other.pointGames[point] - other.pointWins[point];
+				if (cell + otherCell >= MIN_CELL){
+					statistic += chiSquareTerm(cell, otherCell, share);
+					categories++;
+				}
+				else {
+					mine += cell;
+					theirs += otherCell;
+				}
+			}
+		}
+		if (mine + theirs > 0){
+			statistic += chiSquareTerm(mine, theirs, share);
+			categories++;
+		}
+		int freedom = Math.max(1, categories - 1);
+		return new double[] {statistic, freedom, chiSquarePValue(statistic, freedom)};
+	}
+	
+	/**
+	 * chiSquareTerm
+	 * <p>
+	 * Returns the contribution of one category to the chi-square statistic of 
+	 * homogeneity, given the share of all games that are this accumulator's.
+	 */
+	private static double chiSquareTerm(long mine, long theirs, double share){
+		double expected = (mine + theirs) * share;
+		double expectedOther = (mine + theirs) - expected;
+		return (mine - expected) * (mine - expected) / expected
+				+ (theirs - expectedOther) * (theirs - expectedOther) / expectedOther;
+	}
+	
+	/**
+	 * chiSquarePValue
+	 * <p>
+	 * Returns the chance of a chi-square statistic at least as large as the given
+	 * one, which is the regularized upper incomplete gamma function Q(k/2, x/2).
+	 * Uses its series below a + 1 and its continued fraction above, as in 
+	 * Numerical Recipes.
+	 */
+	private static double chiSquarePValue(double statistic, int freedom){
+		double a = freedom / 2.0;
+		double x = statistic / 2.0;
+		if (x <= 0){
+			return 1.0;
+		}
+		double logPrefix = a * Math.log(x) - x - logGamma(a);
+		if (x < a + 1){
+			double term = 1.0 / a;
+			double sum = term;
+			for (int n = 1; n < 1000 && Math.abs(term) > Math.abs(sum) * 1e-15; n++){
+				term *= x / (a + n);
+				sum += term;
+			}
+			return 1.0 - sum * Math.exp(logPrefix);
+		}
+		double tiny = 1e-300;
+		double b = x + 1 - a;
+		double c = 1 / tiny;
+		double d = 1 / b;
+		double fraction = d;
+		for (int n = 1; n < 1000; n++){
+			double an = -n * (n - a);
+			b += 2;
+			d = an * d + b;
+			d = Math.abs(d) < tiny ? tiny : d;
+			c = b + an / c;
+			c = Math.abs(c) < tiny ? tiny : c;
+			d = 1 / d;
+			double step = d * c;
+			fraction *= step;
+			if (Math.abs(step - 1) < 1e-15){
+				break;
+			}
+		}
+		return Math.exp(logPrefix) * fraction;
+	}
+	
+	/**
+	 * logGamma
+	 * <p>
+	 * Returns the log of the gamma function by Lanczos' approximation (g = 7).
+	 */
+	private static double logGamma(double x){
+		final double[] COEFFICIENTS = {0.99999999999980993, 676.5203681218851, 
+				-1259.1392167224028, 771.32342877765313, -176.61502916214059, 
+				12.507343278686905, -0.13857109526572012, 9.9843695780195716e-6, 
+				1.5056327351493116e-7};
+		double sum = COEFFICIENTS[0];
+		double t = x + 6.5;
+		for (int i = 1; i < COEFFICIENTS.length; i++){
+			sum += COEFFICIENTS[i] / (x + i - 1);
+		}
+		return 0.5 * Math.log(2 * Math.PI) + (x - 0.5) * Math.log(t) - t + Math.log(sum);
+	}
+	
+	/**
+	 * getPointGames
+	 * <p>
+	 * Returns the number of games in which the player needed the given value.
+	 * @param point - the value needed to win, 7 for games decided on the first roll
+	 * @return number of games with that point
+	 */
+	public long getPointGames(int point){
+		return pointGames[point];
+	}
+	
+	/**
+	 * getPointWins
+	 * <p>
+	 * Returns the number of games won in which the player needed the given value.
+	 * @param point - the value needed to win, 7 for games decided on the first roll
+	 * @return number of games won with that point
+	 */
+	public long getPointWins(int point){
+		return pointWins[point];
+	}
+	
+	/**
+	 * write
+	 * <p>
+	 * Writes every count and the exact bits of the running mean and variance 
+	 * to the given stream.
+	 * @param out - the stream to write to
+	 * @throws IOException - if the stream cannot be written
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeLong(games);
+		out.writeLong(wins);
+		out.writeLong(rolls);
+		out.writeDouble(meanRolls);
+		out.writeDouble(sumSquares);
+		for (int i = 0; i <= MAX_ROLLS; i++){
+			out.writeLong(rollHistogram[i]);
+			out.writeLong(winHistogram[i]);
+		}
+		for (int i = 0; i < 13; i++){
+			out.writeLong(pointGames[i]);
+			out.writeLong(pointWins[i]);
+		}
+	}
+	
+	/**
+	 * read
+	 * <p>
+	 * Reads statistics written by write.
+	 * @param in - the stream to read from
+	 * @return the statistics, equal bit for bit to those written
+	 * @throws IOException - if the stream cannot be read
+	 */
+	public static SimulationStats read(DataInput in) throws IOException {
+		SimulationStats stats = new SimulationStats();
+		stats.games = in.readLong();
+		stats.wins = in.readLong();
+		stats.rolls = in.readLong();
+		stats.meanRolls = in.readDouble();
+		stats.sumSquares = in.readDouble();
+		for (int i = 0; i <= MAX_ROLLS; i++){
+			stats.rollHistogram[i] = in.readLong();
+			stats.winHistogram[i] = in.readLong();
+		}
+		for (int i = 0; i < 13; i++){
+			stats.pointGames[i] = in.readLong();
+			stats.pointWins[i] = in.readLong();
+		}
+		return stats;
+	}
+	
+	/**
+	 * toString
+	 * <p>
+	 * Returns a multi-line summary of the statistics suitable for console output.
+	 * @return summary String of the statistics
+	 */
+	public String toString(){
+		final String NEWLINE = System.getProperty("line.separator");
+		StringBuilder summary = new StringBuilder();
+		summary.append("Number of Games: ").append(games).append(NEWLINE);
+		summary.append("Number of Player Wins: ").append(wins).append(NEWLINE);
+		summary.append(String.format("Win Rate: %.6f +/- %.6f (95%%)", getWinRate(), 
+				getWinRateHalfWidth(Z95))).append(NEWLINE);
+		summary.append(String.format("Rolls per Game: %.4f (sd %.4f)", meanRolls, 
+				Math.sqrt(getRollsVariance()))).append(NEWLINE);
+		for (int point = 2; point <= 12; point++){
+			if (pointGames[point] > 0){
+				summary.append(String.format("Point %d: %d games, win rate %.6f", point, 
+						pointGames[point], (double) pointWins[point] / pointGames[point]))
+						.append(NEWLINE);
+			}
+		}
+		summary.append("Rolls per Game Histogram:");
+		for (int rolls = 1; rolls <= MAX_ROLLS; rolls++){
+			if (rollHistogram[rolls] > 0){
+				summary.append(NEWLINE).append(rolls == MAX_ROLLS ? rolls + "+" : rolls)
+						.append(": ").append(rollHistogram[rolls]);
+			}
+		}
+		return summary.toString();
+	}
+} //End of SimulationStats class
@@ -0,0 +1,205 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * <b>SimulationWorker Class</b>
+ * <p>
+ * A headless process that connects to a SimulationCoordinator, plays the
+ * chunks of a deterministic run that it is sent, and sends back their tallies,
+ * and their statistics if the run keeps them, in the coordinator's binary
+ * protocol.
+ * <p>
+ * The worker plays chunks on a number of threads, each with its own
+ * CrapsSimulator, and asks for twice as many credits as it has threads, so
+ * every thread has its next chunk waiting while it sends back its last. Chunks
+ * are played by ParallelSimulator.playChunk, exactly as a ParallelSimulator
+ * would play them, so the coordinator cannot tell which worker played a chunk.
+ * @author James Wen - jrw2175
+ */
+public class SimulationWorker {
+	private static final long STOP = -1; //queued to stop the threads
+
+	private final Socket socket;
+	private final int threads;
+
+	/**
+	 * Constructs a worker that plays chunks from the coordinator at the other
+	 * end of the given socket on the given number of threads.
+	 * @param socket - the connection to the coordinator
+	 * @param threads - the number of threads to play chunks on
+	 * @throws IllegalArgumentException - if threads is less than 1
+	 */
+	public SimulationWorker(Socket socket, int threads){
+		if (threads < 1){
+			throw new IllegalArgumentException("threads must be at least 1");
+		}
+		this.socket = socket;
+		this.threads = threads;
+	}
+
+	/**
+	 * run
+	 * <p>
+	 * Runs the protocol until the coordinator sends DONE or closes the
+	 * connection, and returns the number of chunks played.
+	 * @return chunks - the number of chunks played and sent back
+	 * @throws IOException - if the connection fails or the coordinator breaks
+	 * the protocol
+	 */
+	public long run() throws IOException {
+		socket.setTcpNoDelay(true);
+		DataInputStream in = new DataInputStream(
+				new BufferedInputStream(socket.getInputStream()));
+		final DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(socket.getOutputStream()));
+		out.writeInt(SimulationCoordinator.MAGIC);
+		out.writeInt(SimulationCoordinator.VERSION);
+		out.writeInt(2 * threads);
+		out.flush();
+		final long masterSeed = in.readLong();
+		final long games = in.readLong();
+		boolean cheat = in.readBoolean();
+		CrapsSimulator.Engine engine = CrapsSimulator.Engine.valueOf(in.readUTF());
+		CrapsRules rules = CrapsRules.parse(in.readUTF(), in.readUTF());
+		final boolean keepStats = in.readBoolean();
+		final BlockingQueue<Long> queue = new LinkedBlockingQueue<Long>();
+		final long[] played = new long[1];
+		final IOException[] failure = new IOException[1];
+		List<Thread> players = new ArrayList<Thread>();
+		for (int i = 0; i < threads; i++){
+			final CrapsSimulator simulator = new CrapsSimulator(cheat, engine);
+			simulator.setRules(rules);
+			Thread player = new Thread(() -> {
+				try {
+					for (long chunk = queue.take(); chunk != STOP; chunk = queue.take()){
+						SimulationStats chunkStats = keepStats ? new SimulationStats() : null;
+						SimulationResult result = ParallelSimulator.playChunk(simulator,
+								games, masterSeed, chunk, chunkStats);
+						synchronized (out){
+							out.writeByte(SimulationCoordinator.RESULT);
+							out.writeLong(chunk);
+							out.writeLong(result.getWins());
+							out.writeLong(result.getRolls());
+							if (chunkStats != null){
+								chunkStats.write(out);
+							}
+							out.flush();
+							played[0]++;
+						}
+					}
+				}
+				catch (IOException e){
+					synchronized (out){
+						failure[0] = e;
+					}
+					closeQuietly();
+				}
+				catch (InterruptedException e){
+					//Stopped
+				}
+			}, "worker-" + i);
+			player.start();
+			players.add(player);
+		}
+		try {
+			while (true){
+				byte type = in.readByte();
+				if (type == SimulationCoordinator.DONE){
+					break;
+				}
+				if (type != SimulationCoordinator.CHUNK){
+					throw new IOException("unknown message type " + type);
+				}
+				queue.add(in.readLong());
+			}
+		}
+		catch (EOFException e){
+			//Coordinator went away after the run
+		}
+		catch (IOException e){
+			synchronized (out){
+				if (failure[0] == null){
+					throw e;
+				}
+			}
+		}
+		finally {
+			queue.clear();
+			for (int i = 0; i < threads; i++){
+				queue.add(STOP);
+			}
+			for (Thread player : players){
+				try {
+					player.join();
+				}
+				catch (InterruptedException e){
+					Thread.currentThread().interrupt();
+				}
+			}
+			closeQuietly();
+		}
+		synchronized (out){
+			if (failure[0] != null){
+				throw failure[0];
+			}
+			return played[0];
+		}
+	}
+
+	/**
+	 * closeQuietly
+	 * <p>
+	 * Closes the connection, so that a thread blocked reading it wakes up.
+	 */
+	private void closeQuietly(){
+		try {
+			socket.close();
+		}
+		catch (IOException e){
+			//Already closed
+		}
+	}
+
+	/**
+	 * The main method connects to a coordinator and plays chunks for it until
+	 * its run is done, then prints how many chunks it played.
+	 * <p>
+	 * Usage: java SimulationWorker host port [-threads n]
+	 */
+	public static void main(String[] args){
+		try {
+			String host = args[0];
+			int port = Integer.parseInt(args[1]);
+			int threads = Runtime.getRuntime().availableProcessors();
+			for (int i = 2; i < args.length; i++){
+				if (("-threads").equals(args[i])){
+					threads = Integer.parseInt(args[++i]);
+				}
+				else {
+					throw new IllegalArgumentException(args[i]);
+				}
+			}
+			try (Socket socket = new Socket(host, port)){
+				SimulationWorker worker = new SimulationWorker(socket, threads);
+				System.out.println("Chunks played: " + worker.run());
+			}
+		}
+		catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e){
+			System.out.println("Usage: java SimulationWorker host port [-threads n]");
+			System.exit(1);
+		}
+		catch (IOException e){
+			System.out.println("Network error: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+} //End of SimulationWorker class
@@ -0,0 +1,296 @@
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+/**
+ * <b>SobolDiceSource Class</b>
+ * <p>
+ * A quasi-random DiceSource whose draws are the coordinates of Owen scrambled 
+ * Sobol points, so that games cover the space of possible rolls more evenly 
+ * than independent random games do.
+ * <p>
+ * Every game is one point of the sequence: startGame moves to the next point, 
+ * and the n-th draw within the game is the point's n-th coordinate. Draws past
+ * MAX_DIMENSIONS in a game, which only very long games make, fall back to a 
+ * pseudo-random generator. Engines that draw rolls in bulk rather than game by
+ * game, such as the BATCH engine, never call startGame, so their draws walk the
+ * dimensions once and then come from the fallback generator.
+ * <p>
+ * The direction numbers are built when the class is loaded. The primitive 
+ * polynomials are found by searching the polynomials over GF(2) of each degree
+ * in turn, in the order of Joe and Kuo's tables. The free initial direction 
+ * numbers are odd numbers drawn from a fixed seed, because their tuned values 
+ * are not available here; the first dimensions are still well spread, but 
+ * high dimensions are less even than with tuned tables.
+ * <p>
+ * Each coordinate is scrambled with the hash based nested uniform scramble of
+ * Laine and Karras as improved by Burley, seeded per dimension from the seed of
+ * the source. That makes every coordinate exactly uniform and every estimate
+ * unbiased while keeping the even spread, so independently seeded replicates
+ * give honest error bars; see main. Faces are drawn by multiply-shift without
+ * rejection, which would break the spread, so each face is off by at most 
+ * one part in 2^32.
+ * @author James Wen - jrw2175
+ */
+public final class SobolDiceSource implements DiceSource {
+	public static final String SOBOL = "Sobol";
+	public static final int MAX_DIMENSIONS = 64;
+	private static final int BITS = 32;
+	private static final long DIRECTION_SEED = 0x5DEECE66DL; //initial direction numbers
+	private static final int[][] DIRECTIONS = new int[MAX_DIMENSIONS][BITS];
+	static {
+		for (int bit = 0; bit < BITS; bit++){
+			DIRECTIONS[0][bit] = 1 << (BITS - 1 - bit); //van der Corput
+		}
+		SplittableRandom initial = new SplittableRandom(DIRECTION_SEED);
+		int dimension = 1;
+		for (int degree = 1; dimension < MAX_DIMENSIONS; degree++){
+			for (int inner = 0; inner < 1 << (degree - 1) && dimension < MAX_DIMENSIONS; inner++){
+				int polynomial = 1 << degree | inner << 1 | 1;
+				if (isPrimitive(polynomial, degree)){
+					buildDirections(DIRECTIONS[dimension++], polynomial, degree, initial);
+				}
+			}
+		}
+	}
+	
+	private final RandomGenerator random; //seeds, low bits and fallback draws
+	private final int[] scrambles = new int[MAX_DIMENSIONS];
+	private final long seed;
+	private int point;     //the point drawn from
+	private int nextPoint; //the point the next game starts, from point 0
+	private int dimension;
+	
+	/**
+	 * Constructs a Sobol source whose scrambles are seeded by the given seed. 
+	 * Sources with different seeds are independent replicates.
+	 * @param seed - the seed of the scrambles and of the fallback generator
+	 */
+	public SobolDiceSource(long seed){
+		this.seed = seed;
+		this.random = RandomGeneratorFactory.of(RandomDiceSource.L64X128_MIX).create(seed);
+		for (int i = 0; i < MAX_DIMENSIONS; i++){
+			scrambles[i] = random.nextInt();
+		}
+	}
+	
+	/**
+	 * isPrimitive
+	 * <p>
+	 * Returns whether the polynomial over GF(2), given as a bit pattern, is 
+	 * primitive: whether x has order 2^degree - 1 modulo it.
+	 */
+	private static boolean isPrimitive(int polynomial, int degree){
+		int period = (1 << degree) - 1;
+		int power = 1;
+		for (int order = 1; order <= period; order++){
+			power <<= 1;
+			if ((power & (1 << degree)) != 0){
+				power ^= polynomial;
+			}
+			if (power == 1){
+				return order == period;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * buildDirections
+	 * <p>
+	 * Fills in the direction numbers of one dimension from its primitive 
+	 * polynomial by the Bratley and Fox recurrence, after drawing its odd 
+	 * initial direction numbers m_k < 2^k.
+	 */
+	private static void buildDirections(int[] directions, int polynomial, int degree, 
+			SplittableRandom initial){
+		for (int k = 0; k < degree && k < BITS; k++){
+			int m = (k == 0) ? 1 : initial.nextInt(1 << k) | 1;
+			directions[k] = m << (BITS - 1 - k);
+		}
+		for (int k = degree; k < BITS; k++){
+			int value = directions[k - degree] ^ (directions[k - degree] >>> degree);
+			for (int l = 1; l < degree; l++){
+				if ((polynomial >>> (degree - l) & 1) != 0){
+					value ^= directions[k - l];
+				}
+			}
+			directions[k] = value;
+		}
+	}
+	
+	/**
+	 * scramble
+	 * <p>
+	 * Owen scrambles a 32 bit coordinate with Burley's version of the Laine and
+	 * Karras hash, applied to the reversed bits so that each bit is flipped 
+	 * depending only on the bits above it. Every step either adds or multiplies
+	 * by an odd number, or xors in a multiple of x by an even constant, so 
+	 * low bits never depend on higher ones.
+	 */
+	private static int scramble(int x, int seed){
+		x = Integer.reverse(x);
+		x ^= x * 0x3d20adea;
+		x += seed;
+		x *= (seed >>> 16) | 1;
+		x ^= x * 0x05526c56;
+		x ^= x * 0x53a22864;
+		return Integer.reverse(x);
+	}
+	
+	/**
+	 * next32
+	 * <p>
+	 * Returns the next coordinate of the current point as 32 uniform bits, or 
+	 * a pseudo-random value once the dimensions run out.
+	 */
+	private int next32(){
+		if (dimension >= MAX_DIMENSIONS){
+			return random.nextInt();
+		}
+		int[] directions = DIRECTIONS[dimension];
+		int x = 0;
+		for (int bits = point; bits != 0; bits &= bits - 1){
+			x ^= directions[Integer.numberOfTrailingZeros(bits)];
+		}
+		return scramble(x, scrambles[dimension++]);
+	}
+	
+	/**
+	 * startGame
+	 * <p>
+	 * Moves to the next Sobol point, whose first coordinate is the next draw.
+	 * The k-th game, counting from 0, gets point k, so any 2^m games together
+	 * use the first 2^m points, a (0, m)-net in the first dimensions. The 
+	 * sequence has 2^32 points and starts over after that.
+	 */
+	public void startGame(){
+		point = nextPoint++;
+		dimension = 0;
+	}
+	
+	/**
+	 * nextFace
+	 * <p>
+	 * Returns a face value in the range of 1 to faces from the next coordinate, 
+	 * by multiply-shift without rejection.
+	 * @param faces - the number of faces of the die being rolled
+	 * @return face value in the range of 1 to faces
+	 */
+	public int nextFace(int faces){
+		return 1 + (int) (((next32() & 0xFFFFFFFFL) * faces) >>> 32);
+	}
+	
+	/**
+	 * nextLong
+	 * <p>
+	 * Returns the next two coordinates as the high and low 32 bits.
+	 * @return quasi-random long value
+	 */
+	public long nextLong(){
+		long high = next32() & 0xFFFFFFFFL;
+		return high << 32 | (next32() & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * nextDouble
+	 * <p>
+	 * Returns the next coordinate as a double in the range of 0 (inclusive) to 1
+	 * (exclusive), with the bits below its 32 filled in at random.
+	 * @return quasi-random double value
+	 */
+	public double nextDouble(){
+		return ((next32() & 0xFFFFFFFFL) + random.nextDouble()) * 0x1.0p-32;
+	}
+	
+	/**
+	 * split
+	 * <p>
+	 * Returns an independent replicate, scrambled with a seed drawn from this 
+	 * source.
+	 * @return a new SobolDiceSource
+	 */
+	public DiceSource split(){
+		return new SobolDiceSource(random.nextLong());
+	}
+	
+	/**
+	 * toString
+	 * <p>
+	 * Returns the name and seed of the source.
+	 * @return String representation of the source
+	 */
+	public String toString(){
+		return SOBOL + "(" + seed + ")";
+	}
+	
+	/**
+	 * The main method estimates the win probability with independent replicates
+	 * of Sobol sources and, for comparison, of pseudo-random sources, and prints
+	 * the mean of each set of replicates, its standard error, and its error 
+	 * against the exact CrapsSolver value.
+	 * <p>
+	 * Usage: java SobolDiceSource [games] [-replicates r] [-seed s] [-cheat] 
+	 * [-engine kernel|fast] [-rules name|spec|file]
+	 */
+	public static void main(String[] args){
+		long games = 1 << 20;
+		int replicates = 16;
+		long seed = System.nanoTime();
+		boolean cheat = false;
+		CrapsSimulator.Engine engine = CrapsSimulator.Engine.FAST;
+		CrapsRules rules = CrapsRules.HOUSE;
+		try {
+			for (int i = 0; i < args.length; i++){
+				if (("-cheat").equals(args[i])){
+					cheat = true;
+				}
+				else if (("-replicates").equals(args[i])){
+					replicates = Integer.parseInt(args[++i]);
+				}
+				else if (("-seed").equals(args[i])){
+					seed = Long.parseLong(args[++i]);
+				}
+				else if (("-engine").equals(args[i])){
+					engine = CrapsSimulator.Engine.valueOf(args[++i].toUpperCase());
+				}
+				else if (("-rules").equals(args[i])){
+					rules = CrapsRules.forName(args[++i]);
+				}
+				else {
+					games = Long.parseLong(args[i].replace("_", ""));
+				}
+			}
+			if (replicates < 2){
+				throw new IllegalArgumentException("need at least 2 replicates");
+			}
+			double exact = new CrapsSolver(cheat, rules).getWinProbability().doubleValue();
+			System.out.println(String.format("Exact Win Rate: %.6f", exact));
+			CrapsSimulator simulator = new CrapsSimulator(cheat, engine);
+			simulator.setRules(rules);
+			SplittableRandom seeds = new SplittableRandom(seed);
+			for (String algorithm : new String[] {SOBOL, RandomDiceSource.L64X128_MIX}){
+				double sum = 0;
+				double sumSquares = 0;
+				for (int r = 0; r < replicates; r++){
+					double rate = simulator.run(games, 
+							DiceSource.of(algorithm, seeds.nextLong())).getWinRate();
+					sum += rate;
+					sumSquares += rate * rate;
+				}
+				double mean = sum / replicates;
+				double error = Math.sqrt((sumSquares - replicates * mean * mean) 
+						/ (replicates - 1) / replicates);
+				System.out.println(String.format("%-16s %.6f +/- %.6f (standard error " 
+						+ "of %d replicates of %d games), error %+.6f", algorithm, mean, 
+						error, replicates, games, mean - exact));
+			}
+		}
+		catch (IllegalArgumentException | ArrayIndexOutOfBoundsException | IOException e){
+			System.out.println("Usage: java SobolDiceSource [games] [-replicates r] " 
+					+ "[-seed s] [-cheat] [-engine kernel|fast] [-rules name|spec|file]");
+			System.exit(1);
+		}
+	}
+} //End of SobolDiceSource class
@@ -0,0 +1,648 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <b>StrategyEngine Class</b>
+ * <p>
+ * Plays many betting strategies side by side at one Craps table. Every
+ * strategy bets on the same games, rolled once by a single PairOfDice, so
+ * comparing two strategies costs no extra dice and the luck of the table
+ * cancels out of the comparison (common random numbers).
+ * <p>
+ * A strategy is described by a spec of comma separated bets and settings:
+ * <ul>
+ * <li>pass, dont - a line bet on every game, for or against the shooter; the
+ * don't bet pushes on a come-out 12 that loses the pass line (bar 12)</li>
+ * <li>odds=n - once a point is set, an odds bet of n times the line bet, paid
+ * at true odds: 6:ways when the point wins it, ways:6 when a 7 does</li>
+ * <li>place=6+8 - place bets on the given numbers (4, 5, 6, 8, 9, 10) other
+ * than the point, put up when a point is set, paid 9:5, 7:5 or 7:6 each time
+ * their number rolls, lost on a 7 and taken down when the game ends</li>
+ * <li>flat, martingale, paroli - the progression of the line bet: constant,
+ * doubled after every loss, or doubled after every win up to three wins</li>
+ * <li>unit=u, placeunit=u, max=m, bankroll=b - the base line bet, the amount
+ * of each place bet, the table maximum and the starting bankroll</li>
+ * </ul>
+ * For example "pass,odds=2,place=6+8,martingale,unit=10,bankroll=1000". A
+ * strategy skips its odds and place bets in any game where they do not fit in
+ * its bankroll, and goes bust and stops betting once it cannot cover its next
+ * line bet.
+ * <p>
+ * All state is kept in primitive arrays with one entry per strategy, so every
+ * roll is a single pass over the arrays. Every bet is settled by the end of
+ * its game, and each game's net result is recorded both alone and as the
+ * difference from strategy 0, the baseline, which gives paired standard
+ * errors for comparing every strategy with it. Cheat dice are not rolled.
+ * @author James Wen - jrw2175
+ */
+public class StrategyEngine {
+	//Line bets
+	public static final byte NO_LINE = 0;
+	public static final byte PASS = 1;
+	public static final byte DONT = 2;
+	//Progressions of the line bet
+	public static final byte FLAT = 0;
+	public static final byte MARTINGALE = 1;
+	public static final byte PAROLI = 2;
+
+	private static final int BATCH_SIZE = 1024; //rolls per DiceBatch
+	private static final int PAROLI_WINS = 3; //wins before a Paroli resets
+	private static final int[] WAYS = {0, 0, 1, 2, 3, 4, 5, 6, 5, 4, 3, 2, 1};
+	private static final double[] PLACE_PAYS =
+			{0, 0, 0, 0, 9.0 / 5, 7.0 / 5, 7.0 / 6, 0, 7.0 / 6, 7.0 / 5, 9.0 / 5, 0, 0};
+	private static final int PLACE_NUMBERS = 1 << 4 | 1 << 5 | 1 << 6 | 1 << 8
+			| 1 << 9 | 1 << 10;
+
+	private final CrapsRules rules;
+	private int count;
+	private long games;
+	private long rolls;
+	private int state = CrapsRules.COME_OUT;
+	//Strategy settings
+	private String[] specs = new String[16];
+	private byte[] line = new byte[16];
+	private byte[] progression = new byte[16];
+	private int[] oddsMultiple = new int[16];
+	private int[] placeNumbers = new int[16]; //bit n set to place n
+	private double[] baseUnit = new double[16];
+	private double[] placeUnit = new double[16];
+	private double[] maxBet = new double[16];
+	private double[] startBankroll = new double[16];
+	//Strategy state
+	private double[] bankroll = new double[16];
+	private double[] unit = new double[16];
+	private double[] lineBet = new double[16];
+	private double[] oddsBet = new double[16];
+	private double[] gameStart = new double[16];
+	private int[] placed = new int[16];
+	private int[] streak = new int[16];
+	private long[] bustedAt = new long[16];
+	//Strategy results
+	private double[] action = new double[16];
+	private double[] netSum = new double[16];
+	private double[] netSquares = new double[16];
+	private double[] diffSum = new double[16];
+	private double[] diffSquares = new double[16];
+
+	/**
+	 * Constructs an engine with no strategies at a table with the given rules.
+	 * @param rules - the rules the line bets are settled by
+	 */
+	public StrategyEngine(CrapsRules rules){
+		this.rules = rules;
+	}
+
+	/**
+	 * add
+	 * <p>
+	 * Adds a strategy and returns its index. Strategies must all be added
+	 * before the first game is played.
+	 * @param spec - the bets and settings of the strategy
+	 * @return index of the new strategy
+	 * @throws IllegalArgumentException - if the spec is not valid
+	 * @throws IllegalStateException - if games have already been played
+	 */
+	public int add(String spec){
+		if (games > 0 || state != CrapsRules.COME_OUT){
+			throw new IllegalStateException("strategies must be added before play");
+		}
+		if (count == line.length){
+			grow();
+		}
+		int i = count;
+		line[i] = NO_LINE;
+		progression[i] = FLAT;
+		baseUnit[i] = 10;
+		placeUnit[i] = Double.NaN;
+		maxBet[i] = 1000;
+		startBankroll[i] = 1000;
+		for (String token : spec.split(",")){
+			String key = token.trim().toLowerCase();
+			String value = null;
+			int equals = key.indexOf('=');
+			if (equals >= 0){
+				value = key.substring(equals + 1).trim();
+				key = key.substring(0, equals).trim();
+			}
+			if (("pass").equals(key)){
+				line[i] = PASS;
+			}
+			else if (("dont").equals(key)){
+				line[i] = DONT;
+			}
+			else if (("flat").equals(key)){
+				progression[i] = FLAT;
+			}
+			else if (("martingale").equals(key)){
+				progression[i] = MARTINGALE;
+			}
+			else if (("paroli").equals(key)){
+				progression[i] = PAROLI;
+			}
+			else if (value == null){
+				throw new IllegalArgumentException("unknown bet: " + token);
+			}
+			else if (("odds").equals(key)){
+				oddsMultiple[i] = Integer.parseInt(value);
+			}
+			else if (("place").equals(key)){
+				for (String number : value.split("\\+")){
+					int n = Integer.parseInt(number.trim());
+					if (n < 0 || n > 12 || (PLACE_NUMBERS >>> n & 1) == 0){
+						throw new IllegalArgumentException("cannot place " + number);
+					}
+					placeNumbers[i] |= 1 << n;
+				}
+			}
+			else if (("unit").equals(key)){
+				baseUnit[i] = Double.parseDouble(value);
+			}
+			else if (("placeunit").equals(key)){
+				placeUnit[i] = Double.parseDouble(value);
+			}
+			else if (("max").equals(key)){
+				maxBet[i] = Double.parseDouble(value);
+			}
+			else if (("bankroll").equals(key)){
+				startBankroll[i] = Double.parseDouble(value);
+			}
+			else {
+				throw new IllegalArgumentException("unknown bet: " + token);
+			}
+		}
+		if (Double.isNaN(placeUnit[i])){
+			placeUnit[i] = baseUnit[i];
+		}
+		if (!(baseUnit[i] > 0) || !(placeUnit[i] > 0) || oddsMultiple[i] < 0
+				|| !(maxBet[i] >= baseUnit[i]) || !(startBankroll[i] >= 0)){
+			throw new IllegalArgumentException("invalid strategy: " + spec);
+		}
+		specs[i] = spec;
+		bankroll[i] = startBankroll[i];
+		unit[i] = baseUnit[i];
+		bustedAt[i] = -1;
+		count++;
+		betLine(i);
+		return i;
+	}
+
+	/**
+	 * grow
+	 * <p>
+	 * Doubles the length of every per strategy array.
+	 */
+	private void grow(){
+		int length = line.length * 2;
+		specs = Arrays.copyOf(specs, length);
+		line = Arrays.copyOf(line, length);
+		progression = Arrays.copyOf(progression, length);
+		oddsMultiple = Arrays.copyOf(oddsMultiple, length);
+		placeNumbers = Arrays.copyOf(placeNumbers, length);
+		baseUnit = Arrays.copyOf(baseUnit, length);
+		placeUnit = Arrays.copyOf(placeUnit, length);
+		maxBet = Arrays.copyOf(maxBet, length);
+		startBankroll = Arrays.copyOf(startBankroll, length);
+		bankroll = Arrays.copyOf(bankroll, length);
+		unit = Arrays.copyOf(unit, length);
+		lineBet = Arrays.copyOf(lineBet, length);
+		oddsBet = Arrays.copyOf(oddsBet, length);
+		gameStart = Arrays.copyOf(gameStart, length);
+		placed = Arrays.copyOf(placed, length);
+		streak = Arrays.copyOf(streak, length);
+		bustedAt = Arrays.copyOf(bustedAt, length);
+		action = Arrays.copyOf(action, length);
+		netSum = Arrays.copyOf(netSum, length);
+		netSquares = Arrays.copyOf(netSquares, length);
+		diffSum = Arrays.copyOf(diffSum, length);
+		diffSquares = Arrays.copyOf(diffSquares, length);
+	}
+
+	/**
+	 * betLine
+	 * <p>
+	 * Records the bankroll a strategy starts a game with and puts down its line
+	 * bet, or marks it bust if it cannot cover the bet.
+	 */
+	private void betLine(int i){
+		gameStart[i] = bankroll[i];
+		if (line[i] != NO_LINE){
+			double bet = unit[i];
+			if (bet > bankroll[i]){
+				bustedAt[i] = games;
+				return;
+			}
+			bankroll[i] -= bet;
+			lineBet[i] = bet;
+		}
+	}
+
+	/**
+	 * play
+	 * <p>
+	 * Plays the requested number of games, rolling a single PairOfDice in
+	 * batches with the given source, and settles every strategy's bets on
+	 * every roll. Rolls left in the last batch are discarded.
+	 * @param count - the number of games to play
+	 * @param source - the dice source of the table
+	 */
+	public void play(long count, DiceSource source){
+		PairOfDice dice = new PairOfDice(source);
+		DiceBatch batch = DiceBatch.create(BATCH_SIZE);
+		int[] sums = batch.getSums();
+		long end = games + count;
+		while (games < end){
+			dice.rollBatch(batch);
+			for (int r = 0; r < BATCH_SIZE && games < end; r++){
+				roll(sums[r]);
+			}
+		}
+	}
+
+	/**
+	 * roll
+	 * <p>
+	 * Settles one roll of the table for every strategy that is not bust.
+	 * @param sum - the sum rolled
+	 */
+	private void roll(int sum){
+		int point = state;
+		int outcome = rules.outcome(point, sum);
+		int next = rules.nextState(point, sum);
+		boolean setsPoint = point == CrapsRules.COME_OUT
+				&& outcome == CrapsRules.KEEP_ROLLING && next != CrapsRules.COME_OUT;
+		boolean ends = outcome != CrapsRules.KEEP_ROLLING;
+		boolean bar = point == CrapsRules.COME_OUT && sum == 12
+				&& outcome == CrapsRules.LOSE;
+		double oddsPays = ends && point != CrapsRules.COME_OUT
+				? (sum == 7 ? WAYS[point] / 6.0 : 6.0 / WAYS[point]) : 0;
+		double placePays = PLACE_PAYS[sum];
+		rolls++;
+		double baseNet = 0;
+		for (int i = 0; i < count; i++){
+			if (bustedAt[i] >= 0){
+				if (ends){
+					record(i, 0, baseNet);
+				}
+				continue;
+			}
+			double bank = bankroll[i];
+			int up = placed[i];
+			if (up != 0){
+				if (sum == 7){
+					action[i] += placeUnit[i] * Integer.bitCount(up);
+					up = 0;
+				}
+				else if ((up >>> sum & 1) != 0){
+					bank += placeUnit[i] * placePays;
+					action[i] += placeUnit[i];
+				}
+			}
+			if (ends){
+				double lineAmount = lineBet[i];
+				double odds = oddsBet[i];
+				if (line[i] != NO_LINE){
+					if (line[i] == DONT && bar){ //Push
+						bank += lineAmount;
+					}
+					else {
+						action[i] += lineAmount + odds;
+						boolean won = (outcome == CrapsRules.WIN) == (line[i] == PASS);
+						if (won){
+							bank += 2 * lineAmount + odds + odds * oddsPays;
+						}
+						progress(i, won);
+					}
+				}
+				bank += placeUnit[i] * Integer.bitCount(up);
+				lineBet[i] = 0;
+				oddsBet[i] = 0;
+				placed[i] = 0;
+				bankroll[i] = bank;
+				double net = bank - gameStart[i];
+				if (i == 0){
+					baseNet = net;
+				}
+				record(i, net, baseNet);
+				betLine(i);
+				continue;
+			}
+			if (setsPoint){
+				double odds = oddsMultiple[i] * lineBet[i];
+				int numbers = placeNumbers[i] & ~(1 << next);
+				double place = placeUnit[i] * Integer.bitCount(numbers);
+				if (odds + place <= bank){
+					bank -= odds + place;
+					oddsBet[i] = odds;
+					up = numbers;
+				}
+			}
+			placed[i] = up;
+			bankroll[i] = bank;
+		}
+		if (ends){
+			games++;
+		}
+		state = ends ? CrapsRules.COME_OUT : next;
+	}
+
+	/**
+	 * progress
+	 * <p>
+	 * Moves a strategy's line bet along its progression after a win or loss.
+	 */
+	private void progress(int i, boolean won){
+		switch (progression[i]){
+			case MARTINGALE:
+				unit[i] = won ? baseUnit[i] : Math.min(unit[i] * 2, maxBet[i]);
+				break;
+			case PAROLI:
+				if (won && ++streak[i] < PAROLI_WINS){
+					unit[i] = Math.min(unit[i] * 2, maxBet[i]);
+				}
+				else {
+					unit[i] = baseUnit[i];
+					streak[i] = 0;
+				}
+				break;
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * record
+	 * <p>
+	 * Adds the net result of a game for a strategy, alone and as its difference
+	 * from the baseline's.
+	 */
+	private void record(int i, double net, double baseNet){
+		double diff = net - baseNet;
+		netSum[i] += net;
+		netSquares[i] += net * net;
+		diffSum[i] += diff;
+		diffSquares[i] += diff * diff;
+	}
+
+	/**
+	 * size
+	 * <p>
+	 * Returns the number of strategies.
+	 * @return count - the number of strategies
+	 */
+	public int size(){
+		return count;
+	}
+
+	/**
+	 * getGames
+	 * <p>
+	 * Returns the number of games played so far.
+	 * @return games - the number of finished games
+	 */
+	public long getGames(){
+		return games;
+	}
+
+	/**
+	 * getRolls
+	 * <p>
+	 * Returns the number of rolls of the table so far.
+	 * @return rolls - the number of rolls
+	 */
+	public long getRolls(){
+		return rolls;
+	}
+
+	/**
+	 * getSpec
+	 * <p>
+	 * Returns the spec a strategy was added with.
+	 * @param i - the index of the strategy
+	 * @return spec of the strategy
+	 */
+	public String getSpec(int i){
+		return specs[i];
+	}
+
+	/**
+	 * getBankroll
+	 * <p>
+	 * Returns the bankroll of a strategy between games, when all its bets are
+	 * settled.
+	 * @param i - the index of the strategy
+	 * @return bankroll of the strategy
+	 */
+	public double getBankroll(int i){
+		return gameStart[i];
+	}
+
+	/**
+	 * getBustedAt
+	 * <p>
+	 * Returns the game in which a strategy went bust, or -1 if it has not.
+	 * @param i - the index of the strategy
+	 * @return number of games played before the strategy went bust, or -1
+	 */
+	public long getBustedAt(int i){
+		return bustedAt[i];
+	}
+
+	/**
+	 * getAction
+	 * <p>
+	 * Returns the total amount of a strategy's bets that have been won or lost;
+	 * pushed and returned bets are not counted.
+	 * @param i - the index of the strategy
+	 * @return total settled amount bet
+	 */
+	public double getAction(int i){
+		return action[i];
+	}
+
+	/**
+	 * getHouseEdge
+	 * <p>
+	 * Returns the amount a strategy has lost per unit of settled bets.
+	 * @param i - the index of the strategy
+	 * @return net loss over action
+	 */
+	public double getHouseEdge(int i){
+		return -netSum[i] / action[i];
+	}
+
+	/**
+	 * getMeanNet
+	 * <p>
+	 * Returns a strategy's mean net result per game played at the table.
+	 * @param i - the index of the strategy
+	 * @return mean net result per game
+	 */
+	public double getMeanNet(int i){
+		return netSum[i] / games;
+	}
+
+	/**
+	 * getStandardError
+	 * <p>
+	 * Returns the standard error of getMeanNet, from the games alone.
+	 * @param i - the index of the strategy
+	 * @return standard error of the mean net result
+	 */
+	public double getStandardError(int i){
+		return standardError(netSum[i], netSquares[i]);
+	}
+
+	/**
+	 * getPairedStandardError
+	 * <p>
+	 * Returns the standard error of the difference between a strategy's mean
+	 * net result and the baseline's, from the per game differences.
+	 * @param i - the index of the strategy
+	 * @return standard error of the paired difference from strategy 0
+	 */
+	public double getPairedStandardError(int i){
+		return standardError(diffSum[i], diffSquares[i]);
+	}
+
+	/**
+	 * standardError
+	 * <p>
+	 * Returns the standard error of a mean over the games played from the sum
+	 * and sum of squares of the samples.
+	 */
+	private double standardError(double sum, double squares){
+		double mean = sum / games;
+		return Math.sqrt(Math.max(0, squares - games * mean * mean) / (games - 1) / games);
+	}
+
+	/**
+	 * toString
+	 * <p>
+	 * Returns a one line summary of a strategy's results.
+	 * @param i - the index of the strategy
+	 * @return summary String of the strategy
+	 */
+	public String toString(int i){
+		return String.format("%-48s %+9.4f +/- %.4f per game, edge %6.3f%%, "
+				+ "vs baseline %+9.4f +/- %.4f%s", specs[i], getMeanNet(i),
+				getStandardError(i) * SimulationStats.Z95, 100 * getHouseEdge(i),
+				getMeanNet(i) - getMeanNet(0),
+				getPairedStandardError(i) * SimulationStats.Z95,
+				bustedAt[i] >= 0 ? ", bust at game " + bustedAt[i] : "");
+	}
+
+	/**
+	 * The main method plays a grid of strategies with every combination of
+	 * line bet, odds, place bets, progression, unit and bankroll at one table, 
+	 * prints the house edges of the single bets next to their exact values, the
+	 * best and worst strategies that did not go bust, and how much smaller the 
+	 * paired standard errors are than those of strategies played with separate
+	 * dice.
+	 * Strategy 0, the baseline, is a flat pass line bet.
+	 * <p>
+	 * Usage: java StrategyEngine [games] [-seed s] [-rules name|spec|file]
+	 */
+	public static void main(String[] args){
+		long games = 200000;
+		long seed = System.nanoTime();
+		CrapsRules rules = CrapsRules.CASINO;
+		try {
+			for (int i = 0; i < args.length; i++){
+				if (("-seed").equals(args[i])){
+					seed = Long.parseLong(args[++i]);
+				}
+				else if (("-rules").equals(args[i])){
+					rules = CrapsRules.forName(args[++i]);
+				}
+				else {
+					games = Long.parseLong(args[i].replace("_", ""));
+				}
+			}
+			StrategyEngine engine = new StrategyEngine(rules);
+			engine.add("pass,bankroll=1000000000");
+			engine.add("dont,bankroll=1000000000");
+			engine.add("place=6,placeunit=6,bankroll=1000000000");
+			engine.add("place=5,placeunit=5,bankroll=1000000000");
+			engine.add("place=4,placeunit=5,bankroll=1000000000");
+			String[] lines = {"pass", "dont"};
+			int[] odds = {0, 1, 2, 3, 5, 10};
+			String[] places = {"", ",place=6+8", ",place=5+6+8+9",
+					",place=4+5+6+8+9+10"};
+			String[] progressions = {"flat", "martingale", "paroli"};
+			int[] units = {5, 10, 25};
+			int[] bankrolls = {1000, 10000, 100000};
+			for (String bet : lines){
+				for (int multiple : odds){
+					for (String place : places){
+						for (String progression : progressions){
+							for (int unit : units){
+								for (int bankroll : bankrolls){
+									engine.add(bet + ",odds=" + multiple + place + ","
+											+ progression + ",unit=" + unit + ",bankroll="
+											+ bankroll);
+								}
+							}
+						}
+					}
+				}
+			}
+			long start = System.nanoTime();
+			engine.play(games, RandomDiceSource.of(RandomDiceSource.L64X128_MIX, seed));
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.println(String.format("%d strategies, %d games, %d rolls in %.3f s"
+					+ " (%.0f strategy rolls/s)", engine.size(), engine.getGames(),
+					engine.getRolls(), seconds, engine.size() * engine.getRolls() / seconds));
+			double win = new CrapsSolver(false, rules).getWinProbability().doubleValue();
+			System.out.println(String.format("Exact pass line edge %.3f%%, place 6 %.3f%%,"
+					+ " place 5 %.3f%%, place 4 %.3f%%", 100 * (1 - 2 * win),
+					100 / 66.0, 100 / 25.0, 100 / 15.0));
+			for (int i = 0; i < 5; i++){
+				System.out.println(engine.toString(i));
+			}
+			List<Integer> order = new ArrayList<Integer>();
+			List<List<Double>> ratios = new ArrayList<List<Double>>();
+			for (int side = NO_LINE; side <= DONT; side++){
+				ratios.add(new ArrayList<Double>());
+			}
+			for (int i = 5; i < engine.size(); i++){
+				if (engine.getBustedAt(i) < 0){
+					order.add(i);
+					//Standard error of the difference had each strategy its own dice
+					double unpaired = Math.hypot(engine.getStandardError(i), 
+							engine.getStandardError(0));
+					ratios.get(engine.line[i]).add(unpaired 
+							/ engine.getPairedStandardError(i));
+				}
+			}
+			order.sort((a, b) -> Double.compare(engine.getMeanNet(b), engine.getMeanNet(a)));
+			System.out.println(String.format("%d of %d strategies went bust; best and "
+					+ "worst of the rest:", engine.size() - 5 - order.size(), 
+					engine.size() - 5));
+			for (int i = 0; i < Math.min(5, order.size()); i++){
+				System.out.println(engine.toString(order.get(i)));
+			}
+			System.out.println("...");
+			for (int i = Math.max(5, order.size() - 5); i < order.size(); i++){
+				System.out.println(engine.toString(order.get(i)));
+			}
+			for (int side = PASS; side <= DONT; side++){
+				List<Double> sideRatios = ratios.get(side);
+				if (!sideRatios.isEmpty()){
+					sideRatios.sort(null);
+					System.out.println(String.format("Separate dice would make the "
+							+ "standard error of the difference from the baseline %.2fx"
+							+ " as large for the median %s strategy", 
+							sideRatios.get(sideRatios.size() / 2), 
+							side == PASS ? "pass" : "don't"));
+				}
+			}
+		}
+		catch (IllegalArgumentException | ArrayIndexOutOfBoundsException | IOException e){
+			System.out.println("Usage: java StrategyEngine [games] [-seed s] "
+					+ "[-rules name|spec|file]");
+			System.exit(1);
+		}
+	}
+} //End of StrategyEngine class
@@ -0,0 +1,673 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <b>SweepRunner Class</b>
+ * <p>
+ * Runs a grid of deterministic simulations, every combination of rules, seed,
+ * number of games, cheat mode and engine, on a work stealing ForkJoinPool, and
+ * keeps every cell's statistics in an on disk cache so that later sweeps over
+ * overlapping grids reuse them instead of playing the games again.
+ * <p>
+ * Every cell is played as ParallelSimulator's runDeterministic plays it, in
+ * chunks of ParallelSimulator.CHUNK_GAMES with their own Philox streams merged
+ * in chunk order, so a cell's statistics and digest are the same as those of
+ * CrapsSimulator -deterministic -stats with the same settings. The chunks of
+ * all cells are tasks in the same pool, so idle threads steal chunks from the
+ * cells that still have the most left.
+ * <p>
+ * Cache entries are files named by the SHA-256 of the identity of what they
+ * hold: the rules definition, the dice stream, the seed, the cheat mode, the
+ * engine, CrapsSimulator.ENGINE_VERSION, the chunk size and, for a cell, the
+ * number of games. The identity is stored in the file too and checked on
+ * load. Besides the cells, the cache keeps prefixes: for a stream of chunks,
+ * the merged statistics of its first n chunks, for every power of two n
+ * reached and for the whole chunks of every cell played, together with an
+ * index of the prefixes each stream has. The first chunks of a run are the
+ * same whatever the number of games, so a cell is extended from the longest
+ * prefix that fits in it by playing only the chunks after it, whether the
+ * prefix came from a smaller or a larger cell. Cells of the same stream in
+ * one sweep are played in order of size, each extending the one before.
+ * Files are written to a temporary file and renamed over the entry, so
+ * concurrent sweeps sharing a cache only ever see whole entries; an index
+ * update lost to a concurrent sweep only hides a prefix from later lookups.
+ * @author James Wen - jrw2175
+ */
+public class SweepRunner {
+	static final int MAGIC = 0x43525343; //"CRSC"
+	static final int VERSION = 1;
+	private static final long CHUNK = ParallelSimulator.CHUNK_GAMES;
+
+	private final ForkJoinPool pool;
+	private final Path cacheDir;
+	private final int window; //chunks of a cell in flight at once
+	private final AtomicLong simulated = new AtomicLong();
+
+	/**
+	 * <b>Cell Class</b>
+	 * <p>
+	 * One combination of settings in a sweep and, once run, its statistics and
+	 * where they came from.
+	 */
+	public static final class Cell {
+		public final CrapsRules rules;
+		public final long seed;
+		public final long games;
+		public final boolean cheat;
+		public final CrapsSimulator.Engine engine;
+		private SimulationStats stats;
+		private String origin;
+
+		public Cell(CrapsRules rules, long seed, long games, boolean cheat,
+				CrapsSimulator.Engine engine){
+			if (games < 0){
+				throw new IllegalArgumentException("games must not be negative");
+			}
+			this.rules = rules;
+			this.seed = seed;
+			this.games = games;
+			this.cheat = cheat;
+			this.engine = engine;
+		}
+
+		/**
+		 * streamIdentity
+		 * <p>
+		 * Returns the identity of the chunk stream the cell plays, which every
+		 * cell with the same settings but another number of games shares.
+		 */
+		String streamIdentity(){
+			return "rules=" + rules.getSpec() + ";rng=philox;seed=" + seed + ";cheat="
+					+ cheat + ";engine=" + engine + ";version="
+					+ CrapsSimulator.ENGINE_VERSION + ";chunk=" + CHUNK;
+		}
+
+		/**
+		 * identity
+		 * <p>
+		 * Returns the identity of the cell's results.
+		 */
+		String identity(){
+			return streamIdentity() + ";games=" + games;
+		}
+
+		/**
+		 * getStats
+		 * <p>
+		 * Returns the statistics of the cell's games, or null before it has run.
+		 * @return stats - the cell's statistics
+		 */
+		public SimulationStats getStats(){
+			return stats;
+		}
+
+		/**
+		 * getOrigin
+		 * <p>
+		 * Returns whether the cell's statistics were cached, extended from a
+		 * cached run of fewer chunks, or computed from the start.
+		 * @return origin - "cached", "extended from n" or "computed"
+		 */
+		public String getOrigin(){
+			return origin;
+		}
+
+		/**
+		 * getDigest
+		 * <p>
+		 * Returns the digest CrapsSimulator -deterministic -stats prints for the
+		 * same run.
+		 * @return digest - the SHA-256 of the cell's results, in hex
+		 */
+		public String getDigest(){
+			try {
+				return CrapsSimulator.digest(new SimulationResult(games, stats.getWins(),
+						stats.getRolls(), 0), stats);
+			}
+			catch (IOException e){
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		/**
+		 * toString
+		 * <p>
+		 * Returns the cell's settings and, once run, its win rate with the 95%
+		 * confidence half width, its mean rolls per game, its origin and digest.
+		 */
+		@Override
+		public String toString(){
+			String settings = String.format("%-10s seed=%-6d games=%-11d cheat=%-3s %-7s",
+					rules.getName(), seed, games, cheat ? "on" : "off",
+					engine.name().toLowerCase());
+			if (stats == null){
+				return settings;
+			}
+			return String.format("%s win %.6f +/- %.6f  rolls %.4f  %-22s %s", settings,
+					stats.getWinRate(), stats.getWinRateHalfWidth(SimulationStats.Z95),
+					stats.getMeanRolls(), origin, getDigest());
+		}
+	} //End of Cell class
+
+	/**
+	 * Constructs a sweep runner that plays chunks on the given number of threads
+	 * and caches results in the given directory, creating it if need be.
+	 * @param threads - the parallelism of the pool
+	 * @param cacheDir - the directory of the result cache
+	 * @throws IllegalArgumentException - if threads is less than 1
+	 * @throws IOException - if the cache directory cannot be created
+	 */
+	public SweepRunner(int threads, Path cacheDir) throws IOException {
+		if (threads < 1){
+			throw new IllegalArgumentException("threads must be at least 1");
+		}
+		this.pool = new ForkJoinPool(threads);
+		this.cacheDir = Files.createDirectories(cacheDir);
+		this.window = 4 * threads;
+	}
+
+	/**
+	 * run
+	 * <p>
+	 * Runs every cell, from the cache where it can, and returns once all of
+	 * them have their statistics.
+	 * @param cells - the cells of the sweep
+	 * @throws UncheckedIOException - if the cache cannot be read or written
+	 */
+	public void run(List<Cell> cells){
+		Map<String, List<Cell>> streams = new LinkedHashMap<String, List<Cell>>();
+		for (Cell cell : cells){
+			streams.computeIfAbsent(cell.streamIdentity(), k -> new ArrayList<Cell>()).add(cell);
+		}
+		final List<StreamTask> tasks = new ArrayList<StreamTask>();
+		for (Map.Entry<String, List<Cell>> stream : streams.entrySet()){
+			tasks.add(new StreamTask(stream.getKey(), stream.getValue()));
+		}
+		pool.invoke(new RecursiveAction(){
+			@Override
+			protected void compute(){
+				invokeAll(tasks);
+			}
+		});
+	}
+
+	/**
+	 * getSimulated
+	 * <p>
+	 * Returns the number of games actually played so far, leaving out those
+	 * whose results came from the cache.
+	 * @return simulated - the number of games played
+	 */
+	public long getSimulated(){
+		return simulated.get();
+	}
+
+	/**
+	 * shutdown
+	 * <p>
+	 * Stops the pool's threads.
+	 */
+	public void shutdown(){
+		pool.shutdown();
+	}
+
+	/**
+	 * <b>StreamTask Class</b>
+	 * <p>
+	 * Runs the cells of one chunk stream in order of size, each extending the
+	 * longest cached prefix of the stream that fits in it.
+	 */
+	private final class StreamTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		private final String streamIdentity;
+		private final List<Cell> cells;
+		private TreeSet<Long> prefixes; //chunk counts of the cached prefixes
+		private boolean indexChanged;
+
+		StreamTask(String streamIdentity, List<Cell> cells){
+			this.streamIdentity = streamIdentity;
+			this.cells = new ArrayList<Cell>(cells);
+			this.cells.sort(Comparator.comparingLong(cell -> cell.games));
+		}
+
+		@Override
+		protected void compute(){
+			prefixes = loadIndex(streamIdentity);
+			for (Cell cell : cells){
+				SimulationStats cached = load(cell.identity());
+				if (cached != null){
+					cell.stats = cached;
+					cell.origin = "cached";
+					continue;
+				}
+				long wholeChunks = cell.games / CHUNK;
+				SimulationStats stats = null;
+				for (Long chunks = prefixes.floor(wholeChunks); chunks != null && stats == null;
+						chunks = prefixes.lower(chunks)){
+					stats = load(prefixIdentity(chunks));
+				}
+				if (stats == null){
+					stats = new SimulationStats();
+				}
+				long baseGames = stats.getGames();
+				play(cell, stats, baseGames / CHUNK, wholeChunks);
+				if (wholeChunks > 0){
+					storePrefix(wholeChunks, stats);
+				}
+				if (indexChanged){
+					storeIndex(streamIdentity, prefixes);
+					indexChanged = false;
+				}
+				if (cell.games % CHUNK != 0){
+					play(cell, stats, wholeChunks, wholeChunks + 1);
+				}
+				store(cell.identity(), stats);
+				cell.stats = stats;
+				cell.origin = (baseGames > 0) ? "extended from " + baseGames : "computed";
+			}
+		}
+
+		/**
+		 * prefixIdentity
+		 * <p>
+		 * Returns the identity of the stream's first chunks.
+		 */
+		private String prefixIdentity(long chunks){
+			return streamIdentity + ";chunks=" + chunks;
+		}
+
+		/**
+		 * storePrefix
+		 * <p>
+		 * Caches the statistics of the stream's first chunks, unless the cache
+		 * already has them.
+		 */
+		private void storePrefix(long chunks, SimulationStats stats){
+			if (prefixes.add(chunks)){
+				store(prefixIdentity(chunks), stats);
+				indexChanged = true;
+			}
+		}
+
+		/**
+		 * play
+		 * <p>
+		 * Plays chunks from first up to last of the cell's stream and merges
+		 * them into the statistics in chunk order, caching a prefix whenever
+		 * the number of chunks merged reaches a power of two. Up to window
+		 * chunks are forked ahead of the one being merged, for idle threads to
+		 * steal.
+		 */
+		private void play(Cell cell, SimulationStats stats, long first, long last){
+			ArrayDeque<ChunkTask> inFlight = new ArrayDeque<ChunkTask>();
+			long next = first;
+			long merged = first;
+			while (next < last || !inFlight.isEmpty()){
+				while (next < last && inFlight.size() < window){
+					ChunkTask task = new ChunkTask(cell, next++);
+					task.fork();
+					inFlight.add(task);
+				}
+				stats.merge(inFlight.poll().join());
+				merged++;
+				if (Long.bitCount(merged) == 1 && merged < last){
+					storePrefix(merged, stats);
+				}
+			}
+		}
+	} //End of StreamTask class
+
+	/**
+	 * <b>ChunkTask Class</b>
+	 * <p>
+	 * Plays one chunk of a cell with a simulator of its own.
+	 */
+	private final class ChunkTask extends RecursiveTask<SimulationStats> {
+		private static final long serialVersionUID = 1L;
+		
+		private final Cell cell;
+		private final long chunk;
+
+		ChunkTask(Cell cell, long chunk){
+			this.cell = cell;
+			this.chunk = chunk;
+		}
+
+		@Override
+		protected SimulationStats compute(){
+			CrapsSimulator simulator = new CrapsSimulator(cell.cheat, cell.engine);
+			simulator.setRules(cell.rules);
+			SimulationStats chunkStats = new SimulationStats();
+			ParallelSimulator.playChunk(simulator, cell.games, cell.seed, chunk, chunkStats);
+			simulated.addAndGet(chunkStats.getGames());
+			return chunkStats;
+		}
+	} //End of ChunkTask class
+
+	/**
+	 * entryFile
+	 * <p>
+	 * Returns the cache file of the given identity, named by its SHA-256.
+	 */
+	private Path entryFile(String identity){
+		try {
+			StringBuilder hex = new StringBuilder();
+			for (byte b : MessageDigest.getInstance("SHA-256").digest(
+					identity.getBytes(StandardCharsets.UTF_8))){
+				hex.append(String.format("%02x", b));
+			}
+			return cacheDir.resolve(hex + ".stats");
+		}
+		catch (NoSuchAlgorithmException e){
+			throw new IllegalStateException("SHA-256 is always available", e);
+		}
+	}
+
+	/**
+	 * load
+	 * <p>
+	 * Returns the cached statistics of the given identity, or null if there are
+	 * none or the entry belongs to another identity.
+	 */
+	private SimulationStats load(String identity){
+		try (DataInputStream in = openEntry(identity)){
+			return (in == null) ? null : SimulationStats.read(in);
+		}
+		catch (IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * loadIndex
+	 * <p>
+	 * Returns the chunk counts of the cached prefixes of the given stream.
+	 */
+	private TreeSet<Long> loadIndex(String streamIdentity){
+		TreeSet<Long> prefixes = new TreeSet<Long>();
+		try (DataInputStream in = openEntry(streamIdentity + ";prefixes")){
+			if (in != null){
+				for (int i = in.readInt(); i > 0; i--){
+					prefixes.add(in.readLong());
+				}
+			}
+			return prefixes;
+		}
+		catch (IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * openEntry
+	 * <p>
+	 * Opens the cache entry of the given identity just after its header, or
+	 * returns null if there is none or the entry belongs to another identity.
+	 */
+	private DataInputStream openEntry(String identity) throws IOException {
+		DataInputStream in;
+		try {
+			in = new DataInputStream(new BufferedInputStream(
+					Files.newInputStream(entryFile(identity))));
+		}
+		catch (NoSuchFileException e){
+			return null;
+		}
+		if (in.readInt() != MAGIC || in.readInt() != VERSION
+				|| !in.readUTF().equals(identity)){
+			in.close();
+			return null;
+		}
+		return in;
+	}
+
+	/**
+	 * store
+	 * <p>
+	 * Saves the statistics of the given identity in the cache, through a
+	 * temporary file renamed over the entry.
+	 */
+	private void store(String identity, SimulationStats stats){
+		try {
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			stats.write(new DataOutputStream(body));
+			writeEntry(identity, body.toByteArray());
+		}
+		catch (IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * storeIndex
+	 * <p>
+	 * Saves the chunk counts of the cached prefixes of the given stream, along
+	 * with any that another sweep has added to the index in the meantime.
+	 */
+	private void storeIndex(String streamIdentity, TreeSet<Long> prefixes){
+		prefixes.addAll(loadIndex(streamIdentity));
+		try {
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(body);
+			out.writeInt(prefixes.size());
+			for (long chunks : prefixes){
+				out.writeLong(chunks);
+			}
+			writeEntry(streamIdentity + ";prefixes", body.toByteArray());
+		}
+		catch (IOException e){
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * writeEntry
+	 * <p>
+	 * Writes the cache entry of the given identity, through a temporary file
+	 * renamed over the entry.
+	 */
+	private void writeEntry(String identity, byte[] body) throws IOException {
+		Path temporary = Files.createTempFile(cacheDir, "entry", ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				Files.newOutputStream(temporary)))){
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(identity);
+			out.write(body);
+		}
+		Files.move(temporary, entryFile(identity), StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * parseGrid
+	 * <p>
+	 * Returns the cells of a grid spec: axes of the form key=value,value,...
+	 * where the keys are rules, seed, games, cheat and engine. Rules are built in
+	 * names or rules files, seeds may be ranges such as 1..8, games may be
+	 * written as 1e6, and cheat is on, off or both. Axes left out take one
+	 * default value: house rules, seed 1, a million games, cheat off and the
+	 * kernel.
+	 * @throws IllegalArgumentException - if an axis or value is unknown
+	 * @throws IOException - if a rules file cannot be read
+	 */
+	static List<Cell> parseGrid(List<String> axes) throws IOException {
+		List<CrapsRules> rules = new ArrayList<CrapsRules>();
+		List<Long> seeds = new ArrayList<Long>();
+		List<Long> games = new ArrayList<Long>();
+		List<Boolean> cheats = new ArrayList<Boolean>();
+		List<CrapsSimulator.Engine> engines = new ArrayList<CrapsSimulator.Engine>();
+		for (String axis : axes){
+			int equals = axis.indexOf('=');
+			if (equals < 0){
+				throw new IllegalArgumentException("not an axis: " + axis);
+			}
+			String key = axis.substring(0, equals).trim();
+			for (String value : axis.substring(equals + 1).split(",")){
+				value = value.trim();
+				if (("rules").equals(key)){
+					rules.add(CrapsRules.forName(value));
+				}
+				else if (("seed").equals(key)){
+					int range = value.indexOf("..");
+					long from = Long.parseLong(range < 0 ? value : value.substring(0, range));
+					long to = (range < 0) ? from : Long.parseLong(value.substring(range + 2));
+					for (long seed = from; seed <= to; seed++){
+						seeds.add(seed);
+					}
+				}
+				else if (("games").equals(key)){
+					games.add(new BigDecimal(value.replace("_", "")).longValueExact());
+				}
+				else if (("cheat").equals(key)){
+					if (!("on").equals(value)){
+						cheats.add(false);
+					}
+					if (!("off").equals(value)){
+						cheats.add(true);
+					}
+				}
+				else if (("engine").equals(key)){
+					engines.add(CrapsSimulator.Engine.valueOf(value.toUpperCase()));
+				}
+				else {
+					throw new IllegalArgumentException("unknown axis: " + key);
+				}
+			}
+		}
+		if (rules.isEmpty()){
+			rules.add(CrapsRules.HOUSE);
+		}
+		if (seeds.isEmpty()){
+			seeds.add(1L);
+		}
+		if (games.isEmpty()){
+			games.add(1000000L);
+		}
+		if (cheats.isEmpty()){
+			cheats.add(false);
+		}
+		if (engines.isEmpty()){
+			engines.add(CrapsSimulator.Engine.KERNEL);
+		}
+		List<Cell> cells = new ArrayList<Cell>();
+		for (CrapsRules rule : rules){
+			for (long seed : seeds){
+				for (boolean cheat : cheats){
+					for (CrapsSimulator.Engine engine : engines){
+						for (long count : games){
+							cells.add(new Cell(rule, seed, count, cheat, engine));
+						}
+					}
+				}
+			}
+		}
+		return cells;
+	}
+
+	/**
+	 * The main method runs the sweep of a grid spec, given as axes on the
+	 * command line or one axis per line in a file, and prints every cell with
+	 * its results, then how many cells came from the cache and how many games
+	 * were actually played.
+	 * <p>
+	 * Usage: java SweepRunner [axis=value,...]... [-grid file] [-cache dir]
+	 * [-threads n]
+	 * <p>
+	 * For example: java SweepRunner rules=house,casino seed=1..4 games=1e6,1e7
+	 * cheat=both
+	 */
+	public static void main(String[] args){
+		List<String> axes = new ArrayList<String>();
+		Path cacheDir = Paths.get("sweep-cache");
+		int threads = Runtime.getRuntime().availableProcessors();
+		try {
+			for (int i = 0; i < args.length; i++){
+				if (("-grid").equals(args[i])){
+					for (String line : Files.readAllLines(Paths.get(args[++i]))){
+						line = line.trim();
+						if (!line.isEmpty() && !line.startsWith("#")){
+							axes.add(line);
+						}
+					}
+				}
+				else if (("-cache").equals(args[i])){
+					cacheDir = Paths.get(args[++i]);
+				}
+				else if (("-threads").equals(args[i])){
+					threads = Integer.parseInt(args[++i]);
+				}
+				else {
+					axes.add(args[i]);
+				}
+			}
+			List<Cell> cells = parseGrid(axes);
+			SweepRunner runner = new SweepRunner(threads, cacheDir);
+			long start = System.nanoTime();
+			try {
+				runner.run(cells);
+			}
+			finally {
+				runner.shutdown();
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			int cached = 0;
+			int extended = 0;
+			for (Cell cell : cells){
+				System.out.println(cell);
+				if (("cached").equals(cell.getOrigin())){
+					cached++;
+				}
+				else if (cell.getOrigin().startsWith("extended")){
+					extended++;
+				}
+			}
+			System.out.println(String.format("Cells: %d (%d cached, %d extended, %d "
+					+ "computed); games played: %d; elapsed: %.3f s", cells.size(), cached,
+					extended, cells.size() - cached - extended, runner.getSimulated(),
+					seconds));
+		}
+		catch (IllegalArgumentException | ArithmeticException
+				| ArrayIndexOutOfBoundsException e){
+			System.out.println("Usage: java SweepRunner [axis=value,...]... [-grid file] "
+					+ "[-cache dir] [-threads n]");
+			System.out.println("Axes: rules=name|file,... seed=s|from..to,... "
+					+ "games=n,... cheat=on|off|both engine=name,...");
+			System.exit(1);
+		}
+		catch (IOException e){
+			System.out.println("File error: " + e.getMessage());
+			System.exit(1);
+		}
+		catch (UncheckedIOException e){
+			System.out.println("File error: " + e.getCause().getMessage());
+			System.exit(1);
+		}
+	}
+} //End of SweepRunner class
@@ -0,0 +1,362 @@
+import java.io.IOException;
+
+/**
+ * <b>VarianceReducer Class</b>
+ * <p>
+ * Estimates the chance of winning a game of Craps with fewer games than plain 
+ * simulation needs for the same precision, by choosing and pairing the random 
+ * numbers the games are played with.
+ * <p>
+ * Games are played by CrapsKernel.playGame from a first roll face combination
+ * and three uniforms, for the cheat dice, the length of the point phase and 
+ * whether it is won. The methods are:
+ * <ul>
+ * <li>NAIVE - every game drawn independently; the baseline</li>
+ * <li>STRATIFIED - the same number of games started from each of the 36 first 
+ * roll face combinations, each weighted by its exact 1/36 chance</li>
+ * <li>ANTITHETIC - games played in pairs, the second with every die face x 
+ * turned into 7 - x and every uniform u into 1 - u</li>
+ * <li>CONTROL - independent games, corrected with the indicators of each first
+ * roll sum as control variates, whose exact means are the sum chances of 
+ * DiceModel.PAIR</li>
+ * <li>COMBINED - stratified, with antithetic uniforms within each stratum</li>
+ * </ul>
+ * Craps is symmetric under x to 7 - x, as 7 stays 7 and each point p becomes 
+ * the equally likely 14 - p, so mirroring the faces alone makes both games of a
+ * pair identical. The gain of ANTITHETIC comes from the mirrored uniforms of 
+ * the point phase, which make one game of a pair likely to win when the other 
+ * loses.
+ * <p>
+ * With every sum indicator as a control, the least squares control variate 
+ * estimator is each sum's win rate weighted by the exact chance of the sum, so
+ * CONTROL is computed in that form. Every estimate reports its variance, its
+ * effective sample size, which is the number of independent games with the same
+ * variance, and its variance reduction factor, the effective sample size over 
+ * the games played.
+ * @author James Wen - jrw2175
+ */
+public class VarianceReducer {
+	
+	/**
+	 * <b>Method Enum</b>
+	 * <p>
+	 * The ways in which games can be sampled.
+	 */
+	public enum Method { NAIVE, STRATIFIED, ANTITHETIC, CONTROL, COMBINED }
+	
+	private static final int COMBOS = 36; //face combinations of a roll
+	
+	private final boolean playerBonus; //cheat mode
+	private final CrapsRules rules;
+	
+	/**
+	 * Constructs a reducer for games played by the given rules with cheat mode 
+	 * on or off.
+	 * @param playerBonus - whether cheat mode is on or not
+	 * @param rules - the rules to play by
+	 */
+	public VarianceReducer(boolean playerBonus, CrapsRules rules){
+		this.playerBonus = playerBonus;
+		this.rules = rules;
+	}
+	
+	/**
+	 * estimate
+	 * <p>
+	 * Plays the requested number of games with the given method and estimates
+	 * the win probability from them.
+	 * @param method - the sampling method
+	 * @param games - the number of games to play, at least 72
+	 * @param source - the dice source to draw from
+	 * @return the estimate and its precision
+	 * @throws IllegalArgumentException - if fewer than 72 games are requested
+	 */
+	public Estimate estimate(Method method, long games, DiceSource source){
+		if (games < 2 * COMBOS){
+			throw new IllegalArgumentException("need at least " + 2 * COMBOS + " games");
+		}
+		CrapsKernel kernel = new CrapsKernel(source, playerBonus, rules);
+		switch (method){
+			case STRATIFIED:
+				return stratified(kernel, source, games, false);
+			case ANTITHETIC:
+				return antithetic(kernel, source, games);
+			case CONTROL:
+				return control(kernel, source, games);
+			case COMBINED:
+				return stratified(kernel, source, games, true);
+			default:
+				return naive(kernel, source, games);
+		}
+	}
+	
+	/**
+	 * naive
+	 * <p>
+	 * Plays independent games; the variance is p(1 - p) / n.
+	 */
+	private Estimate naive(CrapsKernel kernel, DiceSource source, long games){
+		for (long game = 0; game < games; game++){
+			play(kernel, source);
+		}
+		double p = (double) kernel.getWins() / games;
+		return new Estimate(Method.NAIVE, games, p, p * (1 - p) / (games - 1));
+	}
+	
+	/**
+	 * stratified
+	 * <p>
+	 * Plays an equal share of the games from each first roll face combination 
+	 * and weights each stratum's win rate by 1/36. With antithetic set, the 
+	 * games of each stratum are played in pairs with mirrored uniforms, and 
+	 * each pair counts as one sample of the stratum.
+	 */
+	private Estimate stratified(CrapsKernel kernel, DiceSource source, long games, 
+			boolean antithetic){
+		double estimate = 0;
+		double variance = 0;
+		int group = antithetic ? 2 : 1;
+		long samples = games / group;
+		for (int combo = 0; combo < COMBOS; combo++){
+			long share = samples / COMBOS + (combo < samples % COMBOS ? 1 : 0);
+			double sum = 0;
+			double sumSquares = 0;
+			for (long i = 0; i < share; i++){
+				double cheat = source.nextDouble();
+				double length = source.nextDouble();
+				double win = source.nextDouble();
+				double y = kernel.playGame(combo, cheat, length, win) == CrapsKernel.WIN 
+						? 1 : 0;
+				if (antithetic){
+					y = (y + (kernel.playGame(combo, mirror(cheat), mirror(length), 
+							mirror(win)) == CrapsKernel.WIN ? 1 : 0)) / 2;
+				}
+				sum += y;
+				sumSquares += y * y;
+			}
+			double mean = sum / share;
+			double stratumVariance = (sumSquares - share * mean * mean) / (share - 1);
+			estimate += mean / COMBOS;
+			variance += stratumVariance / share / (COMBOS * COMBOS);
+		}
+		return new Estimate(antithetic ? Method.COMBINED : Method.STRATIFIED, 
+				kernel.getGames(), estimate, variance);
+	}
+	
+	/**
+	 * antithetic
+	 * <p>
+	 * Plays games in pairs, the second mirroring the first, and takes the mean 
+	 * of each pair as one sample.
+	 */
+	private Estimate antithetic(CrapsKernel kernel, DiceSource source, long games){
+		long pairs = games / 2;
+		double sum = 0;
+		double sumSquares = 0;
+		for (long i = 0; i < pairs; i++){
+			int combo = source.nextFace(COMBOS) - 1;
+			double cheat = source.nextDouble();
+			double length = source.nextDouble();
+			double win = source.nextDouble();
+			double y = (kernel.playGame(combo, cheat, length, win) == CrapsKernel.WIN 
+					? 1 : 0) + (kernel.playGame(COMBOS - 1 - combo, mirror(cheat), 
+					mirror(length), mirror(win)) == CrapsKernel.WIN ? 1 : 0);
+			y /= 2;
+			sum += y;
+			sumSquares += y * y;
+		}
+		double mean = sum / pairs;
+		double variance = (sumSquares - pairs * mean * mean) / (pairs - 1) / pairs;
+		return new Estimate(Method.ANTITHETIC, kernel.getGames(), mean, variance);
+	}
+	
+	/**
+	 * control
+	 * <p>
+	 * Plays independent games and corrects their win rate with the first roll 
+	 * sum indicators as control variates, which comes to weighting each sum's 
+	 * win rate by its exact chance. The variance is that of the residuals about 
+	 * each sum's win rate, over the games, less the 10 fitted coefficients.
+	 */
+	private Estimate control(CrapsKernel kernel, DiceSource source, long games){
+		long[] sumGames = new long[13];
+		long[] sumWins = new long[13];
+		for (long game = 0; game < games; game++){
+			int combo = source.nextFace(COMBOS) - 1;
+			int sum = combo / 6 + combo % 6 + 2;
+			sumGames[sum]++;
+			if (kernel.playGame(combo, source.nextDouble(), source.nextDouble(), 
+					source.nextDouble()) == CrapsKernel.WIN){
+				sumWins[sum]++;
+			}
+		}
+		double estimate = 0;
+		double residuals = 0;
+		for (int sum = 2; sum <= 12; sum++){
+			if (sumGames[sum] > 0){
+				double rate = (double) sumWins[sum] / sumGames[sum];
+				estimate += DiceModel.PAIR.getSumProbability(sum).doubleValue() * rate;
+				residuals += sumGames[sum] * rate * (1 - rate);
+			}
+		}
+		double variance = residuals / (games - 11) / games;
+		return new Estimate(Method.CONTROL, games, estimate, variance);
+	}
+	
+	/**
+	 * play
+	 * <p>
+	 * Plays one independent game from fresh draws.
+	 */
+	private static int play(CrapsKernel kernel, DiceSource source){
+		return kernel.playGame(source.nextFace(COMBOS) - 1, source.nextDouble(), 
+				source.nextDouble(), source.nextDouble());
+	}
+	
+	/**
+	 * mirror
+	 * <p>
+	 * Returns the antithetic partner 1 - u of a uniform in [0, 1), kept inside 
+	 * [0, 1).
+	 */
+	private static double mirror(double u){
+		return u == 0 ? 0 : 1 - u;
+	}
+	
+	/**
+	 * <b>Estimate Class</b>
+	 * <p>
+	 * A win probability estimate with its variance and the gain over plain 
+	 * simulation.
+	 */
+	public static class Estimate {
+		private final Method method;
+		private final long games;
+		private final double winRate;
+		private final double variance;
+		
+		/**
+		 * Constructs an estimate.
+		 * @param method - the sampling method used
+		 * @param games - the number of games played
+		 * @param winRate - the estimated win probability
+		 * @param variance - the estimated variance of winRate
+		 */
+		public Estimate(Method method, long games, double winRate, double variance){
+			this.method = method;
+			this.games = games;
+			this.winRate = winRate;
+			this.variance = variance;
+		}
+		
+		/**
+		 * getWinRate
+		 * <p>
+		 * Returns the estimated win probability.
+		 * @return winRate - estimated chance of a player win
+		 */
+		public double getWinRate(){
+			return winRate;
+		}
+		
+		/**
+		 * getVariance
+		 * <p>
+		 * Returns the estimated variance of the win probability estimate.
+		 * @return variance of the estimate
+		 */
+		public double getVariance(){
+			return variance;
+		}
+		
+		/**
+		 * getHalfWidth
+		 * <p>
+		 * Returns half the width of the normal confidence interval of the 
+		 * estimate.
+		 * @param z - the standard normal quantile of the confidence level
+		 * @return half width of the confidence interval
+		 */
+		public double getHalfWidth(double z){
+			return z * Math.sqrt(variance);
+		}
+		
+		/**
+		 * getEffectiveSampleSize
+		 * <p>
+		 * Returns the number of independent games whose win rate would have the 
+		 * same variance as this estimate, p(1 - p) / variance.
+		 * @return effective sample size
+		 */
+		public double getEffectiveSampleSize(){
+			return winRate * (1 - winRate) / variance;
+		}
+		
+		/**
+		 * getReductionFactor
+		 * <p>
+		 * Returns how many times fewer games this method needed than plain 
+		 * simulation would for the same precision.
+		 * @return effective sample size over games played
+		 */
+		public double getReductionFactor(){
+			return getEffectiveSampleSize() / games;
+		}
+		
+		/**
+		 * toString
+		 * <p>
+		 * Returns a one line summary of the estimate.
+		 * @return summary String of the estimate
+		 */
+		public String toString(){
+			return String.format("%-10s %.6f +/- %.6f (95%%), %d games, ESS %.0f, " 
+					+ "reduction %.2fx", method, winRate, 
+					getHalfWidth(SimulationStats.Z95), games, 
+					getEffectiveSampleSize(), getReductionFactor());
+		}
+	} //End of Estimate class
+	
+	/**
+	 * The main method estimates the win probability with every method and 
+	 * prints each next to the exact value from CrapsSolver.
+	 * <p>
+	 * Usage: java VarianceReducer [games] [-cheat] [-seed s] [-rules name|spec|file]
+	 */
+	public static void main(String[] args){
+		long games = 1000000;
+		boolean cheat = false;
+		long seed = System.nanoTime();
+		CrapsRules rules = CrapsRules.HOUSE;
+		try {
+			for (int i = 0; i < args.length; i++){
+				if (("-cheat").equals(args[i])){
+					cheat = true;
+				}
+				else if (("-seed").equals(args[i])){
+					seed = Long.parseLong(args[++i]);
+				}
+				else if (("-rules").equals(args[i])){
+					rules = CrapsRules.forName(args[++i]);
+				}
+				else {
+					games = Long.parseLong(args[i].replace("_", ""));
+				}
+			}
+			VarianceReducer reducer = new VarianceReducer(cheat, rules);
+			double exact = new CrapsSolver(cheat, rules).getWinProbability().doubleValue();
+			System.out.println(String.format("Exact Win Rate: %.6f", exact));
+			DiceSource source = RandomDiceSource.of(RandomDiceSource.L64X128_MIX, seed);
+			for (Method method : Method.values()){
+				Estimate estimate = reducer.estimate(method, games, source.split());
+				System.out.println(estimate + String.format(" (%+.2f standard errors)", 
+						(estimate.getWinRate() - exact) / Math.sqrt(estimate.getVariance())));
+			}
+		}
+		catch (IllegalArgumentException | ArrayIndexOutOfBoundsException | IOException e){
+			System.out.println("Usage: java VarianceReducer [games] [-cheat] [-seed s] " 
+					+ "[-rules name|spec|file]");
+			System.exit(1);
+		}
+	}
+} //End of VarianceReducer class
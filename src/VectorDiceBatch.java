@@ -0,0 +1,126 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * <b>VectorDiceBatch Class</b>
+ * <p>
+ * A DiceBatch that maps random bits to faces, sums the faces and classifies the
+ * rolls with the jdk.incubator.vector API, several rolls per instruction.
+ * <p>
+ * Only loaded by DiceBatch.create when the jdk.incubator.vector module is 
+ * present. It produces exactly the same rolls as the scalar DiceBatch.
+ * @author James Wen - jrw2175
+ */
+public class VectorDiceBatch extends DiceBatch {
+	private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+	//Ints of the same lane count as LONGS, for narrowing the faces
+	private static final VectorSpecies<Integer> NARROW_INTS = VectorSpecies.of(
+			int.class, VectorShape.forBitSize(LONGS.vectorBitSize() / 2));
+	private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+	
+	/**
+	 * Constructs a vectorized batch holding the given number of rolls.
+	 * @param size - the number of rolls in the batch
+	 * @throws IllegalArgumentException - if size is less than 1
+	 */
+	public VectorDiceBatch(int size){
+		super(size);
+	}
+	
+	/**
+	 * map
+	 * <p>
+	 * Turns the random bits of every roll into faces with vector multiply-shifts,
+	 * then sums and classifies the faces with vector adds and compares. Lanes 
+	 * left over at the end of the batch are done one at a time.
+	 */
+	protected void map(){
+		int i = 0;
+		int bound = LONGS.loopBound(size);
+		for (; i < bound; i += LONGS.length()){
+			LongVector random = LongVector.fromArray(LONGS, bits, i);
+			LongVector low = random.and(LOW_BITS);
+			LongVector high = random.lanewise(VectorOperators.LSHR, 32);
+			low.mul(MAX).lanewise(VectorOperators.LSHR, 32).add(1)
+					.convertShape(VectorOperators.L2I, NARROW_INTS, 0)
+					.reinterpretAsInts().intoArray(faces1, i);
+			high.mul(MAX).lanewise(VectorOperators.LSHR, 32).add(1)
+					.convertShape(VectorOperators.L2I, NARROW_INTS, 0)
+					.reinterpretAsInts().intoArray(faces2, i);
+		}
+		for (; i < size; i++){
+			faces1[i] = (int) (((bits[i] & LOW_BITS) * MAX) >>> 32) + 1;
+			faces2[i] = (int) (((bits[i] >>> 32) * MAX) >>> 32) + 1;
+		}
+		
+		i = 0;
+		bound = INTS.loopBound(size);
+		IntVector none = IntVector.zero(INTS);
+		for (; i < bound; i += INTS.length()){
+			IntVector sum = IntVector.fromArray(INTS, faces1, i)
+					.add(IntVector.fromArray(INTS, faces2, i));
+			sum.intoArray(sums, i);
+			VectorMask<Integer> seven = sum.eq(7);
+			VectorMask<Integer> snakeEyes = sum.eq(2);
+			VectorMask<Integer> boxCars = sum.eq(12);
+			none.blend(SEVEN, seven)
+				.or(none.blend(SNAKE_EYES, snakeEyes))
+				.or(none.blend(BOX_CARS, boxCars))
+				.intoArray(flags, i);
+		}
+		for (; i < size; i++){
+			int sum = faces1[i] + faces2[i];
+			sums[i] = sum;
+			flags[i] = (sum == 7 ? SEVEN : 0) | (sum == 2 ? SNAKE_EYES : 0) 
+					 | (sum == 12 ? BOX_CARS : 0);
+		}
+	}
+	
+	/**
+	 * roll
+	 * <p>
+	 * Rolls the pair of dice size times with the given source. The vector pass 
+	 * also finds whether any face must be rejected, so the scalar redraw pass is
+	 * skipped for the vast majority of batches that need none.
+	 * @param source - the dice source to roll with
+	 */
+	public void roll(DiceSource source){
+		for (int i = 0; i < size; i++){
+			bits[i] = source.nextLong();
+		}
+		map();
+		if (hasRejects()){
+			redrawRejects(source, 0, size);
+		}
+	}
+	
+	/**
+	 * hasRejects
+	 * <p>
+	 * Returns whether any face of the batch fell in the rejected low range.
+	 */
+	private boolean hasRejects(){
+		int i = 0;
+		int bound = LONGS.loopBound(size);
+		for (; i < bound; i += LONGS.length()){
+			LongVector random = LongVector.fromArray(LONGS, bits, i);
+			LongVector low = random.and(LOW_BITS).mul(MAX).and(LOW_BITS);
+			LongVector high = random.lanewise(VectorOperators.LSHR, 32).mul(MAX)
+					.and(LOW_BITS);
+			if (low.lt(THRESHOLD).or(high.lt(THRESHOLD)).anyTrue()){
+				return true;
+			}
+		}
+		for (; i < size; i++){
+			if (((bits[i] & LOW_BITS) * MAX & LOW_BITS) < THRESHOLD
+					|| ((bits[i] >>> 32) * MAX & LOW_BITS) < THRESHOLD){
+				return true;
+			}
+		}
+		return false;
+	}
+} //End of VectorDiceBatch class
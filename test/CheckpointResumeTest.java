@@ -0,0 +1,85 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * <b>CheckpointResumeTest Class</b>
+ * <p>
+ * Kills a checkpointing CrapsSimulator -deterministic process once it has
+ * saved some progress, resumes the run from its checkpoint in this JVM, and
+ * checks that the result is bit for bit that of an uninterrupted run.
+ * @author James Wen - jrw2175
+ */
+public class CheckpointResumeTest {
+	private static final long GAMES = 20000000;
+	private static final long SEED = 11;
+
+	@TempDir
+	Path directory;
+
+	/**
+	 * Checks that a run killed with SIGKILL and resumed gives the same digest as
+	 * one that was never interrupted.
+	 */
+	@Test
+	public void killedRunResumesToSameDigest() throws Exception {
+		Path checkpoint = directory.resolve("run.ckpt");
+		String java = System.getProperty("java.home") + File.separator + "bin"
+				+ File.separator + "java";
+		//The handler engine is slow enough that the run is still going when killed
+		Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+				"CrapsSimulator", Long.toString(GAMES), "-seed", Long.toString(SEED),
+				"-engine", "handler", "-stats", "-checkpoint", checkpoint.toString(),
+				"-interval", "1")
+				.redirectOutput(ProcessBuilder.Redirect.DISCARD)
+				.redirectError(ProcessBuilder.Redirect.INHERIT)
+				.start();
+		long saved = 0;
+		try {
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+			while (saved == 0 && process.isAlive() && System.nanoTime() < deadline){
+				Thread.sleep(20);
+				if (Files.exists(checkpoint)){
+					saved = loadMerged(checkpoint);
+				}
+			}
+		}
+		finally {
+			process.destroyForcibly().waitFor();
+		}
+		long chunks = (GAMES + ParallelSimulator.CHUNK_GAMES - 1) / ParallelSimulator.CHUNK_GAMES;
+		saved = loadMerged(checkpoint);
+		assertTrue(saved > 0 && saved < chunks, "killed after " + saved + " of "
+				+ chunks + " chunks");
+
+		ParallelSimulator resumed = new ParallelSimulator(false, 2,
+				CrapsSimulator.Engine.HANDLER);
+		resumed.setCheckpoint(checkpoint, 1000);
+		SimulationStats resumedStats = new SimulationStats();
+		SimulationResult resumedResult = resumed.runDeterministic(GAMES, SEED, resumedStats);
+
+		ParallelSimulator uninterrupted = new ParallelSimulator(false, 1,
+				CrapsSimulator.Engine.HANDLER);
+		SimulationStats stats = new SimulationStats();
+		SimulationResult result = uninterrupted.runDeterministic(GAMES, SEED, stats);
+		assertEquals(CrapsSimulator.digest(result, stats),
+				CrapsSimulator.digest(resumedResult, resumedStats));
+	}
+
+	/**
+	 * loadMerged
+	 * <p>
+	 * Returns the number of chunks merged in a checkpoint file.
+	 */
+	private static long loadMerged(Path checkpoint) throws IOException {
+		return SimulationCheckpoint.load(checkpoint).mergedChunks;
+	}
+} //End of CheckpointResumeTest class
@@ -0,0 +1,102 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * <b>CrapsEngineTest Class</b>
+ * <p>
+ * Checks every engine of CrapsSimulator against the exact results of
+ * CrapsSolver, under each built in rule set with cheat mode on and off. The
+ * sources are seeded, so the checks are repeatable; each allows 5 standard
+ * errors, which a sound engine exceeds with probability below one in a million.
+ * The FAST engine is also checked rolling other dice than a pair.
+ * @author James Wen - jrw2175
+ */
+public class CrapsEngineTest {
+	private static final long GAMES = 200000;
+	private static final double TOLERANCE = 5.0; //standard errors
+	private static final CrapsRules[] RULES = {CrapsRules.HOUSE, CrapsRules.CASINO,
+			CrapsRules.DONT_PASS};
+
+	/**
+	 * Checks the win rate of a plain run of every engine against the solver.
+	 */
+	@Test
+	public void winRateMatchesSolver(){
+		long seed = 1;
+		for (CrapsRules rules : RULES){
+			for (boolean cheat : new boolean[] {false, true}){
+				double p = new CrapsSolver(cheat, rules).getWinProbability().doubleValue();
+				double error = Math.sqrt(p * (1 - p) / GAMES);
+				for (CrapsSimulator.Engine engine : CrapsSimulator.Engine.values()){
+					CrapsSimulator simulator = new CrapsSimulator(cheat, engine);
+					simulator.setRules(rules);
+					SimulationResult result = simulator.run(GAMES,
+							RandomDiceSource.of(RandomDiceSource.L64X128_MIX, seed++));
+					assertEquals(GAMES, result.getGames());
+					assertTrue(Math.abs(result.getWinRate() - p) <= TOLERANCE * error,
+							engine + " " + rules + " cheat=" + cheat + ": win rate "
+							+ result.getWinRate() + ", exact " + p);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks the mean rolls per game recorded in statistics by every engine
+	 * against the solver, and that the statistics agree with their own tallies.
+	 */
+	@Test
+	public void rollsPerGameMatchSolver(){
+		long seed = 1000;
+		for (CrapsRules rules : RULES){
+			for (boolean cheat : new boolean[] {false, true}){
+				double expected = new CrapsSolver(cheat, rules).getExpectedRolls().doubleValue();
+				for (CrapsSimulator.Engine engine : CrapsSimulator.Engine.values()){
+					CrapsSimulator simulator = new CrapsSimulator(cheat, engine);
+					simulator.setRules(rules);
+					SimulationStats stats = new SimulationStats();
+					simulator.run(GAMES, 0, SimulationStats.Z95,
+							RandomDiceSource.of(RandomDiceSource.L64X128_MIX, seed++), stats);
+					assertEquals(GAMES, stats.getGames());
+					assertEquals((double) stats.getRolls() / GAMES, stats.getMeanRolls(), 1e-9);
+					double error = Math.sqrt(stats.getRollsVariance() / GAMES);
+					assertTrue(Math.abs(stats.getMeanRolls() - expected) <= TOLERANCE * error,
+							engine + " " + rules + " cheat=" + cheat + ": rolls per game "
+							+ stats.getMeanRolls() + ", exact " + expected);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks the win rate of the FAST engine rolling dice other than a pair of
+	 * six sided dice against the solver for the same dice.
+	 */
+	@Test
+	public void fastEngineRollsOtherDice(){
+		long seed = 3000;
+		for (String notation : new String[] {"2d6", "3d4", "2d5"}){
+			DiceModel dice = DiceModel.of(notation);
+			for (boolean cheat : new boolean[] {false, true}){
+				double p = new CrapsSolver(cheat, CrapsRules.HOUSE, dice).getWinProbability()
+						.doubleValue();
+				double error = Math.sqrt(p * (1 - p) / GAMES);
+				CrapsSimulator simulator = new CrapsSimulator(cheat, CrapsSimulator.Engine.FAST);
+				simulator.setDice(dice);
+				SimulationResult result = simulator.run(GAMES,
+						RandomDiceSource.of(RandomDiceSource.L64X128_MIX, seed++));
+				assertTrue(Math.abs(result.getWinRate() - p) <= TOLERANCE * error,
+						dice + " cheat=" + cheat + ": win rate " + result.getWinRate() 
+						+ ", exact " + p);
+			}
+		}
+		assertThrows(IllegalArgumentException.class, () -> new CrapsSimulator(false,
+				CrapsSimulator.Engine.KERNEL).setDice(DiceModel.of("3d4")));
+		assertThrows(IllegalArgumentException.class, () -> new CrapsKernel(
+				RandomDiceSource.of(RandomDiceSource.L64X128_MIX, 1), false, 
+				CrapsRules.HOUSE, DiceModel.of("2d8")));
+	}
+} //End of CrapsEngineTest class
@@ -0,0 +1,171 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * <b>DeterministicRunTest Class</b>
+ * <p>
+ * Regression tests of deterministic chunked runs: the digests of fixed seed
+ * runs must not change, must not depend on the number of threads, and must be
+ * reproduced by a SimulationCoordinator merging chunks from SimulationWorkers,
+ * even when a worker is lost and its chunks are played by another. A change
+ * that is meant to alter the games played must raise
+ * CrapsSimulator.ENGINE_VERSION and update the digests here.
+ * @author James Wen - jrw2175
+ */
+public class DeterministicRunTest {
+	private static final String HOUSE_300K_SEED_1 =
+			"289f68ea82a2ed17a9ec8b744c305586d820d32df57e0663efd49b0d12044297";
+	private static final String CASINO_CHEAT_3M_SEED_2 =
+			"e1978775503aedf1dd847a2515c84319b76694f0ecb083d9565009eee392be5e";
+	private static final String HANDLER_3M_SEED_7 =
+			"bb3c05cd051de3ded15e2cb80202415f7e24bb5081bbbcf6f83f7330645ab265";
+
+	/**
+	 * digest
+	 * <p>
+	 * Returns the digest of a deterministic run with statistics, as
+	 * CrapsSimulator -deterministic -stats prints it.
+	 */
+	static String digest(boolean cheat, int threads, CrapsSimulator.Engine engine,
+			CrapsRules rules, long games, long seed) throws IOException {
+		ParallelSimulator simulator = new ParallelSimulator(cheat, threads, engine);
+		simulator.setRules(rules);
+		SimulationStats stats = new SimulationStats();
+		SimulationResult result = simulator.runDeterministic(games, seed, stats);
+		return CrapsSimulator.digest(result, stats);
+	}
+
+	/**
+	 * Checks the digests of fixed seed runs against their recorded values.
+	 */
+	@Test
+	public void digestsAreStable() throws IOException {
+		assertEquals(HOUSE_300K_SEED_1, digest(false, 1, CrapsSimulator.Engine.KERNEL,
+				CrapsRules.HOUSE, 300000, 1));
+		assertEquals(CASINO_CHEAT_3M_SEED_2, digest(true, 1, CrapsSimulator.Engine.KERNEL,
+				CrapsRules.CASINO, 3000000, 2));
+		assertEquals(HANDLER_3M_SEED_7, digest(false, 1, CrapsSimulator.Engine.HANDLER,
+				CrapsRules.HOUSE, 3000000, 7));
+	}
+
+	/**
+	 * Checks that the number of threads does not change the digest.
+	 */
+	@Test
+	public void digestIsIndependentOfThreads() throws IOException {
+		for (int threads : new int[] {2, 3, 8}){
+			assertEquals(CASINO_CHEAT_3M_SEED_2, digest(true, threads,
+					CrapsSimulator.Engine.KERNEL, CrapsRules.CASINO, 3000000, 2));
+		}
+	}
+
+	/**
+	 * Checks that a coordinator merging the chunks of two workers prints the
+	 * same digest as the threads of a ParallelSimulator.
+	 */
+	@Test
+	public void coordinatorMatchesParallelSimulator() throws Exception {
+		ExecutorService workers = Executors.newCachedThreadPool();
+		try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())){
+			SimulationCoordinator coordinator = new SimulationCoordinator(server, true,
+					CrapsSimulator.Engine.KERNEL);
+			coordinator.setRules(CrapsRules.CASINO);
+			for (int i = 0; i < 2; i++){
+				workers.submit(() -> new SimulationWorker(new Socket(
+						InetAddress.getLoopbackAddress(), server.getLocalPort()), 1).run());
+			}
+			SimulationStats stats = new SimulationStats();
+			SimulationResult result = coordinator.runDeterministic(3000000, 2, stats);
+			assertEquals(CASINO_CHEAT_3M_SEED_2, CrapsSimulator.digest(result, stats));
+			assertEquals(0, coordinator.getDropped());
+		}
+		finally {
+			workers.shutdownNow();
+		}
+	}
+
+	/**
+	 * Checks that a coordinator plays a second run on the same server socket,
+	 * with a worker that connected after the first run had finished.
+	 */
+	@Test
+	public void coordinatorPlaysRunsInTurn() throws Exception {
+		ExecutorService workers = Executors.newCachedThreadPool();
+		try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())){
+			SimulationCoordinator coordinator = new SimulationCoordinator(server, false,
+					CrapsSimulator.Engine.KERNEL);
+			for (int run = 0; run < 2; run++){
+				workers.submit(() -> new SimulationWorker(new Socket(
+						InetAddress.getLoopbackAddress(), server.getLocalPort()), 1).run());
+				SimulationStats stats = new SimulationStats();
+				Future<SimulationResult> played = workers.submit(
+						() -> coordinator.runDeterministic(300000, 1, stats));
+				SimulationResult result = played.get(60, TimeUnit.SECONDS);
+				assertEquals(HOUSE_300K_SEED_1, CrapsSimulator.digest(result, stats));
+			}
+			assertEquals(2, coordinator.getConnected());
+		}
+		finally {
+			workers.shutdownNow();
+		}
+	}
+
+	/**
+	 * Checks that the chunks of a worker that disconnects without answering
+	 * are requeued and played by another, leaving the digest unchanged.
+	 */
+	@Test
+	public void coordinatorRequeuesChunksOfLostWorker() throws Exception {
+		ExecutorService workers = Executors.newCachedThreadPool();
+		try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())){
+			SimulationCoordinator coordinator = new SimulationCoordinator(server, true,
+					CrapsSimulator.Engine.KERNEL);
+			coordinator.setRules(CrapsRules.CASINO);
+			Future<SimulationResult> run;
+			SimulationStats stats = new SimulationStats();
+			run = workers.submit(() -> coordinator.runDeterministic(3000000, 2, stats));
+			//A worker that takes four chunks and then dies
+			try (Socket lost = new Socket(InetAddress.getLoopbackAddress(),
+					server.getLocalPort())){
+				DataOutputStream out = new DataOutputStream(lost.getOutputStream());
+				DataInputStream in = new DataInputStream(lost.getInputStream());
+				out.writeInt(SimulationCoordinator.MAGIC);
+				out.writeInt(SimulationCoordinator.VERSION);
+				out.writeInt(4);
+				out.flush();
+				in.readLong();
+				in.readLong();
+				in.readBoolean();
+				in.readUTF();
+				in.readUTF();
+				in.readUTF();
+				in.readBoolean();
+				for (int i = 0; i < 4; i++){
+					assertEquals(SimulationCoordinator.CHUNK, in.readByte());
+					in.readLong();
+				}
+			}
+			workers.submit(() -> new SimulationWorker(new Socket(
+					InetAddress.getLoopbackAddress(), server.getLocalPort()), 1).run());
+			SimulationResult result = run.get();
+			assertEquals(CASINO_CHEAT_3M_SEED_2, CrapsSimulator.digest(result, stats));
+			assertEquals(1, coordinator.getDropped());
+			assertEquals(4, coordinator.getRequeued());
+		}
+		finally {
+			workers.shutdownNow();
+		}
+	}
+} //End of DeterministicRunTest class
@@ -0,0 +1,60 @@
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * <b>EngineComparisonTest Class</b>
+ * <p>
+ * Checks that the FAST engine, which draws the point phase of a game instead of
+ * rolling it, plays games distributed as the KERNEL engine's, with the 
+ * chi-square tests of homogeneity that CrapsSimulator -compare prints: one of 
+ * outcomes and game lengths, and one of outcomes and points. The sources are
+ * seeded, so the checks are repeatable.
+ * @author James Wen - jrw2175
+ */
+public class EngineComparisonTest {
+	private static final long GAMES = 200000;
+	private static final double MIN_P_VALUE = 1e-4;
+	private static final CrapsRules[] RULES = {CrapsRules.HOUSE, CrapsRules.CASINO,
+			CrapsRules.DONT_PASS};
+
+	/**
+	 * Checks the roll count and point histograms of FAST against KERNEL under 
+	 * each built in rule set with cheat mode on and off.
+	 */
+	@Test
+	public void fastMatchesKernelHistograms(){
+		long seed = 2000;
+		for (CrapsRules rules : RULES){
+			for (boolean cheat : new boolean[] {false, true}){
+				SimulationStats kernel = play(CrapsSimulator.Engine.KERNEL, cheat, rules, 
+						seed++);
+				SimulationStats fast = play(CrapsSimulator.Engine.FAST, cheat, rules, 
+						seed++);
+				double[] lengths = fast.compareWith(kernel);
+				assertTrue(lengths[2] >= MIN_P_VALUE, rules + " cheat=" + cheat 
+						+ ": game lengths chi-square " + lengths[0] + " on " 
+						+ (int) lengths[1] + " degrees of freedom, p-value " + lengths[2]);
+				double[] points = fast.comparePointsWith(kernel);
+				assertTrue(points[2] >= MIN_P_VALUE, rules + " cheat=" + cheat 
+						+ ": points chi-square " + points[0] + " on " 
+						+ (int) points[1] + " degrees of freedom, p-value " + points[2]);
+			}
+		}
+	}
+
+	/**
+	 * play
+	 * <p>
+	 * Returns the statistics of GAMES games played with the given engine.
+	 */
+	private static SimulationStats play(CrapsSimulator.Engine engine, boolean cheat,
+			CrapsRules rules, long seed){
+		CrapsSimulator simulator = new CrapsSimulator(cheat, engine);
+		simulator.setRules(rules);
+		SimulationStats stats = new SimulationStats();
+		simulator.run(GAMES, 0, SimulationStats.Z95,
+				RandomDiceSource.of(RandomDiceSource.L64X128_MIX, seed), stats);
+		return stats;
+	}
+} //End of EngineComparisonTest class